@@ -0,0 +1,63 @@
+package com.common.base.ratelimit.filter;
+
+import com.common.base.ratelimit.configuration.RateLimitRouteProperties;
+import com.common.base.ratelimit.enums.RateLimitType;
+import com.common.base.ratelimit.service.SecurityService;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitingFilter.doFilter with the Redis check stubbed out: header parsing, route resolution
+ * and the admit path. Paths rotate over a few routes so the route memo is exercised.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RateLimitingFilterBenchmark {
+
+    private static final String[] PATHS = {
+            "/communication/auth/otp/send", "/api/login", "/api/v1/users/42", "/api/v1/orders/7/items"
+    };
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    private RateLimitingFilter filter;
+
+    private MockHttpServletRequest[] requests;
+
+    private MockHttpServletResponse response;
+
+    private int next;
+
+    @Setup
+    public void setUp(){
+        SecurityService securityService = new SecurityService(null, null) {
+            @Override
+            public boolean isRateLimited(String identifier, RateLimitType rateLimitType, int maxRequests, int windowSeconds){
+                return false;
+            }
+        };
+        filter = new RateLimitingFilter(securityService, new RateLimitRouteTable(new RateLimitRouteProperties()));
+        requests = new MockHttpServletRequest[PATHS.length];
+        for(int i=0;i< PATHS.length;i++){
+            requests[i] = new MockHttpServletRequest("GET", PATHS[i]);
+            requests[i].addHeader("X-Forwarded-For", "203.0.113.7, 10.0.0.1");
+        }
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public void doFilter() throws Exception {
+        MockHttpServletRequest request = requests[next++ % requests.length];
+        // The filter marks admitted requests; clear it so every call takes the full path
+        request.removeAttribute(RateLimitingFilter.RATE_LIMIT_DECISION_ATTRIBUTE);
+        filter.doFilter(request, response, NO_OP_CHAIN);
+    }
+}
@@ -0,0 +1,72 @@
+package com.common.base.ratelimit.service;
+
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for the Lettuce proxy manager: bucket state lives in a map and is swapped
+ * with the same compare-and-swap protocol Bucket4j runs against Redis, minus the network.
+ */
+public class InMemoryProxyManager extends AbstractCompareAndSwapBasedProxyManager<String> {
+
+    private final ConcurrentHashMap<String, byte[]> states = new ConcurrentHashMap<>();
+
+    public InMemoryProxyManager() {
+        super(ClientSideConfig.getDefault());
+    }
+
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(String key){
+        return new CompareAndSwapOperation() {
+            @Override
+            public Optional<byte[]> getStateData(Optional<Long> timeoutNanos){
+                return Optional.ofNullable(states.get(key));
+            }
+
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState, Optional<Long> timeoutNanos){
+                // Arrays compare by identity, which is exactly the reference handed out by getStateData
+                return originalData == null ? states.putIfAbsent(key, newData) == null : states.replace(key, originalData, newData);
+            }
+        };
+    }
+
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(String key){
+        CompareAndSwapOperation operation = beginCompareAndSwapOperation(key);
+        return new AsyncCompareAndSwapOperation() {
+            @Override
+            public CompletableFuture<Optional<byte[]>> getStateData(Optional<Long> timeoutNanos){
+                return CompletableFuture.completedFuture(operation.getStateData(timeoutNanos));
+            }
+
+            @Override
+            public CompletableFuture<Boolean> compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState, Optional<Long> timeoutNanos){
+                return CompletableFuture.completedFuture(operation.compareAndSwap(originalData, newData, newState, timeoutNanos));
+            }
+        };
+    }
+
+    @Override
+    public void removeProxy(String key){
+        states.remove(key);
+    }
+
+    @Override
+    protected CompletableFuture<Void> removeAsync(String key){
+        states.remove(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public boolean isAsyncModeSupported(){
+        return true;
+    }
+}
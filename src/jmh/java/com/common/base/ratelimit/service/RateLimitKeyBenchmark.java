@@ -0,0 +1,22 @@
+package com.common.base.ratelimit.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis key derivation shared by every RateLimitingService check.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimitKeyBenchmark {
+
+    @Benchmark
+    public String forIdentifier(){
+        return RateLimitKeys.forIdentifier("203.0.113.7:/api/v1/users/42", RateLimitingService.RATE_LIMIT_API);
+    }
+}
@@ -0,0 +1,76 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import com.common.base.ratelimit.configuration.RedisBucketProperties;
+import com.common.base.ratelimit.metrics.RateLimitMetrics;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenBucketRateLimiter.tryConsume against the in-memory proxy manager, so the numbers cover
+ * proxy lookup, configuration resolution, the circuit breaker and leasing but not the network.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenBucketBenchmark {
+
+    private static final String BUCKET_TYPE = "BENCHMARK";
+
+    @Param({"false", "true"})
+    public boolean leasing;
+
+    // Distinct rate limited keys, exercises the bucket proxy cache
+    @Param({"1", "1024"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private TokenBucketRateLimiter rateLimiter;
+
+    private String[] keyNames;
+
+    @Setup
+    public void setUp(){
+        RedisBucketProperties properties = new RedisBucketProperties();
+        properties.getLeasing().setEnabled(leasing);
+        properties.getLeasing().setBucketTypes(Set.of(BUCKET_TYPE));
+        rateLimiter = new TokenBucketRateLimiter(new InMemoryProxyManager(), properties, new RateLimitDegradationProperties(),
+                new RateLimitMetrics(new SimpleMeterRegistry(), metrics));
+        // Large enough that every call is admitted and the measured path stays the same
+        rateLimiter.addBucketConfiguration(BUCKET_TYPE, BucketConfiguration.builder()
+                .addLimit(Bandwidth.builder().capacity(1_000_000_000_000L).refillGreedy(1_000_000_000L, Duration.ofSeconds(1)).build())
+                .build());
+        keyNames = new String[keys];
+        for(int i=0;i< keys;i++){
+            keyNames[i] = "rate_limit:" + BUCKET_TYPE + ":" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        rateLimiter.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public ConsumptionProbe tryConsume(Cursor cursor){
+        String key = keyNames[cursor.next++ % keyNames.length];
+        return rateLimiter.tryConsume(key, BUCKET_TYPE);
+    }
+}
@@ -0,0 +1,94 @@
+package com.common.base.redis.serializer;
+
+import com.common.base.redis.configuration.RedisSerializationProperties;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression of cached values on top of each codec, for small, medium and large pages of DTOs
+ * (about 1 KB, 50 KB and 500 KB as JSON). {@code serialize} reports the bytes it stored as auxiliary
+ * counters ({@code storedBytes / values} per value), so the latency cost can be read against the bytes
+ * saved in Redis and on the wire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    @Param({"JSON", "SMILE"})
+    public ValueCodec codec;
+
+    @Param({"NONE", "DEFLATE", "ZSTD"})
+    public Compression compression;
+
+    @Param({"6", "300", "3000"})
+    public int users;
+
+    private RedisSerializer<Object> serializer;
+
+    private UserPage value;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp(){
+        RedisSerializationProperties properties = new RedisSerializationProperties();
+        properties.getTypes().put(TypeIdRegistry.FIRST_USER_ID, RedisSerializerBenchmark.UserDto.class.getName());
+        properties.getTypes().put(TypeIdRegistry.FIRST_USER_ID + 1, UserPage.class.getName());
+        serializer = new RedisValueSerializers(JsonMapper.builder().findAndAddModules().build(), properties)
+                .get(codec, compression, 1024);
+        value = new UserPage(users);
+        payload = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize(Sizes sizes){
+        byte[] bytes = serializer.serialize(value);
+        sizes.storedBytes += bytes.length;
+        sizes.values++;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object deserialize(){
+        return serializer.deserialize(payload);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes {
+        public long storedBytes;
+        public long values;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            storedBytes = 0;
+            values = 0;
+        }
+    }
+
+    public static class UserPage implements Serializable {
+        public int page;
+        public List<RedisSerializerBenchmark.UserDto> users;
+
+        public UserPage() {
+        }
+
+        UserPage(int size) {
+            this.page = 1;
+            this.users = new ArrayList<>(size);
+            for(int i = 0; i < size; i++){
+                users.add(new RedisSerializerBenchmark.UserDto(i));
+            }
+        }
+    }
+}
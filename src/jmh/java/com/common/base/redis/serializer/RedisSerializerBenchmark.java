@@ -0,0 +1,77 @@
+package com.common.base.redis.serializer;
+
+import com.common.base.redis.configuration.RedisSerializationProperties;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Value codecs used by the RedisTemplate and the cache manager, on a typical cached DTO.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisSerializerBenchmark {
+
+    @Param({"JDK", "JSON", "SMILE"})
+    public ValueCodec codec;
+
+    private RedisSerializer<Object> serializer;
+
+    private UserDto value;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp(){
+        RedisSerializationProperties properties = new RedisSerializationProperties();
+        properties.getTypes().put(TypeIdRegistry.FIRST_USER_ID, UserDto.class.getName());
+        serializer = new RedisValueSerializers(JsonMapper.builder().findAndAddModules().build(), properties).get(codec);
+        value = new UserDto(42);
+        payload = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize(){
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize(){
+        return serializer.deserialize(payload);
+    }
+
+    public static class UserDto implements Serializable {
+        public long id;
+        public String name;
+        public String email;
+        public String status;
+        public Instant createdAt;
+        public List<String> roles;
+        public Map<String, Object> attributes;
+
+        public UserDto() {
+        }
+
+        UserDto(long id) {
+            this.id = id;
+            this.name = "User " + id;
+            this.email = "user" + id + "@example.com";
+            this.status = "ACTIVE";
+            this.createdAt = Instant.ofEpochMilli(1_700_000_000_000L + id);
+            this.roles = new ArrayList<>(List.of("USER", "READER"));
+            this.attributes = new LinkedHashMap<>(Map.of("tier", "gold"));
+        }
+    }
+}
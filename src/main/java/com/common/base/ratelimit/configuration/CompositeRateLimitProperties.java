@@ -0,0 +1,37 @@
+package com.common.base.ratelimit.configuration;
+
+import com.common.base.ratelimit.enums.CompositeLimitAlgorithm;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Limits checked together by {@code RateLimitingService.checkCompositeRateLimit}, per rate limit type.
+ * All limits of a policy are evaluated in one script and a request is counted against them only when
+ * every one of them admits it. In a Redis cluster every key of a policy lives in the slot of its type,
+ * so a very busy policy puts its load on one shard.
+ */
+@ConfigurationProperties("base.rate-limit.composite")
+@Data
+@Configuration
+public class CompositeRateLimitProperties {
+    public static final String GLOBAL = "GLOBAL";
+
+    // Keyed by rate limit type, e.g. API_GENERAL
+    private Map<String, List<Limit>> policies = new LinkedHashMap<>();
+
+    @Data
+    public static class Limit {
+        // Reported as failedLimit when this limit rejects the request, e.g. "per-ip"
+        private String name;
+        // Identifier the limit counts by, e.g. ip, user or tenant; GLOBAL shares one counter across all callers
+        private String scope = GLOBAL;
+        private CompositeLimitAlgorithm algorithm = CompositeLimitAlgorithm.TOKEN_BUCKET;
+        private long limit = 100;
+        private long windowSeconds = 60;
+    }
+}
@@ -0,0 +1,21 @@
+package com.common.base.ratelimit.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Node local token buckets used by {@code RateLimitingService.isAllowedTokenBucket}.
+ * Each tracked key costs four longs; maxEntries is a hard cap on the number of keys.
+ */
+@ConfigurationProperties("base.rate-limit.local-bucket")
+@Data
+@Configuration
+public class LocalBucketProperties {
+    private int maxEntries = 1_000_000;
+    // Power of two; more segments means less lock contention
+    private int segments = 64;
+    // Keys untouched for this long are dropped; a dropped key starts again with a full bucket
+    private long idleTimeoutMinutes = 60;
+    private long sweepIntervalSeconds = 60;
+}
@@ -0,0 +1,39 @@
+package com.common.base.ratelimit.configuration;
+
+import com.common.base.ratelimit.enums.DegradedPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Circuit breaker around the Redis backed token bucket limiter and the fallback used while it is open.
+ */
+@ConfigurationProperties("base.rate-limit.degraded")
+@Data
+@Configuration
+public class RateLimitDegradationProperties {
+    private boolean enabled = true;
+    private DegradedPolicy defaultPolicy = DegradedPolicy.FAIL_LOCAL;
+    // Per bucket type overrides, e.g. OTP_SMS: FAIL_CLOSED
+    private Map<String, DegradedPolicy> policies = new LinkedHashMap<>();
+    // Local limits are the configured limits divided by this number of nodes
+    private int nodeCount = 1;
+    private long localBucketsMaximumSize = 100000;
+
+    // Breaker trips when either rate (in percent) is reached over the last slidingWindowSize calls
+    private int slidingWindowSize = 50;
+    private int minimumCalls = 10;
+    private int failureRateThreshold = 50;
+    private int slowCallRateThreshold = 50;
+    private long slowCallDurationMillis = 250;
+    // Time spent open before trial calls are let through to Redis again
+    private long openDurationMillis = 5000;
+    private int halfOpenTrialCalls = 3;
+
+    public DegradedPolicy policyFor(String bucketType){
+        return policies.getOrDefault(bucketType, defaultPolicy);
+    }
+}
@@ -0,0 +1,43 @@
+package com.common.base.ratelimit.configuration;
+
+import com.common.base.ratelimit.enums.RateLimitType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request path to rate limit mapping used by {@code RateLimitingFilter}.
+ * Patterns are Ant style: {@code *} and {@code ?} match within a segment, {@code **} matches
+ * any number of segments. The most specific pattern wins (literal segments beat wildcards,
+ * compared left to right); equally specific patterns are resolved in configuration order.
+ */
+@ConfigurationProperties("base.rate-limit.routing")
+@Data
+@Configuration
+public class RateLimitRouteProperties {
+    // The trailing * keeps the old substring match, e.g. /loginUser and /user/login-otp are login attempts
+    private List<Route> routes = new ArrayList<>(List.of(
+            new Route("/**/communication/auth/otp/send*/**", RateLimitType.OTP_EMAIL, null, null),
+            new Route("/**/login*/**", RateLimitType.LOGIN_ATTEMPT, null, null)
+    ));
+    // Type for paths no route matches
+    private RateLimitType defaultType = RateLimitType.API_REQUEST;
+    // Upper bound on memoized path lookups
+    private long cacheMaximumSize = 10000;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Route {
+        private String pattern;
+        private RateLimitType type;
+        // Optional overrides of app.rate-limit.max-attempts and window-minutes for this route
+        private Integer maxRequests;
+        private Integer windowSeconds;
+    }
+}
@@ -0,0 +1,22 @@
+package com.common.base.ratelimit.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Per identifier request statistics read by {@code RateLimitingService.getRateLimitStats}.
+ * One Redis hash per identifier and type, holding at most {@code 4 + 2 * minuteSlots} fields.
+ */
+@ConfigurationProperties("base.rate-limit.stats")
+@Data
+@Configuration
+public class RateLimitStatsProperties {
+    private boolean enabled = true;
+    // Length of the per minute counter ring; requestsPerMinute is averaged over it
+    private int minuteSlots = 60;
+    // Stats of an identifier expire once it has been idle this long
+    private long ttlMinutes = 1440;
+    // Decisions are counted in memory and written once per identifier per interval
+    private long flushIntervalMillis = 1000;
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 @ConfigurationProperties("base.rate-limit.token-bucket")
 @Data
 @Configuration
@@ -12,4 +15,25 @@ public class RedisBucketProperties {
     private int defaultRefillTokens = 5;
     private int defaultRefillMinutes = 1;
     private boolean enabled = true;
+    // Upper bound on cached bucket proxies, one per rate limited key
+    private long proxyCacheMaximumSize = 10000;
+    private Leasing leasing = new Leasing();
+
+    /**
+     * Local token leasing: a node reserves a batch of tokens from the Redis bucket and serves
+     * requests from an in-memory counter until the batch is used up or the lease expires.
+     * Lease size follows each key's observed rate, so low rate keys keep one Redis call per request.
+     */
+    @Data
+    public static class Leasing {
+        private boolean enabled = false;
+        // Bucket types that may be served from leases; keep precise types such as OTP out of this list
+        private Set<String> bucketTypes = new LinkedHashSet<>(Set.of("API_GENERAL"));
+        // Lifetime of a lease; unused tokens go back to the bucket once it expires
+        private long leaseTtlMillis = 1000;
+        private int maxLeaseSize = 50;
+        // Upper bound on a lease as a fraction of bucket capacity, so one node cannot drain a bucket
+        private double maxCapacityFraction = 0.1;
+        private long sweepIntervalMillis = 1000;
+    }
 }
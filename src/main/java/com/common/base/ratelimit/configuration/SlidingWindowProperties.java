@@ -0,0 +1,28 @@
+package com.common.base.ratelimit.configuration;
+
+import com.common.base.ratelimit.enums.RateLimitType;
+import com.common.base.ratelimit.enums.SlidingWindowAlgorithm;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Algorithm of the sliding window checks. The two keep their state in different keys, so switching
+ * a type starts its windows empty.
+ */
+@ConfigurationProperties("base.rate-limit.sliding-window")
+@Data
+@Configuration
+public class SlidingWindowProperties {
+    // Used by the untyped checks and types without an override
+    private SlidingWindowAlgorithm defaultAlgorithm = SlidingWindowAlgorithm.LOG;
+    // Per type overrides, e.g. API_REQUEST: COUNTER
+    private Map<RateLimitType, SlidingWindowAlgorithm> algorithms = new EnumMap<>(RateLimitType.class);
+
+    public SlidingWindowAlgorithm algorithmFor(RateLimitType type){
+        return type != null ? algorithms.getOrDefault(type, defaultAlgorithm) : defaultAlgorithm;
+    }
+}
@@ -0,0 +1,13 @@
+package com.common.base.ratelimit.enums;
+
+/**
+ * Algorithm of one limit of a composite rate limit policy.
+ */
+public enum CompositeLimitAlgorithm {
+    // Holds up to limit tokens, refilled continuously at limit per window
+    TOKEN_BUCKET,
+    // Counter reset a window after its first request
+    FIXED_WINDOW,
+    // Weighted current and previous window counters, as the sliding window COUNTER algorithm
+    SLIDING_WINDOW;
+}
@@ -0,0 +1,13 @@
+package com.common.base.ratelimit.enums;
+
+/**
+ * What the token bucket and composite limiters do while Redis is unavailable.
+ */
+public enum DegradedPolicy {
+    // Admit every request
+    FAIL_OPEN,
+    // Reject every request
+    FAIL_CLOSED,
+    // Enforce this node's share of the limit with an in-process bucket
+    FAIL_LOCAL;
+}
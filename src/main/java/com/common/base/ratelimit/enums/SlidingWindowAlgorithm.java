@@ -0,0 +1,12 @@
+package com.common.base.ratelimit.enums;
+
+/**
+ * How the sliding window limiter counts the requests of a window.
+ */
+public enum SlidingWindowAlgorithm {
+    // Sorted set with one member per admitted request: exact, memory grows with the limit
+    LOG,
+    // Current and previous fixed window counters, the previous one weighted by how much of it the
+    // sliding window still covers: approximate, three integers per key whatever the limit
+    COUNTER;
+}
@@ -0,0 +1,145 @@
+package com.common.base.ratelimit.filter;
+
+import com.common.base.ratelimit.configuration.RateLimitRouteProperties;
+import com.common.base.ratelimit.configuration.RateLimitRouteProperties.Route;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configured routes compiled into a trie of path segments.
+ * A lookup walks the request path once, so its cost depends on the path depth rather than on
+ * the number of routes; resolved paths are additionally memoized in a bounded cache.
+ */
+@Component
+@Slf4j
+public class RateLimitRouteTable {
+
+    private final Node root = new Node();
+
+    private final Route defaultRoute;
+
+    private final Cache<String, Route> resolved;
+
+    public RateLimitRouteTable(RateLimitRouteProperties properties) {
+        for(Route route : properties.getRoutes()){
+            if(route.getPattern() == null || route.getType() == null){
+                throw new IllegalArgumentException("Rate limit route needs a pattern and a type: " + route);
+            }
+            insert(route);
+        }
+        this.defaultRoute = new Route("/**", properties.getDefaultType(), null, null);
+        this.resolved = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaximumSize())
+                .build();
+        log.info("Compiled {} rate limit routes", properties.getRoutes().size());
+    }
+
+    public Route resolve(String requestPath){
+        return resolved.get(requestPath, path -> {
+            Route route = match(root, split(path), 0);
+            return route != null ? route : defaultRoute;
+        });
+    }
+
+    private void insert(Route route){
+        Node node = root;
+        for(String segment : split(route.getPattern())){
+            node = node.child(segment);
+        }
+        // First configured route wins for identical patterns
+        if(node.route == null) node.route = route;
+    }
+
+    // Children are tried from most to least specific, so the first full match is the best one
+    private static Route match(Node node, String[] segments, int index){
+        if(index == segments.length){
+            if(node.route != null) return node.route;
+            // A trailing ** also matches zero segments
+            return node.anySegments != null ? match(node.anySegments, segments, index) : null;
+        }
+        String segment = segments[index];
+        Route route;
+        Node literal = node.literals.get(segment);
+        if(literal != null && (route = match(literal, segments, index + 1)) != null) return route;
+        for(Node glob : node.globs){
+            if(globMatches(glob.segment, segment) && (route = match(glob, segments, index + 1)) != null) return route;
+        }
+        if(node.anySegment != null && (route = match(node.anySegment, segments, index + 1)) != null) return route;
+        if(node.anySegments != null){
+            for(int next = index; next <= segments.length; next++){
+                if((route = match(node.anySegments, segments, next)) != null) return route;
+            }
+        }
+        return null;
+    }
+
+    private static boolean globMatches(String pattern, String segment){
+        int p = 0, s = 0, star = -1, mark = 0;
+        while (s < segment.length()){
+            if(p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == segment.charAt(s))){
+                p++;
+                s++;
+            } else if(p < pattern.length() && pattern.charAt(p) == '*'){
+                star = p++;
+                mark = s;
+            } else if(star >= 0){
+                p = star + 1;
+                s = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') p++;
+        return p == pattern.length();
+    }
+
+    private static String[] split(String path){
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        for(int i=0;i<= path.length();i++){
+            if(i == path.length() || path.charAt(i) == '/'){
+                if(i > start) segments.add(path.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static final class Node {
+        private final String segment;
+        private final Map<String, Node> literals = new HashMap<>();
+        private final List<Node> globs = new ArrayList<>();
+        private Node anySegment;
+        private Node anySegments;
+        private Route route;
+
+        Node() {
+            this(null);
+        }
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        Node child(String segment){
+            if(segment.equals("**")) return anySegments != null ? anySegments : (anySegments = new Node(segment));
+            if(segment.equals("*")) return anySegment != null ? anySegment : (anySegment = new Node(segment));
+            if(segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0){
+                for(Node glob : globs){
+                    if(glob.segment.equals(segment)) return glob;
+                }
+                Node glob = new Node(segment);
+                globs.add(glob);
+                return glob;
+            }
+            return literals.computeIfAbsent(segment, Node::new);
+        }
+    }
+}
@@ -1,54 +1,188 @@
 package com.common.base.ratelimit.filter;
 
-import com.common.base.ratelimit.enums.RateLimitType;
+import com.common.base.ratelimit.configuration.RateLimitRouteProperties.Route;
 import com.common.base.ratelimit.service.SecurityService;
+import com.common.base.util.ExecutorFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 //implement this filter class in importing repo
+// A OncePerRequestFilter bean is registered for every dispatcher type, so it also sees the ASYNC re-dispatch
 @Component
-public class RateLimitingFilter implements Filter {
+@Slf4j
+public class RateLimitingFilter extends OncePerRequestFilter {
+
+    /**
+     * Set on the request once it has been admitted, so later dispatches of the same request
+     * (e.g. the ASYNC re-dispatch in async mode) continue down the chain instead of checking again.
+     */
+    public static final String RATE_LIMIT_DECISION_ATTRIBUTE = RateLimitingFilter.class.getName()+".DECISION";
+
+    private static final String RATE_LIMIT_ERROR_ATTRIBUTE = RateLimitingFilter.class.getName()+".ERROR";
 
     private final SecurityService securityService;
 
+    private final RateLimitRouteTable routeTable;
+
+    @Value("${app.rate-limit.max-attempts:5}")
+    private int maxAttempts;
+
     @Value("${app.rate-limit.window-minutes:15}")
     private int windowMinutes;
 
-    public RateLimitingFilter(SecurityService securityService) {
+    // Servlet async mode: the Redis check no longer holds a container thread
+    @Value("${app.rate-limit.async.enabled:false}")
+    private boolean asyncEnabled;
+
+    @Value("${app.rate-limit.async.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.rate-limit.async.threads:4}")
+    private int asyncThreads;
+
+    @Value("${app.rate-limit.async.timeout-millis:5000}")
+    private long asyncTimeoutMillis;
+
+    private ExecutorService asyncExecutor;
+
+    public RateLimitingFilter(SecurityService securityService, RateLimitRouteTable routeTable) {
         this.securityService = securityService;
+        this.routeTable = routeTable;
+    }
+
+    @PostConstruct
+    void initAsyncExecutor(){
+        if(asyncEnabled){
+            asyncExecutor = ExecutorFactory.newExecutor("rate-limit-async", virtualThreads, asyncThreads);
+        }
+    }
+
+    @PreDestroy
+    void shutdownAsyncExecutor(){
+        if(asyncExecutor != null) asyncExecutor.shutdown();
     }
 
     @Override
-    public void doFilter(ServletRequest request, ServletResponse response,
-                         FilterChain chain) throws IOException, ServletException {
-        HttpServletRequest httpRequest = (HttpServletRequest) request;
-        HttpServletResponse httpResponse = (HttpServletResponse) response;
-        String clientIpAddress = getClientIpAddress(httpRequest);
-        String requestPath = httpRequest.getRequestURI();
-
-        // Determine rate limit type based on request path
-        RateLimitType type = getRateLimitTypeFromRequestedPath(requestPath);
-
-        if(securityService.isRateLimited(clientIpAddress+":"+requestPath, type)){
-            httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            httpResponse.getWriter().write("Too many requests. Please try again later.");
-            httpResponse.setContentType("application/json");
-            String errorResponse = String.format(
-                    "{\"success\": false, \"message\": \"Rate limit exceeded. Try again in %d minutes.\"}",
-                    windowMinutes
-            );
-            httpResponse.getWriter().write(errorResponse);
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws IOException, ServletException {
+        // Already admitted on an earlier dispatch of this request
+        if(request.getAttribute(RATE_LIMIT_DECISION_ATTRIBUTE) != null){
+            Object error = request.getAttribute(RATE_LIMIT_ERROR_ATTRIBUTE);
+            if(error != null){
+                throw new ServletException("Rate limit check failed", (Throwable) error);
+            }
+            chain.doFilter(request, response);
             return;
         }
+
+        String clientIpAddress = getClientIpAddress(request);
+        String requestPath = request.getRequestURI();
+
+        // Determine rate limit type and limits based on request path
+        Route route = routeTable.resolve(requestPath);
+        int maxRequests = route.getMaxRequests() != null ? route.getMaxRequests() : maxAttempts;
+        int windowSeconds = route.getWindowSeconds() != null ? route.getWindowSeconds() : windowMinutes*60;
+
+        if(asyncExecutor != null && request.isAsyncSupported()){
+            doFilterAsync(request, response, clientIpAddress+":"+requestPath, route, maxRequests, windowSeconds);
+            return;
+        }
+
+        if(securityService.isRateLimited(clientIpAddress+":"+requestPath, route.getType(), maxRequests, windowSeconds)){
+            writeRateLimitedResponse(response, windowSeconds);
+            return;
+        }
+        request.setAttribute(RATE_LIMIT_DECISION_ATTRIBUTE, Boolean.TRUE);
         chain.doFilter(request, response);
     }
 
+    /**
+     * Releases the container thread while Redis answers, then either completes with 429 or
+     * re-dispatches the request. A check that fails or outlives the async timeout is re-dispatched with
+     * its error, which the ASYNC dispatch of this filter rethrows. Whichever of the check, the timeout
+     * and a container error comes first finishes the request; the others do nothing.
+     */
+    private void doFilterAsync(HttpServletRequest request, HttpServletResponse response, String identifier, Route route,
+                               int maxRequests, int windowSeconds){
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(asyncTimeoutMillis);
+        AtomicBoolean finished = new AtomicBoolean();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if(!finished.compareAndSet(false, true)) return;
+                log.warn("Async rate limit check for {} timed out after {}ms", identifier, asyncTimeoutMillis);
+                request.setAttribute(RATE_LIMIT_ERROR_ATTRIBUTE, new TimeoutException("Rate limit check timed out"));
+                request.setAttribute(RATE_LIMIT_DECISION_ATTRIBUTE, Boolean.TRUE);
+                asyncContext.dispatch();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                if(!finished.compareAndSet(false, true)) return;
+                log.warn("Async rate limited request for {} failed", identifier, event.getThrowable());
+                asyncContext.complete();
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                finished.set(true);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        securityService.isRateLimitedAsync(identifier, route.getType(), maxRequests, windowSeconds).whenCompleteAsync((limited, error) -> {
+            if(!finished.compareAndSet(false, true)) return;
+            try {
+                if(error == null && limited){
+                    writeRateLimitedResponse(response, windowSeconds);
+                    asyncContext.complete();
+                    return;
+                }
+                if(error != null){
+                    log.error("Async rate limit check failed for {}", identifier, error);
+                    request.setAttribute(RATE_LIMIT_ERROR_ATTRIBUTE, error);
+                }
+                request.setAttribute(RATE_LIMIT_DECISION_ATTRIBUTE, Boolean.TRUE);
+                asyncContext.dispatch();
+            } catch (Exception e) {
+                log.error("Failed to complete rate limited request for {}", identifier, e);
+                asyncContext.complete();
+            }
+        }, asyncExecutor);
+    }
+
+    private void writeRateLimitedResponse(HttpServletResponse httpResponse, int windowSeconds) throws IOException {
+        httpResponse.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        httpResponse.getWriter().write("Too many requests. Please try again later.");
+        httpResponse.setContentType("application/json");
+        String errorResponse = String.format(
+                "{\"success\": false, \"message\": \"Rate limit exceeded. Try again in %d minutes.\"}",
+                (windowSeconds + 59) / 60
+        );
+        httpResponse.getWriter().write(errorResponse);
+    }
+
     private String getClientIpAddress(HttpServletRequest request){
         String xfHeader = request.getHeader("X-Forwarded-For");
         if(xfHeader != null){
@@ -56,14 +190,4 @@ public class RateLimitingFilter implements Filter {
         }
         return request.getRemoteAddr();
     }
-
-    private RateLimitType getRateLimitTypeFromRequestedPath(String requestPath){
-        if(requestPath.contains("/communication/auth/otp/send")){
-            return RateLimitType.OTP_EMAIL;
-        } else if (requestPath.contains("/login")){
-            return RateLimitType.LOGIN_ATTEMPT;
-        }else {
-            return RateLimitType.API_REQUEST;
-        }
-    }
 }
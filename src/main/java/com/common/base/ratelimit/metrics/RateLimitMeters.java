@@ -0,0 +1,28 @@
+package com.common.base.ratelimit.metrics;
+
+/**
+ * Meters of one algorithm and rate limit type, resolved once per check.
+ */
+public interface RateLimitMeters {
+
+    RateLimitMeters NOOP = new RateLimitMeters() {
+        @Override
+        public void decision(boolean allowed) {
+        }
+
+        @Override
+        public void degraded() {
+        }
+
+        @Override
+        public void redisCall(long durationNanos) {
+        }
+    };
+
+    void decision(boolean allowed);
+
+    // A decision taken without Redis, see DegradedPolicy
+    void degraded();
+
+    void redisCall(long durationNanos);
+}
@@ -0,0 +1,104 @@
+package com.common.base.ratelimit.metrics;
+
+import com.common.base.ratelimit.enums.RateLimitType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allowed and denied counts plus Redis latency histograms per algorithm and rate limit type,
+ * enabled by {@code base.rate-limit.metrics.enabled}. Sliding window meters exist for every
+ * {@link RateLimitType} from startup; token bucket meters are registered with the bucket
+ * configurations, composite meters on first use. Uses the application's MeterRegistry, or Micrometer's global registry when there is none.
+ */
+@Component
+public class RateLimitMetrics {
+
+    public static final String TOKEN_BUCKET = "token_bucket";
+    public static final String SLIDING_WINDOW = "sliding_window";
+    public static final String COMPOSITE = "composite";
+
+    // Type tag for checks made with a caller built key
+    public static final String UNTYPED = "OTHER";
+
+    private final MeterRegistry registry;
+
+    private final boolean enabled;
+
+    private final Map<RateLimitType, RateLimitMeters> slidingWindowMeters = new EnumMap<>(RateLimitType.class);
+
+    private final RateLimitMeters untypedSlidingWindowMeters;
+
+    private final Map<String, RateLimitMeters> tokenBucketMeters = new ConcurrentHashMap<>();
+
+    private final Map<String, RateLimitMeters> compositeMeters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RateLimitMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                            @Value("${base.rate-limit.metrics.enabled:false}") boolean enabled) {
+        this(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), enabled);
+    }
+
+    public RateLimitMetrics(MeterRegistry registry, boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+        for(RateLimitType type : RateLimitType.values()){
+            slidingWindowMeters.put(type, enabled ? register(SLIDING_WINDOW, type.name()) : RateLimitMeters.NOOP);
+        }
+        this.untypedSlidingWindowMeters = enabled ? register(SLIDING_WINDOW, UNTYPED) : RateLimitMeters.NOOP;
+    }
+
+    public RateLimitMeters slidingWindow(RateLimitType type){
+        return type != null ? slidingWindowMeters.get(type) : untypedSlidingWindowMeters;
+    }
+
+    public RateLimitMeters tokenBucket(String bucketType){
+        if(!enabled) return RateLimitMeters.NOOP;
+        RateLimitMeters meters = tokenBucketMeters.get(bucketType);
+        return meters != null ? meters : tokenBucketMeters.computeIfAbsent(bucketType, type -> register(TOKEN_BUCKET, type));
+    }
+
+    public RateLimitMeters composite(String rateLimitType){
+        if(!enabled) return RateLimitMeters.NOOP;
+        RateLimitMeters meters = compositeMeters.get(rateLimitType);
+        return meters != null ? meters : compositeMeters.computeIfAbsent(rateLimitType, type -> register(COMPOSITE, type));
+    }
+
+    private RateLimitMeters register(String algorithm, String type){
+        return new RegisteredRateLimitMeters(
+                Counter.builder("rate.limit.decisions").tag("algorithm", algorithm).tag("type", type).tag("result", "allowed").register(registry),
+                Counter.builder("rate.limit.decisions").tag("algorithm", algorithm).tag("type", type).tag("result", "denied").register(registry),
+                Counter.builder("rate.limit.degraded").tag("algorithm", algorithm).tag("type", type).register(registry),
+                Timer.builder("rate.limit.redis.latency").tag("algorithm", algorithm).tag("type", type)
+                        .publishPercentileHistogram()
+                        .register(registry));
+    }
+
+    private record RegisteredRateLimitMeters(Counter allowed, Counter denied, Counter degradedDecisions,
+                                             Timer redisLatency) implements RateLimitMeters {
+        @Override
+        public void decision(boolean isAllowed) {
+            (isAllowed ? allowed : denied).increment();
+        }
+
+        @Override
+        public void degraded() {
+            degradedDecisions.increment();
+        }
+
+        @Override
+        public void redisCall(long durationNanos) {
+            redisLatency.record(durationNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
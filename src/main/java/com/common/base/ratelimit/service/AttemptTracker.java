@@ -0,0 +1,19 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.responseEntity.RateLimitInfo;
+
+/**
+ * Per identifier attempt counters used by {@link SecurityService}.
+ * An entry lives for {@code app.rate-limit.window-minutes} after its first attempt and is
+ * marked blocked once {@code app.rate-limit.max-attempts} failures pile up; a success resets it.
+ * Select the store with {@code app.rate-limit.attempts.store}: {@code local} (default) or {@code redis}.
+ */
+public interface AttemptTracker {
+
+    void recordAttempt(String key, boolean success);
+
+    /**
+     * @return the current counters, or a fresh {@link RateLimitInfo} when the key has none
+     */
+    RateLimitInfo getAttempts(String key);
+}
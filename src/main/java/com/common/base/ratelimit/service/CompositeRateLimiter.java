@@ -0,0 +1,301 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.CompositeRateLimitProperties;
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import com.common.base.ratelimit.enums.CompositeLimitAlgorithm;
+import com.common.base.ratelimit.enums.DegradedPolicy;
+import com.common.base.ratelimit.metrics.RateLimitMeters;
+import com.common.base.ratelimit.metrics.RateLimitMetrics;
+import com.common.base.ratelimit.service.RateLimitingService.RateLimitResult;
+import com.common.base.redis.service.AsyncRedisScriptExecutor;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.EstimationProbe;
+import io.lettuce.core.ScriptOutputType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.common.base.redis.service.AsyncRedisScriptExecutor.arg;
+
+/**
+ * Checks all limits of a {@link CompositeRateLimitProperties} policy in one script execution: one round trip
+ * whatever the number of limits, and a request is counted against the limits only when all of them admit it.
+ * Keys are {@code rate_limit:composite:{TYPE}:<limit>[:<hashed identifier>]}; the type is the hash tag, so
+ * the keys of a policy always share a cluster slot. Script arguments are built once per policy at startup.
+ * Calls go through the token bucket limiter's circuit breaker; while it is open, or when a call fails, the
+ * type's {@link DegradedPolicy} decides, FAIL_LOCAL with one per node bucket per limit.
+ */
+@Service
+@Slf4j
+public class CompositeRateLimiter {
+
+    public static final String ALGORITHM = "Composite";
+
+    private static final RedisScript<List> COMPOSITE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/ratelimit/composite.lua"), List.class);
+
+    private static final RedisSerializer<String> ARGS_SERIALIZER = new StringRedisSerializer();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final AsyncRedisScriptExecutor asyncScriptExecutor;
+
+    private final RateLimitDegradationProperties degradationProperties;
+
+    private final RedisCircuitBreaker circuitBreaker;
+
+    private final LocalFallbackRateLimiter localFallbackRateLimiter;
+
+    private final RateLimitMetrics rateLimitMetrics;
+
+    private final Map<String, Policy> policies = new HashMap<>();
+
+    public CompositeRateLimiter(RedisTemplate<String, Object> redisTemplate, AsyncRedisScriptExecutor asyncScriptExecutor,
+                                CompositeRateLimitProperties compositeRateLimitProperties, TokenBucketRateLimiter tokenBucketRateLimiter,
+                                RateLimitDegradationProperties degradationProperties, RateLimitMetrics rateLimitMetrics) {
+        this.redisTemplate = redisTemplate;
+        this.asyncScriptExecutor = asyncScriptExecutor;
+        this.degradationProperties = degradationProperties;
+        this.circuitBreaker = tokenBucketRateLimiter.circuitBreaker();
+        this.localFallbackRateLimiter = tokenBucketRateLimiter.localFallbackRateLimiter();
+        this.rateLimitMetrics = rateLimitMetrics;
+        compositeRateLimitProperties.getPolicies().forEach((type, limits) -> {
+            if(!limits.isEmpty()) policies.put(type, Policy.of(type, limits));
+        });
+    }
+
+    public boolean hasPolicy(String rateLimitType){
+        return policies.containsKey(rateLimitType);
+    }
+
+    /**
+     * @param hashedIdentifiers identifier of each scope, already hashed; not asked for GLOBAL limits
+     * @throws IllegalArgumentException if the type has no policy or a scope has no identifier
+     */
+    @SuppressWarnings("unchecked")
+    public RateLimitResult check(String rateLimitType, Function<String, String> hashedIdentifiers){
+        Policy policy = policy(rateLimitType);
+        String[] keys = policy.keys(hashedIdentifiers);
+        RateLimitMeters meters = rateLimitMetrics.composite(rateLimitType);
+        if(!circuitBreaker.tryAcquirePermission()){
+            return recorded(meters, degraded(rateLimitType, policy, keys));
+        }
+        long start = System.nanoTime();
+        try {
+            // Integer replies come back as Long; the result serializer only applies to bulk strings
+            List<?> reply = redisTemplate.execute(COMPOSITE_SCRIPT, ARGS_SERIALIZER, (RedisSerializer<List>) (RedisSerializer<?>) ARGS_SERIALIZER,
+                    Arrays.asList(keys), (Object[]) policy.args);
+            RateLimitResult result = policy.toResult(reply);
+            long duration = System.nanoTime() - start;
+            circuitBreaker.onSuccess(duration);
+            meters.redisCall(duration);
+            return recorded(meters, result);
+        } catch (RuntimeException e) {
+            log.error("Error checking composite rate limit for type: {}", rateLimitType, e);
+            return recorded(meters, onRedisError(rateLimitType, policy, keys, e));
+        }
+    }
+
+    public CompletableFuture<RateLimitResult> checkAsync(String rateLimitType, Function<String, String> hashedIdentifiers){
+        Policy policy;
+        String[] keys;
+        try {
+            policy = policy(rateLimitType);
+            keys = policy.keys(hashedIdentifiers);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        RateLimitMeters meters = rateLimitMetrics.composite(rateLimitType);
+        if(!circuitBreaker.tryAcquirePermission()){
+            return CompletableFuture.completedFuture(recorded(meters, degraded(rateLimitType, policy, keys)));
+        }
+        long start = System.nanoTime();
+        return asyncScriptExecutor.<List<Object>>execute(COMPOSITE_SCRIPT, ScriptOutputType.MULTI, keys, policy.argBytes)
+                .thenApply(policy::toResult)
+                .handle((result, error) -> {
+                    if(error == null){
+                        long duration = System.nanoTime() - start;
+                        circuitBreaker.onSuccess(duration);
+                        meters.redisCall(duration);
+                        return recorded(meters, result);
+                    }
+                    log.error("Error checking composite rate limit asynchronously for type: {}", rateLimitType, error);
+                    return recorded(meters, onRedisError(rateLimitType, policy, keys, error));
+                });
+    }
+
+    private static RateLimitResult recorded(RateLimitMeters meters, RateLimitResult result){
+        meters.decision(result.isAllowed());
+        return result;
+    }
+
+    private RateLimitResult onRedisError(String rateLimitType, Policy policy, String[] keys, Throwable error){
+        if(error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+        if(!degradationProperties.isEnabled()){
+            if(error instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException("Composite rate limit check failed for type: "+rateLimitType, error);
+        }
+        circuitBreaker.onError();
+        return degraded(rateLimitType, policy, keys);
+    }
+
+    /**
+     * Decision taken without Redis, according to the type's {@link DegradedPolicy}.
+     */
+    private RateLimitResult degraded(String rateLimitType, Policy policy, String[] keys){
+        rateLimitMetrics.composite(rateLimitType).degraded();
+        switch (degradationProperties.policyFor(rateLimitType)){
+            case FAIL_OPEN:
+                return new RateLimitResult(true, policy.lowestLimit(), 0, ALGORITHM, null);
+            case FAIL_CLOSED:
+                long retryNanos = Math.max(circuitBreaker.nanosUntilRetry(), 1);
+                return new RateLimitResult(false, 0, toWaitSeconds(TimeUnit.NANOSECONDS.toMillis(retryNanos) + 1), ALGORITHM, null);
+            default:
+                return local(policy, keys);
+        }
+    }
+
+    // All or nothing across the local buckets as far as a check then consume allows; close enough for a fallback
+    private RateLimitResult local(Policy policy, String[] keys){
+        int failed = -1;
+        long waitNanos = 0;
+        for(int i = 0; i < keys.length; i++){
+            EstimationProbe probe = localFallbackRateLimiter.estimate(keys[i], policy.localConfigurations[i], 1);
+            if(!probe.canBeConsumed()){
+                if(failed < 0) failed = i;
+                waitNanos = Math.max(waitNanos, probe.getNanosToWaitForRefill());
+            }
+        }
+        long remaining = Long.MAX_VALUE;
+        for(int i = 0; failed < 0 && i < keys.length; i++){
+            ConsumptionProbe probe = localFallbackRateLimiter.tryConsume(keys[i], policy.localConfigurations[i], 1);
+            if(!probe.isConsumed()){
+                failed = i;
+                waitNanos = probe.getNanosToWaitForRefill();
+            }
+            remaining = Math.min(remaining, probe.getRemainingTokens());
+        }
+        if(failed >= 0){
+            long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+            return new RateLimitResult(false, 0, toWaitSeconds(waitMillis), ALGORITHM, policy.names[failed]);
+        }
+        return new RateLimitResult(true, remaining, 0, ALGORITHM, null);
+    }
+
+    private Policy policy(String rateLimitType){
+        Policy policy = policies.get(rateLimitType);
+        if(policy == null){
+            throw new IllegalArgumentException("No composite rate limit policy for type: " + rateLimitType);
+        }
+        return policy;
+    }
+
+    private static int algorithmCode(CompositeLimitAlgorithm algorithm){
+        return switch (algorithm) {
+            case TOKEN_BUCKET -> 1;
+            case FIXED_WINDOW -> 2;
+            case SLIDING_WINDOW -> 3;
+        };
+    }
+
+    private static long toWaitSeconds(long retryAfterMillis){
+        // Round up so "0 seconds" is only reported when the caller may retry immediately
+        return retryAfterMillis <= 0 ? 0 : (retryAfterMillis + 999) / 1000;
+    }
+
+    /**
+     * One policy with its per limit key prefixes, scopes and script arguments.
+     */
+    private record Policy(String[] names, String[] scopes, String[] keyPrefixes, String[] args, byte[][] argBytes,
+                          BucketConfiguration[] localConfigurations) {
+
+        static Policy of(String type, List<CompositeRateLimitProperties.Limit> limits){
+            int size = limits.size();
+            String[] names = new String[size];
+            String[] scopes = new String[size];
+            String[] keyPrefixes = new String[size];
+            String[] args = new String[size * 3];
+            BucketConfiguration[] localConfigurations = new BucketConfiguration[size];
+            for(int i = 0; i < size; i++){
+                CompositeRateLimitProperties.Limit limit = limits.get(i);
+                if(limit.getLimit() < 1 || limit.getWindowSeconds() < 1){
+                    throw new IllegalStateException("Composite rate limit " + type + "[" + i + "] needs limit and window-seconds of at least 1");
+                }
+                names[i] = limit.getName() != null ? limit.getName() : type + "[" + i + "]";
+                scopes[i] = CompositeRateLimitProperties.GLOBAL.equalsIgnoreCase(limit.getScope()) ? null : limit.getScope();
+                keyPrefixes[i] = String.format("rate_limit:composite:{%s}:%s", type, names[i]);
+                args[3 * i] = String.valueOf(algorithmCode(limit.getAlgorithm()));
+                args[3 * i + 1] = String.valueOf(limit.getLimit());
+                args[3 * i + 2] = String.valueOf(TimeUnit.SECONDS.toMillis(limit.getWindowSeconds()));
+                localConfigurations[i] = localConfiguration(limit);
+            }
+            byte[][] argBytes = new byte[args.length][];
+            for(int i = 0; i < args.length; i++){
+                argBytes[i] = arg(args[i]);
+            }
+            return new Policy(names, scopes, keyPrefixes, args, argBytes, localConfigurations);
+        }
+
+        // Fixed windows refill all at once, the others gradually
+        private static BucketConfiguration localConfiguration(CompositeRateLimitProperties.Limit limit){
+            Duration window = Duration.ofSeconds(limit.getWindowSeconds());
+            Bandwidth bandwidth = limit.getAlgorithm() == CompositeLimitAlgorithm.FIXED_WINDOW
+                    ? Bandwidth.builder().capacity(limit.getLimit()).refillIntervally(limit.getLimit(), window).build()
+                    : Bandwidth.builder().capacity(limit.getLimit()).refillGreedy(limit.getLimit(), window).build();
+            return BucketConfiguration.builder().addLimit(bandwidth).build();
+        }
+
+        long lowestLimit(){
+            long lowest = Long.MAX_VALUE;
+            for(BucketConfiguration configuration : localConfigurations){
+                lowest = Math.min(lowest, configuration.getBandwidths()[0].getCapacity());
+            }
+            return lowest;
+        }
+
+        String[] keys(Function<String, String> hashedIdentifiers){
+            String[] keys = new String[keyPrefixes.length];
+            for(int i = 0; i < keys.length; i++){
+                if(scopes[i] == null){
+                    keys[i] = keyPrefixes[i];
+                    continue;
+                }
+                String identifier = hashedIdentifiers.apply(scopes[i]);
+                if(identifier == null){
+                    throw new IllegalArgumentException("No identifier for scope '" + scopes[i] + "' of rate limit " + names[i]);
+                }
+                keys[i] = keyPrefixes[i]+":"+identifier;
+            }
+            return keys;
+        }
+
+        RateLimitResult toResult(List<?> reply){
+            if(reply == null || reply.size() < 4){
+                // Never happens against a real server; treat it like a Redis failure
+                throw new IllegalStateException("Unexpected composite rate limit script reply: " + reply);
+            }
+            boolean allowed = ((Number) reply.get(0)).longValue() == 1L;
+            int failedIndex = (int) ((Number) reply.get(1)).longValue();
+            long remaining = ((Number) reply.get(2)).longValue();
+            long retryAfterMillis = ((Number) reply.get(3)).longValue();
+            String failedLimit = failedIndex > 0 ? names[failedIndex - 1] : null;
+            return new RateLimitResult(allowed, remaining, toWaitSeconds(retryAfterMillis), ALGORITHM, failedLimit);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.responseEntity.RateLimitInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory attempt tracker.
+ * Entries expire a window after their first attempt through Caffeine's timing wheel and the
+ * total number of tracked identifiers is capped, so credential stuffing with random identifiers
+ * cannot grow the heap. Updates are atomic per key.
+ */
+@Service
+@ConditionalOnProperty(name = "app.rate-limit.attempts.store", havingValue = "local", matchIfMissing = true)
+public class LocalAttemptTracker implements AttemptTracker {
+
+    private final Cache<String, Attempts> attempts;
+
+    private final int maxAttempts;
+
+    public LocalAttemptTracker(@Value("${app.rate-limit.max-attempts:5}") int maxAttempts,
+                               @Value("${app.rate-limit.window-minutes:15}") int windowMinutes,
+                               @Value("${app.rate-limit.attempts.maximum-size:100000}") long maximumSize) {
+        this.maxAttempts = maxAttempts;
+        this.attempts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new WindowExpiry(TimeUnit.MINUTES.toMillis(windowMinutes)))
+                .build();
+    }
+
+    @Override
+    public void recordAttempt(String key, boolean success){
+        long now = System.currentTimeMillis();
+        // compute on the map view never sees an expired entry, so a stale window starts over
+        attempts.asMap().compute(key, (k, current) -> {
+            if(success) return new Attempts(current == null ? now : current.firstAttemptMillis(), now, 0, false);
+            int count = current == null ? 1 : current.attemptCount() + 1;
+            return new Attempts(current == null ? now : current.firstAttemptMillis(), now, count, count >= maxAttempts);
+        });
+    }
+
+    @Override
+    public RateLimitInfo getAttempts(String key){
+        Attempts current = attempts.getIfPresent(key);
+        return current == null ? new RateLimitInfo() : current.toInfo();
+    }
+
+    private record Attempts(long firstAttemptMillis, long lastAttemptMillis, int attemptCount, boolean blocked) {
+
+        RateLimitInfo toInfo(){
+            RateLimitInfo info = new RateLimitInfo();
+            info.setFirstAttempt(toDateTime(firstAttemptMillis));
+            info.setLastAttempt(toDateTime(lastAttemptMillis));
+            info.setAttemptCount(attemptCount);
+            info.setBlocked(blocked);
+            return info;
+        }
+    }
+
+    static LocalDateTime toDateTime(long epochMillis){
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    // Fixed window anchored at the first attempt; later updates keep the original deadline
+    private record WindowExpiry(long windowMillis) implements Expiry<String, Attempts> {
+
+        @Override
+        public long expireAfterCreate(String key, Attempts value, long currentTime){
+            return remaining(value);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Attempts value, long currentTime, long currentDuration){
+            return remaining(value);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Attempts value, long currentTime, long currentDuration){
+            return currentDuration;
+        }
+
+        private long remaining(Attempts value){
+            long millis = value.firstAttemptMillis() + windowMillis - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.EstimationProbe;
+import io.github.bucket4j.local.LocalBucketBuilder;
+
+import java.time.Duration;
+
+/**
+ * Approximate, per node stand-in for the Redis token buckets while Redis is unavailable.
+ * Each bandwidth of the distributed configuration is divided by the configured node count,
+ * so the cluster as a whole stays close to the intended limit.
+ */
+class LocalFallbackRateLimiter {
+
+    private final int nodeCount;
+
+    private final Cache<String, Bucket> buckets;
+
+    LocalFallbackRateLimiter(RateLimitDegradationProperties properties) {
+        this.nodeCount = Math.max(1, properties.getNodeCount());
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalBucketsMaximumSize())
+                .build();
+    }
+
+    ConsumptionProbe tryConsume(String key, BucketConfiguration configuration, long tokens){
+        return bucket(key, configuration).tryConsumeAndReturnRemaining(tokens);
+    }
+
+    EstimationProbe estimate(String key, BucketConfiguration configuration, long tokens){
+        return bucket(key, configuration).estimateAbilityToConsume(tokens);
+    }
+
+    private Bucket bucket(String key, BucketConfiguration configuration){
+        return buckets.get(key, k -> createBucket(configuration));
+    }
+
+    private Bucket createBucket(BucketConfiguration configuration){
+        LocalBucketBuilder builder = Bucket.builder();
+        for(Bandwidth bandwidth : configuration.getBandwidths()){
+            builder.addLimit(perNode(bandwidth));
+        }
+        return builder.build();
+    }
+
+    private Bandwidth perNode(Bandwidth bandwidth){
+        long capacity = Math.max(1, bandwidth.getCapacity() / nodeCount);
+        long refillTokens = Math.max(1, bandwidth.getRefillTokens() / nodeCount);
+        Duration period = Duration.ofNanos(bandwidth.getRefillPeriodNanos());
+        return bandwidth.isRefillIntervally()
+                ? Bandwidth.builder().capacity(capacity).refillIntervally(refillTokens, period).build()
+                : Bandwidth.builder().capacity(capacity).refillGreedy(refillTokens, period).build();
+    }
+}
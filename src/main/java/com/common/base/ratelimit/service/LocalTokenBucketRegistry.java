@@ -0,0 +1,252 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.LocalBucketProperties;
+import com.common.base.util.ExecutorFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zero network token buckets for per node protection.
+ *
+ * Keys are reduced to a 64 bit hash and stored in segmented open addressing tables made of
+ * primitive arrays (hash, tokens, last refill, last access), so a tracked key costs 32 bytes
+ * and no objects. Two keys sharing a 64 bit hash share a bucket, which is acceptable for
+ * rate limiting. Each segment holds at most its share of {@code maxEntries}; when full, the
+ * least recently used entry of a small sample is evicted. Idle entries are swept periodically.
+ *
+ * Refill follows Bucket4j's intervally semantics: whole batches of refill tokens per elapsed period.
+ */
+@Service
+@Slf4j
+public class LocalTokenBucketRegistry {
+
+    private static final int INITIAL_SEGMENT_SLOTS = 16;
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    private final long idleTimeoutNanos;
+
+    private final ScheduledExecutorService sweeper;
+
+    public LocalTokenBucketRegistry(LocalBucketProperties properties) {
+        if(properties.getMaxEntries() <= 0 || properties.getIdleTimeoutMinutes() <= 0 || properties.getSweepIntervalSeconds() <= 0){
+            throw new IllegalArgumentException("Local bucket maxEntries, idleTimeoutMinutes and sweepIntervalSeconds must be positive: " + properties);
+        }
+        int segmentCount = ceilingPowerOfTwo(Math.max(1, properties.getSegments()));
+        int entriesPerSegment = Math.max(1, (properties.getMaxEntries() + segmentCount - 1) / segmentCount);
+        this.segments = new Segment[segmentCount];
+        for(int i=0;i< segmentCount;i++){
+            segments[i] = new Segment(entriesPerSegment);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.idleTimeoutNanos = TimeUnit.MINUTES.toNanos(properties.getIdleTimeoutMinutes());
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(ExecutorFactory.daemonThreadFactory("local-bucket-sweeper"));
+        this.sweeper.scheduleWithFixedDelay(this::evictIdle,
+                properties.getSweepIntervalSeconds(), properties.getSweepIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the capacity, refill tokens or refill period is not positive
+     */
+    public boolean tryConsume(String key, long capacity, long refillTokens, long refillPeriodNanos, long tokens){
+        if(capacity <= 0 || refillTokens <= 0 || refillPeriodNanos <= 0){
+            throw new IllegalArgumentException("Token bucket capacity, refill tokens and refill period must be positive: "
+                    + capacity + ", " + refillTokens + ", " + refillPeriodNanos + "ns");
+        }
+        long hash = hash(key);
+        Segment segment = segments[(int) (hash >>> 32) & segmentMask];
+        return segment.tryConsume(hash, capacity, refillTokens, refillPeriodNanos, tokens, System.nanoTime());
+    }
+
+    public int size(){
+        int size = 0;
+        for(Segment segment : segments){
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private void evictIdle(){
+        long now = System.nanoTime();
+        int evicted = 0;
+        for(Segment segment : segments){
+            evicted += segment.evictIdle(now, idleTimeoutNanos);
+        }
+        if(evicted > 0) log.debug("Evicted {} idle local token buckets", evicted);
+    }
+
+    // FNV-1a over the chars, finished with the MurmurHash3 fmix64 step; never returns the empty marker 0
+    static long hash(String key){
+        long h = 0xcbf29ce484222325L;
+        for(int i=0;i< key.length();i++){
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static int ceilingPowerOfTwo(int value){
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    static final class Segment {
+
+        private final int maxEntries;
+
+        private final int maxSlots;
+
+        // Parallel arrays indexed by slot; hashes[slot] == 0 marks an empty slot. Guarded by this.
+        private long[] hashes = new long[INITIAL_SEGMENT_SLOTS];
+        private long[] tokens = new long[INITIAL_SEGMENT_SLOTS];
+        private long[] refilledAt = new long[INITIAL_SEGMENT_SLOTS];
+        private long[] accessedAt = new long[INITIAL_SEGMENT_SLOTS];
+        private int size;
+        private int sampleSeed = 1;
+
+        Segment(int maxEntries) {
+            this.maxEntries = maxEntries;
+            // Keep the load factor at or below 0.75 even when full
+            this.maxSlots = Math.max(INITIAL_SEGMENT_SLOTS, ceilingPowerOfTwo((int) Math.min(1 << 30, maxEntries * 4L / 3 + 1)));
+        }
+
+        synchronized int size(){
+            return size;
+        }
+
+        synchronized boolean tryConsume(long hash, long capacity, long refillTokens, long refillPeriodNanos, long requested, long now){
+            int slot = find(hash);
+            if(slot < 0){
+                if(size >= maxEntries) evictSampled();
+                growIfNeeded();
+                slot = ~find(hash);
+                hashes[slot] = hash;
+                tokens[slot] = capacity;
+                refilledAt[slot] = now;
+                size++;
+            } else {
+                refill(slot, capacity, refillTokens, refillPeriodNanos, now);
+            }
+            accessedAt[slot] = now;
+            if(tokens[slot] >= requested){
+                tokens[slot] -= requested;
+                return true;
+            }
+            return false;
+        }
+
+        private void refill(int slot, long capacity, long refillTokens, long refillPeriodNanos, long now){
+            long periods = (now - refilledAt[slot]) / refillPeriodNanos;
+            if(periods <= 0){
+                tokens[slot] = Math.min(tokens[slot], capacity);
+                return;
+            }
+            long missing = capacity - tokens[slot];
+            long periodsToFull = missing <= 0 ? 0 : (missing + refillTokens - 1) / refillTokens;
+            tokens[slot] = periods >= periodsToFull ? capacity : tokens[slot] + periods * refillTokens;
+            refilledAt[slot] += periods * refillPeriodNanos;
+        }
+
+        // Slot of the hash, or the bitwise complement of the empty slot where it would go
+        int find(long hash){
+            int mask = hashes.length - 1;
+            int slot = (int) hash & mask;
+            while (hashes[slot] != 0){
+                if(hashes[slot] == hash) return slot;
+                slot = (slot + 1) & mask;
+            }
+            return ~slot;
+        }
+
+        private void growIfNeeded(){
+            if((size + 1) * 4L <= hashes.length * 3L || hashes.length >= maxSlots) return;
+            long[] oldHashes = hashes;
+            long[] oldTokens = tokens;
+            long[] oldRefilledAt = refilledAt;
+            long[] oldAccessedAt = accessedAt;
+            int length = oldHashes.length * 2;
+            hashes = new long[length];
+            tokens = new long[length];
+            refilledAt = new long[length];
+            accessedAt = new long[length];
+            for(int i=0;i< oldHashes.length;i++){
+                if(oldHashes[i] == 0) continue;
+                int slot = ~find(oldHashes[i]);
+                hashes[slot] = oldHashes[i];
+                tokens[slot] = oldTokens[i];
+                refilledAt[slot] = oldRefilledAt[i];
+                accessedAt[slot] = oldAccessedAt[i];
+            }
+        }
+
+        // Approximate LRU: drop the oldest of a few occupied slots starting at a pseudo random position
+        private void evictSampled(){
+            int mask = hashes.length - 1;
+            sampleSeed ^= sampleSeed << 13;
+            sampleSeed ^= sampleSeed >>> 17;
+            sampleSeed ^= sampleSeed << 5;
+            int slot = sampleSeed & mask;
+            int victim = -1;
+            for(int seen = 0, scanned = 0; seen < EVICTION_SAMPLE && scanned < hashes.length; scanned++){
+                if(hashes[slot] != 0){
+                    if(victim < 0 || accessedAt[slot] - accessedAt[victim] < 0) victim = slot;
+                    seen++;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if(victim >= 0) remove(victim);
+        }
+
+        synchronized int evictIdle(long now, long idleTimeoutNanos){
+            int evicted = 0;
+            for(int slot = 0; slot < hashes.length; ){
+                if(hashes[slot] != 0 && now - accessedAt[slot] > idleTimeoutNanos){
+                    // Backward shift may move another entry into this slot, so look at it again
+                    remove(slot);
+                    evicted++;
+                } else {
+                    slot++;
+                }
+            }
+            return evicted;
+        }
+
+        // Linear probing removal with backward shift, no tombstones
+        private void remove(int slot){
+            int mask = hashes.length - 1;
+            int hole = slot;
+            int next = slot;
+            while (true){
+                next = (next + 1) & mask;
+                if(hashes[next] == 0) break;
+                int home = (int) hashes[next] & mask;
+                boolean stays = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+                if(stays) continue;
+                hashes[hole] = hashes[next];
+                tokens[hole] = tokens[next];
+                refilledAt[hole] = refilledAt[next];
+                accessedAt[hole] = accessedAt[next];
+                hole = next;
+            }
+            hashes[hole] = 0;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.common.base.ratelimit.service;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * Redis keys of the sliding window and token bucket limiters.
+ * Identifiers are stored as their MD5 hex digest, so keys have a fixed length and carry no client data.
+ */
+final class RateLimitKeys {
+
+    private RateLimitKeys() {
+    }
+
+    static String forIdentifier(String identifier, String rateLimitType){
+        return toRedisKey(rateLimitType, hashIdentifier(identifier));
+    }
+
+    // The identifier is a hash tag, so every key of one identifier maps to the same cluster slot
+    static String toRedisKey(String rateLimitType, String hashedIdentifier){
+        return String.format("rate_limit:%s:{%s}", rateLimitType, hashedIdentifier);
+    }
+
+    // SCAN pattern of every key of the type, derived keys such as the sliding window counter included;
+    // glob characters in the type match literally
+    static String patternForType(String rateLimitType){
+        return String.format("rate_limit:%s:*", rateLimitType.replaceAll("([*?\\[\\]\\\\])", "\\\\$1"));
+    }
+
+    static String hashIdentifier(String identifier){
+        return DigestUtils.md5DigestAsHex(identifier.getBytes());
+    }
+}
@@ -0,0 +1,170 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RateLimitStatsProperties;
+import com.common.base.ratelimit.responseEntity.RateLimitStats;
+import com.common.base.redis.service.AsyncRedisScriptExecutor;
+import com.common.base.util.ExecutorFactory;
+import io.lettuce.core.ScriptOutputType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.common.base.redis.service.AsyncRedisScriptExecutor.arg;
+
+/**
+ * Request statistics kept next to the rate limit state in Redis.
+ * Decisions are counted in memory, so recording one never touches Redis, including decisions served
+ * from a token lease or by the degraded policy. A background thread writes the counts of each
+ * identifier once per flush interval as a Lua script on the shared Lettuce connection, without
+ * awaiting it. Timestamps and minute slots are therefore accurate to the flush interval, and a lost
+ * update only makes the statistics slightly low. Each hash expires once its identifier has been idle for the TTL.
+ */
+@Service
+@Slf4j
+public class RateLimitStatsRecorder {
+
+    private static final String KEY_PREFIX = "rate_limit:stats:";
+
+    private static final RedisScript<Long> RECORD_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/ratelimit/record-stats.lua"), Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final AsyncRedisScriptExecutor asyncScriptExecutor;
+
+    private final boolean enabled;
+
+    private final int minuteSlots;
+
+    private final byte[] rawMinuteSlots;
+
+    private final byte[] rawTtlMillis;
+
+    private final Map<String, Counts> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    public RateLimitStatsRecorder(RedisTemplate<String, Object> redisTemplate, AsyncRedisScriptExecutor asyncScriptExecutor,
+                                  RateLimitStatsProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.asyncScriptExecutor = asyncScriptExecutor;
+        this.enabled = properties.isEnabled();
+        this.minuteSlots = Math.max(1, properties.getMinuteSlots());
+        this.rawMinuteSlots = arg(minuteSlots);
+        this.rawTtlMillis = arg(TimeUnit.MINUTES.toMillis(Math.max(1, properties.getTtlMinutes())));
+        if(enabled){
+            long interval = Math.max(1, properties.getFlushIntervalMillis());
+            this.flusher = Executors.newSingleThreadScheduledExecutor(ExecutorFactory.daemonThreadFactory("rate-limit-stats-flusher"));
+            this.flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        if(flusher == null) return;
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Counts one decision in memory.
+     * @param hashedIdentifier the identifier as it appears in the rate limit key
+     */
+    public void record(String rateLimitType, String hashedIdentifier, boolean allowed){
+        if(!enabled) return;
+        // Counted under the map's lock, so flush can never drop an entry between lookup and increment
+        pending.compute(statsKey(rateLimitType, hashedIdentifier), (key, counts) -> {
+            Counts current = counts != null ? counts : new Counts();
+            current.requests++;
+            if(!allowed) current.blocked++;
+            return current;
+        });
+    }
+
+    // Identifiers without requests since the last flush are dropped from the map
+    void flush(){
+        long[] drained = new long[2];
+        for(String key : pending.keySet()){
+            drained[0] = 0;
+            drained[1] = 0;
+            pending.computeIfPresent(key, (ignored, counts) -> {
+                drained[0] = counts.requests;
+                drained[1] = counts.blocked;
+                counts.requests = 0;
+                counts.blocked = 0;
+                return drained[0] == 0 ? null : counts;
+            });
+            long requests = drained[0];
+            long blocked = drained[1];
+            if(requests == 0) continue;
+            try {
+                asyncScriptExecutor.<Long>execute(RECORD_SCRIPT, ScriptOutputType.INTEGER, new String[]{key},
+                                arg(requests), arg(blocked), rawMinuteSlots, rawTtlMillis)
+                        .whenComplete((ignored, error) -> {
+                            if(error != null) log.debug("Failed to record rate limit stats for key: {}", key, error);
+                        });
+            } catch (RuntimeException e) {
+                log.debug("Failed to record rate limit stats for key: {}", key, e);
+            }
+        }
+    }
+
+    public RateLimitStats read(String rateLimitType, String hashedIdentifier){
+        byte[] rawKey = statsKey(rateLimitType, hashedIdentifier).getBytes(StandardCharsets.UTF_8);
+        Map<byte[], byte[]> raw = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection -> connection.hashCommands().hGetAll(rawKey));
+        RateLimitStats stats = new RateLimitStats();
+        if(raw == null || raw.isEmpty()) return stats;
+
+        Map<String, Long> fields = new HashMap<>(raw.size() * 2);
+        raw.forEach((field, value) -> fields.put(new String(field, StandardCharsets.UTF_8), Long.parseLong(new String(value, StandardCharsets.UTF_8))));
+
+        long first = fields.getOrDefault("first", 0L);
+        long last = fields.getOrDefault("last", first);
+        stats.setFirstRequest(LocalAttemptTracker.toDateTime(first));
+        stats.setLastRequest(LocalAttemptTracker.toDateTime(last));
+        stats.setTotalRequests(fields.getOrDefault("total", 0L));
+        stats.setBlockedRequests(fields.getOrDefault("blocked", 0L));
+        stats.setRequestsPerMinute(requestsPerMinute(fields, first, last));
+        return stats;
+    }
+
+    // Same hash tag as the rate limit keys of the identifier
+    private static String statsKey(String rateLimitType, String hashedIdentifier){
+        return KEY_PREFIX + rateLimitType + ":{" + hashedIdentifier + "}";
+    }
+
+    // Average over the minutes of the ring that have passed since the first request
+    private double requestsPerMinute(Map<String, Long> fields, long first, long last){
+        // Minutes are stamped with the Redis clock, so never look at a ring position older than its last write
+        long currentMinute = Math.max(TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis()), TimeUnit.MILLISECONDS.toMinutes(last));
+        long oldestMinute = Math.max(currentMinute - minuteSlots + 1, TimeUnit.MILLISECONDS.toMinutes(first));
+        long requests = 0;
+        for(int slot = 0; slot < minuteSlots; slot++){
+            Long minute = fields.get("m" + slot);
+            if(minute != null && minute >= oldestMinute && minute <= currentMinute){
+                requests += fields.getOrDefault("c" + slot, 0L);
+            }
+        }
+        return (double) requests / (currentMinute - oldestMinute + 1);
+    }
+
+    // Only read and written inside compute calls on its map entry
+    private static final class Counts {
+        private long requests;
+        private long blocked;
+    }
+}
@@ -1,21 +1,22 @@
 package com.common.base.ratelimit.service;
 
+import com.common.base.ratelimit.enums.RateLimitType;
+import com.common.base.ratelimit.metrics.RateLimitMeters;
+import com.common.base.ratelimit.metrics.RateLimitMetrics;
 import com.common.base.ratelimit.responseEntity.BucketRateLimitInfo;
 import com.common.base.ratelimit.responseEntity.RateLimitStats;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Bucket4j;
-import io.github.bucket4j.Refill;
+import com.common.base.redis.service.BulkDeletion;
+import com.common.base.redis.service.RedisBulkDeleter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.util.DigestUtils;
 
-import java.time.Duration;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Service
 @Slf4j
@@ -25,6 +26,18 @@ public class RateLimitingService {
 
     private final TokenBucketRateLimiter tokenBucketRateLimiter;
 
+    private final SlidingWindowRateLimiter slidingWindowRateLimiter;
+
+    private final LocalTokenBucketRegistry localTokenBucketRegistry;
+
+    private final RedisBulkDeleter redisBulkDeleter;
+
+    private final RateLimitMetrics rateLimitMetrics;
+
+    private final RateLimitStatsRecorder rateLimitStatsRecorder;
+
+    private final CompositeRateLimiter compositeRateLimiter;
+
     private static final String RATE_LIMIT_PREFIX = "rate_limit:";
 
     // Rate limit types
@@ -33,20 +46,36 @@ public class RateLimitingService {
     public static final String RATE_LIMIT_LOGIN = "LOGIN_ATTEMPTS";
     public static final String RATE_LIMIT_API = "API_GENERAL";
 
-    public RateLimitingService(RedisTemplate<String, Object> redisTemplate, TokenBucketRateLimiter tokenBucketRateLimiter) {
+    public RateLimitingService(RedisTemplate<String, Object> redisTemplate, TokenBucketRateLimiter tokenBucketRateLimiter,
+                               SlidingWindowRateLimiter slidingWindowRateLimiter, LocalTokenBucketRegistry localTokenBucketRegistry,
+                               RedisBulkDeleter redisBulkDeleter, RateLimitMetrics rateLimitMetrics,
+                               RateLimitStatsRecorder rateLimitStatsRecorder, CompositeRateLimiter compositeRateLimiter) {
         this.redisTemplate = redisTemplate;
         this.tokenBucketRateLimiter = tokenBucketRateLimiter;
+        this.slidingWindowRateLimiter = slidingWindowRateLimiter;
+        this.localTokenBucketRegistry = localTokenBucketRegistry;
+        this.redisBulkDeleter = redisBulkDeleter;
+        this.rateLimitMetrics = rateLimitMetrics;
+        this.rateLimitStatsRecorder = rateLimitStatsRecorder;
+        this.compositeRateLimiter = compositeRateLimiter;
     }
 
     // Token Bucket based rate limiting (Primary method)
     public RateLimitResult checkRateLimit(String identifier, String rateLimitType){
-        String key = buildRedisKey(identifier, rateLimitType);
-        BucketRateLimitInfo rateLimitInfo = tokenBucketRateLimiter.getRateLimitInfo(key, rateLimitType);
+        String hashedIdentifier = RateLimitKeys.hashIdentifier(identifier);
+        BucketRateLimitInfo rateLimitInfo = tokenBucketRateLimiter.getRateLimitInfo(RateLimitKeys.toRedisKey(rateLimitType, hashedIdentifier), rateLimitType);
+        rateLimitStatsRecorder.record(rateLimitType, hashedIdentifier, rateLimitInfo.isAllowed());
         return new RateLimitResult(rateLimitInfo.isAllowed(), rateLimitInfo.getRemainingEstimate(), rateLimitInfo.getWaitSeconds(), "TokenBucket");
     }
 
-    private String buildRedisKey(String identifier, String rateLimitType){
-        return String.format("rate_limit:%s:%s", rateLimitType, DigestUtils.md5DigestAsHex(identifier.getBytes()));
+    // Non blocking token bucket check
+    public CompletableFuture<RateLimitResult> checkRateLimitAsync(String identifier, String rateLimitType){
+        String hashedIdentifier = RateLimitKeys.hashIdentifier(identifier);
+        return tokenBucketRateLimiter.getRateLimitInfoAsync(RateLimitKeys.toRedisKey(rateLimitType, hashedIdentifier), rateLimitType)
+                .thenApply(rateLimitInfo -> {
+                    rateLimitStatsRecorder.record(rateLimitType, hashedIdentifier, rateLimitInfo.isAllowed());
+                    return new RateLimitResult(rateLimitInfo.isAllowed(), rateLimitInfo.getRemainingEstimate(), rateLimitInfo.getWaitSeconds(), "TokenBucket");
+                });
     }
 
     // Fixed Window Rate Limiting
@@ -59,64 +88,111 @@ public class RateLimitingService {
         return currentCount != null && currentCount <= maxRequests;
     }
 
-    // Sliding Window Rate Limiting
+    // Sliding Window Rate Limiting, sorted set log or weighted two window counter per base.rate-limit.sliding-window
     public boolean isAllowedSlidingWindow(String key, int maxRequest, int windowSeconds){
-        String redisKey = RATE_LIMIT_PREFIX+"sliding:"+key;
-        long currentTime = System.currentTimeMillis();
-        long windowStart = currentTime - (windowSeconds * 1000L);
-        // Remove outdated timestamps
-        redisTemplate.opsForZSet().removeRangeByScore(redisKey,0, windowStart);
+        return checkSlidingWindow(key, maxRequest, windowSeconds).isAllowed();
+    }
+
+    // Sliding Window Rate Limiting with remaining count and retry-after, one atomic round trip
+    public RateLimitResult checkSlidingWindow(String key, int maxRequest, int windowSeconds){
+        return slidingWindow(null, RATE_LIMIT_PREFIX+"sliding:"+key, maxRequest, windowSeconds);
+    }
 
-        // Count requests in current window
-        Long currentCount = redisTemplate.opsForZSet().count(redisKey, windowStart, currentTime);
+    // Same key as checkSlidingWindow(type+":"+identifier, ...), metered per type
+    public RateLimitResult checkSlidingWindow(RateLimitType type, String identifier, int maxRequest, int windowSeconds){
+        RateLimitResult result = slidingWindow(type, RATE_LIMIT_PREFIX+"sliding:"+type+":"+identifier, maxRequest, windowSeconds);
+        rateLimitStatsRecorder.record(type.name(), RateLimitKeys.hashIdentifier(identifier), result.isAllowed());
+        return result;
+    }
 
-        if(currentCount != null && currentCount < maxRequest){
-            redisTemplate.opsForZSet().add(redisKey, String.valueOf(currentTime), currentTime);
-            redisTemplate.expire(redisKey, windowSeconds, TimeUnit.SECONDS);
-            return true;
-        }
-        return false;
+    // The type picks the algorithm and the meters, null for the untyped checks
+    private RateLimitResult slidingWindow(RateLimitType type, String redisKey, int maxRequest, int windowSeconds){
+        RateLimitMeters meters = rateLimitMetrics.slidingWindow(type);
+        long start = System.nanoTime();
+        RateLimitResult result = slidingWindowRateLimiter.check(type, redisKey, maxRequest, windowSeconds);
+        meters.redisCall(System.nanoTime() - start);
+        meters.decision(result.isAllowed());
+        return result;
     }
 
-    // Token Bucket Rate Limiting using Bucket4j
-    public boolean isAllowedTokenBucket(String key, int capacity, int refillTokens, int refillSeconds){
-        String redisKey = RATE_LIMIT_PREFIX+"token:"+key;
-        // Get or create bucket
-        Bucket bucket = getBucket(redisKey, capacity, refillTokens, refillSeconds);
-        return bucket.tryConsume(1);
+    // Non blocking sliding window check
+    public CompletableFuture<RateLimitResult> checkSlidingWindowAsync(String key, int maxRequest, int windowSeconds){
+        return slidingWindowAsync(null, RATE_LIMIT_PREFIX+"sliding:"+key, maxRequest, windowSeconds);
     }
 
-    private Bucket getBucket(String key, int capacity, int refillTokens, int refillSeconds){
-        Refill refill = Refill.intervally(refillTokens, Duration.ofSeconds(refillSeconds));
-        Bandwidth limit = Bandwidth.classic(capacity, refill);
-        return Bucket4j.builder()
-                .addLimit(limit)
-                .build();
+    public CompletableFuture<RateLimitResult> checkSlidingWindowAsync(RateLimitType type, String identifier, int maxRequest, int windowSeconds){
+        return slidingWindowAsync(type, RATE_LIMIT_PREFIX+"sliding:"+type+":"+identifier, maxRequest, windowSeconds)
+                .thenApply(result -> {
+                    rateLimitStatsRecorder.record(type.name(), RateLimitKeys.hashIdentifier(identifier), result.isAllowed());
+                    return result;
+                });
     }
 
-    public RateLimitResult checkCompositeRateLimit(String identifier, String rateLimitType){
-        // First check token bucket
-        RateLimitResult tokenBucketResult = checkRateLimit(identifier, rateLimitType);
+    private CompletableFuture<RateLimitResult> slidingWindowAsync(RateLimitType type, String redisKey, int maxRequest, int windowSeconds){
+        RateLimitMeters meters = rateLimitMetrics.slidingWindow(type);
+        long start = System.nanoTime();
+        return slidingWindowRateLimiter.checkAsync(type, redisKey, maxRequest, windowSeconds)
+                .thenApply(result -> {
+                    meters.redisCall(System.nanoTime() - start);
+                    meters.decision(result.isAllowed());
+                    return result;
+                });
+    }
+
+    // Node local token bucket, no Redis round trip; limits apply per node
+    public boolean isAllowedTokenBucket(String key, int capacity, int refillTokens, int refillSeconds){
+        String bucketKey = RATE_LIMIT_PREFIX+"token:"+key;
+        return localTokenBucketRegistry.tryConsume(bucketKey, capacity, refillTokens, TimeUnit.SECONDS.toNanos(refillSeconds), 1);
+    }
 
-        if (!tokenBucketResult.isAllowed()) {
-            log.warn("Rate limit exceeded for {} using TokenBucket. Identifier: {}",
-                    rateLimitType, identifier);
+    // All limits of the type's base.rate-limit.composite policy in one round trip, every scoped limit counted by
+    // the identifier; without a policy only the token bucket is checked
+    public RateLimitResult checkCompositeRateLimit(String identifier, String rateLimitType){
+        if(!compositeRateLimiter.hasPolicy(rateLimitType)){
+            RateLimitResult tokenBucketResult = checkRateLimit(identifier, rateLimitType);
+            if (!tokenBucketResult.isAllowed()) {
+                log.warn("Rate limit exceeded for {} using TokenBucket. Identifier: {}",
+                        rateLimitType, identifier);
+                tokenBucketResult.setFailedLimit(rateLimitType);
+            }
             return tokenBucketResult;
         }
+        String hashedIdentifier = RateLimitKeys.hashIdentifier(identifier);
+        RateLimitResult result = checkComposite(rateLimitType, scope -> hashedIdentifier);
+        rateLimitStatsRecorder.record(rateLimitType, hashedIdentifier, result.isAllowed());
+        return result;
+    }
+
+    // Composite check with one identifier per scope, e.g. {ip: 10.0.0.1, user: 42, tenant: acme}
+    public RateLimitResult checkCompositeRateLimit(String rateLimitType, Map<String, String> identifiers){
+        return checkComposite(rateLimitType, scope -> hashScopeIdentifier(identifiers, scope));
+    }
+
+    // Non blocking composite check
+    public CompletableFuture<RateLimitResult> checkCompositeRateLimitAsync(String rateLimitType, Map<String, String> identifiers){
+        return compositeRateLimiter.checkAsync(rateLimitType, scope -> hashScopeIdentifier(identifiers, scope));
+    }
 
-        // Additional checks can be added here
-        // For example, you might want to check fixed window as a secondary measure
+    // Metered, and degraded while Redis is unavailable, by the composite limiter itself
+    private RateLimitResult checkComposite(String rateLimitType, Function<String, String> hashedIdentifiers){
+        RateLimitResult result = compositeRateLimiter.check(rateLimitType, hashedIdentifiers);
+        if(!result.isAllowed()){
+            log.warn("Rate limit exceeded for {} by limit {}", rateLimitType, result.getFailedLimit());
+        }
+        return result;
+    }
 
-        return tokenBucketResult;
+    private static String hashScopeIdentifier(Map<String, String> identifiers, String scope){
+        String identifier = identifiers.get(scope);
+        return identifier != null ? RateLimitKeys.hashIdentifier(identifier) : null;
     }
 
     // Reset rate limit for a specific identifier
     public void resetRateLimit(String identifier, String rateLimitType){
         try {
-            String pattern = buildRedisKey(identifier, rateLimitType);
-            Set<String> keys = redisTemplate.keys(pattern);
-            if(!keys.isEmpty()){
-                redisTemplate.delete(keys);
+            // The key is exact, so no keyspace walk is needed; UNLINK frees the value off the main thread
+            String key = RateLimitKeys.forIdentifier(identifier, rateLimitType);
+            if(Boolean.TRUE.equals(redisTemplate.unlink(key))){
                 log.info("Reset rate limit for identifier: {}, type: {}", identifier, rateLimitType);
             }
         } catch (Exception e) {
@@ -124,12 +200,15 @@ public class RateLimitingService {
         }
     }
 
-    // Get rate limit statistics
+    // Reset every identifier of a rate limit type in the background, SCAN + UNLINK in batches
+    public BulkDeletion resetAllRateLimits(String rateLimitType){
+        return redisBulkDeleter.deleteByPatternAsync(RateLimitKeys.patternForType(rateLimitType));
+    }
+
+    // Get rate limit statistics, recorded by checkRateLimit and the typed sliding window checks
     public RateLimitStats getRateLimitStats(String identifier, String rateLimitType){
-        String key = buildRedisKey(identifier, rateLimitType);
         try {
-            //TODO Implementation to gather statistics
-            return new RateLimitStats();
+            return rateLimitStatsRecorder.read(rateLimitType, RateLimitKeys.hashIdentifier(identifier));
         } catch (Exception e) {
             log.error("Failed to get rate limit stats for identifier: {}", identifier, e);
             return new RateLimitStats();
@@ -143,6 +222,12 @@ public class RateLimitingService {
         private long remainingRequests;
         private long waitTimeSeconds;
         private String algorithm;
+        // Name of the limit that rejected the request, null when allowed
+        private String failedLimit;
+
+        public RateLimitResult(boolean allowed, long remainingRequests, long waitTimeSeconds, String algorithm){
+            this(allowed, remainingRequests, waitTimeSeconds, algorithm, null);
+        }
 
         public boolean isRateLimited(){
             return !allowed;
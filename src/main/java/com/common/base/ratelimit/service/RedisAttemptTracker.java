@@ -0,0 +1,79 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.responseEntity.RateLimitInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attempt tracker shared by all nodes, one small Redis hash per identifier.
+ * Updates run in a Lua script, the hash expires a window after the first attempt.
+ */
+@Service
+@ConditionalOnProperty(name = "app.rate-limit.attempts.store", havingValue = "redis")
+public class RedisAttemptTracker implements AttemptTracker {
+
+    private static final String KEY_PREFIX = "rate_limit:attempts:";
+
+    private static final RedisScript<Long> RECORD_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/ratelimit/record-attempt.lua"), Long.class);
+
+    private static final RedisSerializer<String> STRING_SERIALIZER = new StringRedisSerializer();
+
+    private static final byte[][] FIELDS = {
+            bytes("first"), bytes("last"), bytes("count"), bytes("blocked")
+    };
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final int maxAttempts;
+
+    private final long windowMillis;
+
+    public RedisAttemptTracker(RedisTemplate<String, Object> redisTemplate,
+                               @Value("${app.rate-limit.max-attempts:5}") int maxAttempts,
+                               @Value("${app.rate-limit.window-minutes:15}") int windowMinutes) {
+        this.redisTemplate = redisTemplate;
+        this.maxAttempts = maxAttempts;
+        this.windowMillis = TimeUnit.MINUTES.toMillis(windowMinutes);
+    }
+
+    @Override
+    public void recordAttempt(String key, boolean success){
+        redisTemplate.execute(RECORD_SCRIPT, STRING_SERIALIZER, (RedisSerializer<Long>) null,
+                Collections.singletonList(KEY_PREFIX + key),
+                success ? "1" : "0", String.valueOf(maxAttempts), String.valueOf(windowMillis));
+    }
+
+    @Override
+    public RateLimitInfo getAttempts(String key){
+        byte[] rawKey = bytes(KEY_PREFIX + key);
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.hashCommands().hMGet(rawKey, FIELDS));
+        RateLimitInfo info = new RateLimitInfo();
+        if(values == null || values.get(0) == null) return info;
+        info.setFirstAttempt(LocalAttemptTracker.toDateTime(toLong(values.get(0))));
+        if(values.get(1) != null) info.setLastAttempt(LocalAttemptTracker.toDateTime(toLong(values.get(1))));
+        info.setAttemptCount((int) toLong(values.get(2)));
+        info.setBlocked(toLong(values.get(3)) == 1L);
+        return info;
+    }
+
+    private static long toLong(byte[] value){
+        return value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bytes(String value){
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,146 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count based circuit breaker for Redis calls.
+ * Keeps the outcome of the last N calls in a ring; opens when the share of failed or slow calls
+ * crosses its threshold, lets a few trial calls through after the open period and closes again
+ * once they all succeed.
+ * With degradation disabled it never opens and records nothing: every call goes to Redis and its
+ * errors reach the caller.
+ */
+@Slf4j
+class RedisCircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final byte OK = 0;
+    private static final byte SLOW = 1;
+    private static final byte FAILED = 2;
+
+    private final RateLimitDegradationProperties properties;
+
+    private final boolean enabled;
+
+    private final long slowCallNanos;
+
+    private final long openDurationNanos;
+
+    // Everything below is guarded by this
+    private final byte[] outcomes;
+    private int next;
+    private int recorded;
+    private int failed;
+    private int slow;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int trialCallsPermitted;
+    private int trialCallsSucceeded;
+
+    // Read without locking on the hot path
+    private volatile boolean closed = true;
+
+    RedisCircuitBreaker(RateLimitDegradationProperties properties) {
+        this.properties = properties;
+        this.enabled = properties.isEnabled();
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(properties.getSlowCallDurationMillis());
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(properties.getOpenDurationMillis());
+        this.outcomes = new byte[Math.max(1, properties.getSlidingWindowSize())];
+    }
+
+    boolean tryAcquirePermission(){
+        if(closed || !enabled) return true;
+        synchronized (this){
+            if(state == State.CLOSED) return true;
+            if(state == State.OPEN){
+                if(System.nanoTime() - openedAtNanos < openDurationNanos) return false;
+                transitionTo(State.HALF_OPEN);
+            }
+            if(trialCallsPermitted >= properties.getHalfOpenTrialCalls()) return false;
+            trialCallsPermitted++;
+            return true;
+        }
+    }
+
+    void onSuccess(long durationNanos){
+        if(!enabled) return;
+        byte outcome = durationNanos >= slowCallNanos ? SLOW : OK;
+        synchronized (this){
+            if(state == State.HALF_OPEN){
+                if(outcome == SLOW){
+                    transitionTo(State.OPEN);
+                } else if(++trialCallsSucceeded >= properties.getHalfOpenTrialCalls()){
+                    transitionTo(State.CLOSED);
+                }
+                return;
+            }
+            record(outcome);
+        }
+    }
+
+    void onError(){
+        if(!enabled) return;
+        synchronized (this){
+            if(state == State.HALF_OPEN){
+                transitionTo(State.OPEN);
+                return;
+            }
+            record(FAILED);
+        }
+    }
+
+    synchronized State getState(){
+        return state;
+    }
+
+    /**
+     * Nanoseconds until trial calls are let through again, zero unless open.
+     */
+    synchronized long nanosUntilRetry(){
+        if(state != State.OPEN) return 0;
+        return Math.max(0, openDurationNanos - (System.nanoTime() - openedAtNanos));
+    }
+
+    private void record(byte outcome){
+        if(state != State.CLOSED) return;
+        if(recorded == outcomes.length){
+            byte evicted = outcomes[next];
+            if(evicted == FAILED) failed--;
+            if(evicted == SLOW) slow--;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if(outcome == FAILED) failed++;
+        if(outcome == SLOW) slow++;
+
+        if(recorded < properties.getMinimumCalls()) return;
+        if(failed * 100 >= properties.getFailureRateThreshold() * recorded
+                || slow * 100 >= properties.getSlowCallRateThreshold() * recorded){
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State target){
+        if(state == target) return;
+        log.warn("Redis rate limit circuit breaker {} -> {} (failed={}, slow={}, calls={})", state, target, failed, slow, recorded);
+        state = target;
+        closed = target == State.CLOSED;
+        trialCallsPermitted = 0;
+        trialCallsSucceeded = 0;
+        if(target == State.OPEN){
+            openedAtNanos = System.nanoTime();
+        }
+        if(target == State.CLOSED){
+            next = 0;
+            recorded = 0;
+            failed = 0;
+            slow = 0;
+        }
+    }
+}
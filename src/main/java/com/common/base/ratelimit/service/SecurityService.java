@@ -5,15 +5,14 @@ import com.common.base.ratelimit.responseEntity.RateLimitInfo;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class SecurityService {
 
     private final RateLimitingService rateLimitingService;
 
-    private final Map<String, RateLimitInfo> rateLimitCache = new ConcurrentHashMap<>();
+    private final AttemptTracker attemptTracker;
 
     @Value("${app.rate-limit.max-attempts:5}")
     private int maxAttempts;
@@ -21,25 +20,36 @@ public class SecurityService {
     @Value("${app.rate-limit.window-minutes:15}")
     private int windowMinutes;
 
-    public SecurityService(RateLimitingService rateLimitingService) {
+    public SecurityService(RateLimitingService rateLimitingService, AttemptTracker attemptTracker) {
         this.rateLimitingService = rateLimitingService;
+        this.attemptTracker = attemptTracker;
     }
 
     public boolean isRateLimited(String identifier, RateLimitType rateLimitType){
-        String key = rateLimitType+":"+identifier;
-        // Check using sliding window for more accuracy
-        return !rateLimitingService.isAllowedSlidingWindow(key, maxAttempts, windowMinutes*60);
+        return isRateLimited(identifier, rateLimitType, maxAttempts, windowMinutes*60);
+    }
+
+    public boolean isRateLimited(String identifier, RateLimitType rateLimitType, int maxRequests, int windowSeconds){
+        // Check using sliding window for more accuracy (single atomic script call)
+        return rateLimitingService.checkSlidingWindow(rateLimitType, identifier, maxRequests, windowSeconds).isRateLimited();
+    }
+
+    public CompletableFuture<Boolean> isRateLimitedAsync(String identifier, RateLimitType rateLimitType){
+        return isRateLimitedAsync(identifier, rateLimitType, maxAttempts, windowMinutes*60);
+    }
+
+    public CompletableFuture<Boolean> isRateLimitedAsync(String identifier, RateLimitType rateLimitType, int maxRequests, int windowSeconds){
+        return rateLimitingService.checkSlidingWindowAsync(rateLimitType, identifier, maxRequests, windowSeconds)
+                .thenApply(RateLimitingService.RateLimitResult::isRateLimited);
     }
 
     public void recordAttempt(String identifier, RateLimitType type, boolean success){
         String key = "attempt:"+type+":"+identifier;
-        RateLimitInfo info = rateLimitCache.getOrDefault(key, new RateLimitInfo());
-        info.recordAttempt(success);
-        rateLimitCache.put(key, info);
+        attemptTracker.recordAttempt(key, success);
     }
 
     public RateLimitInfo getRateLimitInfo(String identifier, RateLimitType type) {
         String key = "attempt:" + type + ":" + identifier;
-        return rateLimitCache.getOrDefault(key, new RateLimitInfo());
+        return attemptTracker.getAttempts(key);
     }
 }
@@ -0,0 +1,122 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.SlidingWindowProperties;
+import com.common.base.ratelimit.enums.RateLimitType;
+import com.common.base.ratelimit.enums.SlidingWindowAlgorithm;
+import com.common.base.ratelimit.service.RateLimitingService.RateLimitResult;
+import com.common.base.redis.service.AsyncRedisScriptExecutor;
+import io.lettuce.core.ScriptOutputType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.common.base.redis.service.AsyncRedisScriptExecutor.arg;
+
+/**
+ * Sliding window limiter backed by a single Lua script per algorithm, see {@link SlidingWindowAlgorithm}.
+ * The log trims, counts, conditionally adds and expires atomically on the Redis server; the counter
+ * rolls its two windows over and increments the same way. Either way a decision costs one round trip
+ * and two nodes can never both admit the last slot of a window. The counter keeps its hash under
+ * {@code <key>:counter}, so it never meets a sorted set written by the log.
+ * Scripts are sent with EVALSHA and only fall back to EVAL when Redis does not know their SHA yet.
+ */
+@Service
+@Slf4j
+public class SlidingWindowRateLimiter {
+
+    public static final String ALGORITHM = "SlidingWindow";
+
+    public static final String COUNTER_ALGORITHM = "SlidingWindowCounter";
+
+    private static final RedisScript<List> SLIDING_WINDOW_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/ratelimit/sliding-window-log.lua"), List.class);
+
+    private static final RedisScript<List> SLIDING_WINDOW_COUNTER_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/ratelimit/sliding-window-counter.lua"), List.class);
+
+    private static final RedisSerializer<String> ARGS_SERIALIZER = new StringRedisSerializer();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final AsyncRedisScriptExecutor asyncScriptExecutor;
+
+    private final SlidingWindowProperties slidingWindowProperties;
+
+    public SlidingWindowRateLimiter(RedisTemplate<String, Object> redisTemplate, AsyncRedisScriptExecutor asyncScriptExecutor,
+                                    SlidingWindowProperties slidingWindowProperties) {
+        this.redisTemplate = redisTemplate;
+        this.asyncScriptExecutor = asyncScriptExecutor;
+        this.slidingWindowProperties = slidingWindowProperties;
+    }
+
+    public RateLimitResult check(String redisKey, int maxRequests, int windowSeconds){
+        return check(null, redisKey, maxRequests, windowSeconds);
+    }
+
+    /**
+     * @param type selects the algorithm, {@code null} for the default one
+     */
+    @SuppressWarnings("unchecked")
+    public RateLimitResult check(RateLimitType type, String redisKey, int maxRequests, int windowSeconds){
+        boolean counter = slidingWindowProperties.algorithmFor(type) == SlidingWindowAlgorithm.COUNTER;
+        long windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        // Integer replies come back as Long; the result serializer only applies to bulk strings
+        RedisSerializer<List> resultSerializer = (RedisSerializer<List>) (RedisSerializer<?>) ARGS_SERIALIZER;
+        List<?> result = counter
+                ? redisTemplate.execute(SLIDING_WINDOW_COUNTER_SCRIPT, ARGS_SERIALIZER, resultSerializer,
+                        Collections.singletonList(counterKey(redisKey)), String.valueOf(maxRequests), String.valueOf(windowMillis))
+                : redisTemplate.execute(SLIDING_WINDOW_SCRIPT, ARGS_SERIALIZER, resultSerializer,
+                        Collections.singletonList(redisKey), String.valueOf(maxRequests), String.valueOf(windowMillis), nonce());
+        if(result == null || result.size() < 3){
+            // Never happens against a real server; treat it like a Redis failure so the caller decides
+            throw new IllegalStateException("Unexpected sliding window script reply for key: " + redisKey);
+        }
+        return toResult(result, counter ? COUNTER_ALGORITHM : ALGORITHM);
+    }
+
+    public CompletableFuture<RateLimitResult> checkAsync(String redisKey, int maxRequests, int windowSeconds){
+        return checkAsync(null, redisKey, maxRequests, windowSeconds);
+    }
+
+    public CompletableFuture<RateLimitResult> checkAsync(RateLimitType type, String redisKey, int maxRequests, int windowSeconds){
+        long windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        if(slidingWindowProperties.algorithmFor(type) == SlidingWindowAlgorithm.COUNTER){
+            return asyncScriptExecutor.<List<Object>>execute(SLIDING_WINDOW_COUNTER_SCRIPT, ScriptOutputType.MULTI,
+                            new String[]{counterKey(redisKey)}, arg(maxRequests), arg(windowMillis))
+                    .thenApply(reply -> toResult(reply, COUNTER_ALGORITHM));
+        }
+        return asyncScriptExecutor.<List<Object>>execute(SLIDING_WINDOW_SCRIPT, ScriptOutputType.MULTI,
+                        new String[]{redisKey}, arg(maxRequests), arg(windowMillis), arg(nonce()))
+                .thenApply(reply -> toResult(reply, ALGORITHM));
+    }
+
+    static RateLimitResult toResult(List<?> reply, String algorithm){
+        boolean allowed = ((Number) reply.get(0)).longValue() == 1L;
+        long remaining = ((Number) reply.get(1)).longValue();
+        long retryAfterMillis = ((Number) reply.get(2)).longValue();
+        return new RateLimitResult(allowed, remaining, toWaitSeconds(retryAfterMillis), algorithm);
+    }
+
+    private static String counterKey(String redisKey){
+        return redisKey+":counter";
+    }
+
+    private static long toWaitSeconds(long retryAfterMillis){
+        // Round up so "0 seconds" is only reported when the caller may retry immediately
+        return retryAfterMillis <= 0 ? 0 : (retryAfterMillis + 999) / 1000;
+    }
+
+    private static String nonce(){
+        return Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+}
@@ -1,15 +1,26 @@
 package com.common.base.ratelimit.service;
 
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
 import com.common.base.ratelimit.configuration.RedisBucketProperties;
+import com.common.base.ratelimit.enums.DegradedPolicy;
+import com.common.base.ratelimit.metrics.RateLimitMeters;
+import com.common.base.ratelimit.metrics.RateLimitMetrics;
 import com.common.base.ratelimit.responseEntity.BucketRateLimitInfo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github.bucket4j.*;
+import io.github.bucket4j.distributed.AsyncBucketProxy;
+import io.github.bucket4j.distributed.BucketProxy;
+import io.github.bucket4j.distributed.proxy.AsyncProxyManager;
 import io.github.bucket4j.distributed.proxy.ProxyManager;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
@@ -18,14 +29,48 @@ public class TokenBucketRateLimiter {
 
     private final ProxyManager<String> proxyManager;
 
+    private final AsyncProxyManager<String> asyncProxyManager;
+
     private final RedisBucketProperties redisBucketProperties;
 
     private final Map<String, BucketConfiguration> bucketConfigs;
 
-    public TokenBucketRateLimiter(ProxyManager<String> proxyManager, RedisBucketProperties redisBucketProperties) {
+    private final TokenLeaseManager tokenLeaseManager;
+
+    // Bounded (W-TinyLFU) so millions of distinct keys cannot grow the heap
+    private final Cache<String, CachedBucket> bucketProxies;
+
+    private volatile DefaultConfiguration defaultConfiguration;
+
+    private final RateLimitDegradationProperties degradationProperties;
+
+    private final RedisCircuitBreaker circuitBreaker;
+
+    private final LocalFallbackRateLimiter localFallbackRateLimiter;
+
+    private final RateLimitMetrics rateLimitMetrics;
+
+    public TokenBucketRateLimiter(ProxyManager<String> proxyManager, RedisBucketProperties redisBucketProperties,
+                                  RateLimitDegradationProperties degradationProperties, RateLimitMetrics rateLimitMetrics) {
         this.proxyManager = proxyManager;
+        this.asyncProxyManager = proxyManager.isAsyncModeSupported() ? proxyManager.asAsync() : null;
         this.redisBucketProperties = redisBucketProperties;
         this.bucketConfigs = initializeBucketConfiguration();
+        this.tokenLeaseManager = new TokenLeaseManager(redisBucketProperties.getLeasing());
+        this.bucketProxies = Caffeine.newBuilder()
+                .maximumSize(redisBucketProperties.getProxyCacheMaximumSize())
+                .build();
+        this.degradationProperties = degradationProperties;
+        this.circuitBreaker = new RedisCircuitBreaker(degradationProperties);
+        this.localFallbackRateLimiter = new LocalFallbackRateLimiter(degradationProperties);
+        this.rateLimitMetrics = rateLimitMetrics;
+        bucketConfigs.keySet().forEach(rateLimitMetrics::tokenBucket);
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        // Hand unused leased tokens back to Redis so other nodes can use them
+        tokenLeaseManager.close();
     }
 
     private Map<String, BucketConfiguration> initializeBucketConfiguration(){
@@ -55,40 +100,135 @@ public class TokenBucketRateLimiter {
     }
 
     public ConsumptionProbe tryConsume(String key, String bucketType){
+        RateLimitMeters meters = rateLimitMetrics.tokenBucket(bucketType);
+        if(!circuitBreaker.tryAcquirePermission()){
+            return recorded(meters, degraded(key, bucketType, 1));
+        }
+        long start = System.nanoTime();
         try {
-            BucketConfiguration config = bucketConfigs.getOrDefault(bucketType, getDefaultConfiguration());
             /**
              * key → a unique identifier for the bucket (e.g. "user:123", "ip:10.0.0.1").
              * config → a BucketConfiguration object that defines the rate limits (bandwidths, refill rates, etc).
-             * This call either creates the bucket in Redis (if it doesn’t exist yet) or loads the existing one with the given key.
+             * The proxy either creates the bucket in Redis (if it doesn’t exist yet) or loads the existing one with the given key.
              */
-            Bucket bucket = proxyManager.builder().build(key, config);
-            return bucket.tryConsumeAndReturnRemaining(1);
+            CachedBucket bucket = getBucket(key, bucketType);
+            boolean leased = tokenLeaseManager.isLeased(bucketType);
+            ConsumptionProbe probe = leased
+                    ? tokenLeaseManager.tryConsume(key, bucket.proxy, bucket.configuration)
+                    : bucket.proxy.tryConsumeAndReturnRemaining(1);
+            long duration = System.nanoTime() - start;
+            circuitBreaker.onSuccess(duration);
+            // Leased checks are mostly answered from memory and would skew the Redis latency histogram
+            if(!leased) meters.redisCall(duration);
+            return recorded(meters, probe);
         }catch (Exception e){
             log.error("Error checking token bucket for key: {}, type: {}", key, bucketType, e);
-            //TODO: Fail open - allow request in case of Redis failure
-            throw e;
+            return recorded(meters, onRedisError(key, bucketType, 1, e));
         }
     }
 
+    /**
+     * Non blocking variant of {@link #tryConsume(String, String)}.
+     * Always goes to Redis: local token leases are only used on the synchronous path.
+     */
+    public CompletableFuture<ConsumptionProbe> tryConsumeAsync(String key, String bucketType){
+        if(asyncProxyManager == null){
+            return CompletableFuture.failedFuture(new UnsupportedOperationException("ProxyManager does not support async mode"));
+        }
+        RateLimitMeters meters = rateLimitMetrics.tokenBucket(bucketType);
+        if(!circuitBreaker.tryAcquirePermission()){
+            return CompletableFuture.completedFuture(recorded(meters, degraded(key, bucketType, 1)));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<ConsumptionProbe> consumption;
+        try {
+            consumption = getBucket(key, bucketType).asyncProxy(key, asyncProxyManager).tryConsumeAndReturnRemaining(1);
+        } catch (Exception e) {
+            // A synchronous failure must still reach the breaker, or a half-open trial permit is never given back
+            consumption = CompletableFuture.failedFuture(e);
+        }
+        return consumption.handle((probe, error) -> {
+            if(error == null){
+                long duration = System.nanoTime() - start;
+                circuitBreaker.onSuccess(duration);
+                meters.redisCall(duration);
+                return recorded(meters, probe);
+            }
+            log.error("Error checking token bucket asynchronously for key: {}, type: {}", key, bucketType, error);
+            return recorded(meters, onRedisError(key, bucketType, 1, error));
+        });
+    }
+
     public ConsumptionProbe tryConsume(String key, String bucketType, int tokens){
+        RateLimitMeters meters = rateLimitMetrics.tokenBucket(bucketType);
+        if(!circuitBreaker.tryAcquirePermission()){
+            return recorded(meters, degraded(key, bucketType, tokens));
+        }
+        long start = System.nanoTime();
         try {
-            BucketConfiguration config = bucketConfigs.getOrDefault(bucketType, getDefaultConfiguration());
-            Bucket bucket = proxyManager.builder().build(key, config);
-            return bucket.tryConsumeAndReturnRemaining(tokens);
+            ConsumptionProbe probe = getBucket(key, bucketType).proxy.tryConsumeAndReturnRemaining(tokens);
+            long duration = System.nanoTime() - start;
+            circuitBreaker.onSuccess(duration);
+            meters.redisCall(duration);
+            return recorded(meters, probe);
         } catch (Exception e) {
             log.error("Error checking token bucket for key: {}, type: {}, tokens: {}",
                     key, bucketType, tokens, e);
-            //TODO: Fail open - allow request in case of Redis failure
-            throw e;
+            return recorded(meters, onRedisError(key, bucketType, tokens, e));
+        }
+    }
+
+    // Shared with CompositeRateLimiter, so every Redis backed check trips and respects the same breaker
+    RedisCircuitBreaker circuitBreaker(){
+        return circuitBreaker;
+    }
+
+    LocalFallbackRateLimiter localFallbackRateLimiter(){
+        return localFallbackRateLimiter;
+    }
+
+    private static ConsumptionProbe recorded(RateLimitMeters meters, ConsumptionProbe probe){
+        meters.decision(probe.isConsumed());
+        return probe;
+    }
+
+    private ConsumptionProbe onRedisError(String key, String bucketType, long tokens, Throwable error){
+        if(!degradationProperties.isEnabled()){
+            if(error instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException("Token bucket check failed for key: "+key, error);
+        }
+        circuitBreaker.onError();
+        return degraded(key, bucketType, tokens);
+    }
+
+    /**
+     * Decision taken without Redis, according to the bucket type's {@link DegradedPolicy}.
+     */
+    private ConsumptionProbe degraded(String key, String bucketType, long tokens){
+        rateLimitMetrics.tokenBucket(bucketType).degraded();
+        BucketConfiguration config = resolveConfiguration(bucketType);
+        switch (degradationProperties.policyFor(bucketType)){
+            case FAIL_OPEN:
+                return ConsumptionProbe.consumed(capacityOf(config), 0);
+            case FAIL_CLOSED:
+                long retryNanos = Math.max(circuitBreaker.nanosUntilRetry(), 1);
+                return ConsumptionProbe.rejected(0, retryNanos, retryNanos);
+            default:
+                return localFallbackRateLimiter.tryConsume(key, config, tokens);
+        }
+    }
+
+    private static long capacityOf(BucketConfiguration config){
+        long capacity = Long.MAX_VALUE;
+        for(Bandwidth bandwidth : config.getBandwidths()){
+            capacity = Math.min(capacity, bandwidth.getCapacity());
         }
+        return capacity;
     }
 
     public EstimationProbe estimateAbilityToConsume(String key, String bucketType, int tokens){
         try {
-            BucketConfiguration config = bucketConfigs.getOrDefault(bucketType, getDefaultConfiguration());
-            Bucket bucket = proxyManager.builder().build(key, config);
-            return bucket.estimateAbilityToConsume(tokens);
+            return getBucket(key, bucketType).proxy.estimateAbilityToConsume(tokens);
         } catch (Exception e) {
             log.error("Error estimating token consumption for key: {}, type: {}, tokens: {}",
                     key, bucketType, tokens, e);
@@ -99,6 +239,7 @@ public class TokenBucketRateLimiter {
 
     public void addBucketConfiguration(String bucketType, BucketConfiguration bucketConfiguration){
         bucketConfigs.put(bucketType, bucketConfiguration);
+        rateLimitMetrics.tokenBucket(bucketType);
         log.info("Added new bucket configuration for type: {}", bucketType);
     }
 
@@ -115,12 +256,68 @@ public class TokenBucketRateLimiter {
         return bucketConfigs.get(bucketType);
     }
 
+    /**
+     * Returns a cached proxy for the key, rebuilt only when the key's configuration changed
+     * (e.g. through {@link #addBucketConfiguration} or new default properties).
+     */
+    private CachedBucket getBucket(String key, String bucketType){
+        BucketConfiguration config = resolveConfiguration(bucketType);
+        CachedBucket cached = bucketProxies.getIfPresent(key);
+        if(cached != null && cached.configuration == config) return cached;
+        cached = new CachedBucket(config, proxyManager.builder().build(key, config));
+        bucketProxies.put(key, cached);
+        return cached;
+    }
+
+    private BucketConfiguration resolveConfiguration(String bucketType){
+        BucketConfiguration config = bucketConfigs.get(bucketType);
+        return config != null ? config : getDefaultConfiguration();
+    }
+
     private BucketConfiguration getDefaultConfiguration(){
-        return BucketConfiguration.builder()
-                .addLimit(Bandwidth.classic(redisBucketProperties.getDefaultCapacity(),
-                        Refill.intervally(redisBucketProperties.getDefaultRefillTokens(),
-                                Duration.ofMinutes(redisBucketProperties.getDefaultRefillMinutes()))))
+        DefaultConfiguration current = defaultConfiguration;
+        int capacity = redisBucketProperties.getDefaultCapacity();
+        int refillTokens = redisBucketProperties.getDefaultRefillTokens();
+        int refillMinutes = redisBucketProperties.getDefaultRefillMinutes();
+        if(current != null && current.matches(capacity, refillTokens, refillMinutes)){
+            return current.configuration();
+        }
+        BucketConfiguration configuration = BucketConfiguration.builder()
+                .addLimit(Bandwidth.classic(capacity, Refill.intervally(refillTokens, Duration.ofMinutes(refillMinutes))))
                 .build();
+        defaultConfiguration = new DefaultConfiguration(capacity, refillTokens, refillMinutes, configuration);
+        return configuration;
+    }
+
+    // Default configuration together with the property values it was built from
+    private record DefaultConfiguration(int capacity, int refillTokens, int refillMinutes, BucketConfiguration configuration) {
+        boolean matches(int capacity, int refillTokens, int refillMinutes){
+            return this.capacity == capacity && this.refillTokens == refillTokens && this.refillMinutes == refillMinutes;
+        }
+    }
+
+    private static final class CachedBucket {
+
+        private final BucketConfiguration configuration;
+
+        private final BucketProxy proxy;
+
+        private volatile AsyncBucketProxy asyncProxy;
+
+        private CachedBucket(BucketConfiguration configuration, BucketProxy proxy) {
+            this.configuration = configuration;
+            this.proxy = proxy;
+        }
+
+        private AsyncBucketProxy asyncProxy(String key, AsyncProxyManager<String> asyncProxyManager){
+            AsyncBucketProxy async = asyncProxy;
+            if(async == null){
+                // A racing duplicate is harmless, proxies hold no state of their own
+                async = asyncProxyManager.builder().build(key, () -> CompletableFuture.completedFuture(configuration));
+                asyncProxy = async;
+            }
+            return async;
+        }
     }
 
     // Utility methods for common scenarios
@@ -128,6 +325,11 @@ public class TokenBucketRateLimiter {
         return tryConsume(key, bucketType).isConsumed();
     }
 
+    public CompletableFuture<BucketRateLimitInfo> getRateLimitInfoAsync(String key, String bucketType){
+        return tryConsumeAsync(key, bucketType)
+                .thenApply(probe -> new BucketRateLimitInfo(probe.isConsumed(), probe.getRemainingTokens(), probe.getNanosToWaitForRefill()));
+    }
+
     public BucketRateLimitInfo getRateLimitInfo(String key, String bucketType){
         ConsumptionProbe probe = tryConsume(key, bucketType);
         return new BucketRateLimitInfo(probe.isConsumed(), probe.getRemainingTokens(), probe.getNanosToWaitForRefill());
@@ -0,0 +1,211 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RedisBucketProperties;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves token bucket checks from locally leased batches of tokens.
+ * A lease is taken from the Redis bucket in one call and then drained with a lock free counter.
+ * The batch size adapts to each key's request rate: a key that sees fewer requests than one per
+ * lease lifetime gets a size of one, i.e. behaves exactly like the non leased path.
+ * Unused tokens are handed back to the bucket when a lease expires and on shutdown, and the entry of a
+ * key that saw no request for a whole sweep interval after its lease expired is dropped.
+ */
+@Slf4j
+class TokenLeaseManager implements AutoCloseable {
+
+    private final RedisBucketProperties.Leasing properties;
+
+    private final long leaseTtlNanos;
+
+    private final Map<String, TokenLease> leases = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService sweeper;
+
+    TokenLeaseManager(RedisBucketProperties.Leasing properties) {
+        this.properties = properties;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getLeaseTtlMillis());
+        if(properties.isEnabled()){
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "token-lease-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.sweeper.scheduleWithFixedDelay(this::returnExpiredLeases,
+                    properties.getSweepIntervalMillis(), properties.getSweepIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    boolean isLeased(String bucketType){
+        return properties.isEnabled() && properties.getBucketTypes().contains(bucketType);
+    }
+
+    ConsumptionProbe tryConsume(String key, Bucket bucket, BucketConfiguration config){
+        while (true){
+            TokenLease lease = leases.computeIfAbsent(key, k -> new TokenLease());
+            lease.requests.incrementAndGet();
+            lease.markActive();
+            if(lease.isValid(System.nanoTime()) && lease.tryTake()){
+                return ConsumptionProbe.consumed(lease.remainingEstimate(), 0);
+            }
+            ConsumptionProbe probe = renew(lease, bucket, config);
+            // The sweeper dropped this lease while we waited for its monitor, start over with a fresh one
+            if(probe != null) return probe;
+        }
+    }
+
+    private ConsumptionProbe renew(TokenLease lease, Bucket bucket, BucketConfiguration config){
+        synchronized (lease){
+            if(lease.retired) return null;
+            long now = System.nanoTime();
+            if(lease.isValid(now) && lease.tryTake()){
+                return ConsumptionProbe.consumed(lease.remainingEstimate(), 0);
+            }
+            giveBack(lease);
+            lease.bucket = bucket;
+
+            long size = lease.nextLeaseSize(now, leaseTtlNanos, maxLeaseSize(config));
+            ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(size);
+            if(!probe.isConsumed() && size > 1){
+                // Not enough left for a batch: near the limit every request goes to Redis
+                size = 1;
+                probe = bucket.tryConsumeAndReturnRemaining(1);
+            }
+            lease.lastRemaining = probe.getRemainingTokens();
+            if(!probe.isConsumed() || size == 1){
+                return probe;
+            }
+            // One token of the batch is used by this request
+            lease.grant(size - 1, now + leaseTtlNanos);
+            return ConsumptionProbe.consumed(lease.remainingEstimate(), probe.getNanosToWaitForReset());
+        }
+    }
+
+    private long maxLeaseSize(BucketConfiguration config){
+        long capacity = Long.MAX_VALUE;
+        for(Bandwidth bandwidth : config.getBandwidths()){
+            capacity = Math.min(capacity, bandwidth.getCapacity());
+        }
+        long byCapacity = (long) Math.floor(capacity * properties.getMaxCapacityFraction());
+        return Math.max(1, Math.min(properties.getMaxLeaseSize(), byCapacity));
+    }
+
+    private void returnExpiredLeases(){
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, TokenLease>> iterator = leases.entrySet().iterator();
+        while (iterator.hasNext()){
+            TokenLease lease = iterator.next().getValue();
+            if(lease.isValid(now)) continue;
+            synchronized (lease){
+                if(lease.isValid(now)) continue;
+                giveBack(lease);
+                // Keep the entry while the key is active so its rate estimate survives
+                if(!lease.active){
+                    lease.retired = true;
+                    iterator.remove();
+                } else {
+                    lease.active = false;
+                }
+            }
+        }
+    }
+
+    private void giveBack(TokenLease lease){
+        long unused = lease.available.getAndSet(0);
+        if(unused <= 0 || lease.bucket == null) return;
+        try {
+            lease.bucket.addTokens(unused);
+        } catch (Exception e) {
+            // Tokens are lost for this refill period, which only makes the limiter stricter
+            log.warn("Failed to return {} leased tokens to bucket", unused, e);
+        }
+    }
+
+    int size(){
+        return leases.size();
+    }
+
+    @Override
+    public void close(){
+        if(sweeper != null) sweeper.shutdownNow();
+        for(TokenLease lease : leases.values()){
+            synchronized (lease){
+                giveBack(lease);
+            }
+        }
+        leases.clear();
+    }
+
+    private static final class TokenLease {
+
+        private final AtomicLong available = new AtomicLong();
+
+        // Requests seen since the last lease was granted
+        private final AtomicLong requests = new AtomicLong();
+
+        private volatile long expiresAtNanos;
+
+        private volatile long lastRemaining;
+
+        // Set by requests, cleared by the sweeper; still clear one sweep later means the key went idle
+        private volatile boolean active;
+
+        // Guarded by the lease monitor
+        private boolean retired;
+        private Bucket bucket;
+        private long lastGrantNanos;
+        private double ratePerSecond;
+
+        void markActive(){
+            // Read first so a busy key does not write the shared line on every request
+            if(!active) active = true;
+        }
+
+        boolean isValid(long now){
+            return now - expiresAtNanos < 0;
+        }
+
+        boolean tryTake(){
+            while (true){
+                long current = available.get();
+                if(current <= 0) return false;
+                if(available.compareAndSet(current, current - 1)) return true;
+            }
+        }
+
+        long remainingEstimate(){
+            return lastRemaining + available.get();
+        }
+
+        long nextLeaseSize(long now, long leaseTtlNanos, long maxSize){
+            long seen = requests.getAndSet(0);
+            if(lastGrantNanos != 0){
+                double elapsedSeconds = Math.max(now - lastGrantNanos, 1) / 1_000_000_000d;
+                double observed = seen / elapsedSeconds;
+                ratePerSecond = ratePerSecond == 0 ? observed : (ratePerSecond + observed) / 2;
+            }
+            lastGrantNanos = now;
+            long expected = (long) Math.floor(ratePerSecond * leaseTtlNanos / 1_000_000_000d);
+            return Math.max(1, Math.min(maxSize, expected));
+        }
+
+        void grant(long tokens, long expiresAtNanos){
+            this.expiresAtNanos = expiresAtNanos;
+            available.set(tokens);
+        }
+    }
+}
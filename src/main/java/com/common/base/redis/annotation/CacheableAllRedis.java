@@ -0,0 +1,22 @@
+package com.common.base.redis.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Per element caching for methods that load many entities at once, e.g.
+ * {@code Map<Long, User> findUsers(Collection<Long> ids)}.
+ * Each element is cached under its {@code toString()}; cached elements are read with one bulk read,
+ * and the method is invoked with only the missing elements. The method must return a {@code Map}
+ * keyed by the elements it was given; elements it leaves out are not cached.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheableAllRedis {
+    String cacheName();
+
+    // Name of the List, Set or Collection parameter holding the elements, e.g. "#ids"; defaults to the first one
+    String keys() default "";
+
+    long ttl() default -1;
+}
@@ -9,4 +9,27 @@ public @interface CacheableRedis {
     String cacheName();
     String key() default "";
     long ttl() default -1;
+
+    // Concurrent misses for the same key on this node share one method invocation
+    boolean singleFlight() default true;
+
+    // Take a Redis lease (SET NX PX) so only one node recomputes a missing key
+    boolean distributedLock() default false;
+
+    // How long the distributed lease is held before it expires on its own
+    long leaseTimeoutMillis() default 10000;
+
+    // How long a caller waits for another loader before computing the value itself
+    long waitBudgetMillis() default 2000;
+
+    // Fraction of the TTL after which a read returns the cached value and reloads it in the background, e.g. 0.8.
+    // The reload re-invokes the method with the triggering call's arguments on a refresher thread, after that call
+    // returned: it runs outside the caller's transaction and security context, only the logging MDC is carried over
+    double refreshAhead() default 0;
+
+    // Seconds an expired entry is still served while it is reloaded in the background, as for refreshAhead
+    long staleTtl() default 0;
+
+    // Return the loaded value right away and write it to Redis in a background batch, see redis.cache.write-behind
+    boolean writeBehind() default false;
 }
@@ -0,0 +1,41 @@
+package com.common.base.redis.cache;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Entry TTL shortened by a random part of up to {@code jitter} of itself, so entries written together
+ * (warm-up, batch jobs) do not all expire in the same instant. The TTL never exceeds the configured
+ * value, so the staleness bound of a cache is unchanged.
+ */
+public final class JitteredTtlFunction implements RedisCacheWriter.TtlFunction {
+
+    private final Duration ttl;
+
+    private final double jitter;
+
+    public JitteredTtlFunction(Duration ttl, double jitter) {
+        this.ttl = ttl;
+        this.jitter = jitter;
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, @Nullable Object value) {
+        return apply(ttl, jitter);
+    }
+
+    /**
+     * @param jitter fraction of the TTL, clamped to [0, 1); 0 or a non-positive TTL returns the TTL as is
+     */
+    public static Duration apply(Duration ttl, double jitter){
+        if(!(jitter > 0) || ttl.isZero() || ttl.isNegative()) return ttl;
+        long millis = ttl.toMillis();
+        long spread = (long) (millis * Math.min(jitter, 0.99));
+        if(spread <= 0) return ttl;
+        // Never reach zero, which Redis would treat as no expiry
+        return Duration.ofMillis(Math.max(1, millis - ThreadLocalRandom.current().nextLong(spread + 1)));
+    }
+}
@@ -0,0 +1,30 @@
+package com.common.base.redis.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Cached value of a refresh-ahead {@code @CacheableRedis} method, stamped with when it should be reloaded.
+ * The Redis entry outlives {@code expiresAt} by the stale TTL; until then the value is still served
+ * while a background reload replaces it. Left non-final so JSON default typing records its type.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshableValue implements Serializable {
+
+    private Object value;
+
+    // Epoch millis after which a read schedules a background reload
+    private long refreshAt;
+
+    // Epoch millis after which the value is stale
+    private long expiresAt;
+
+    public boolean isRefreshDue(long now){
+        return now >= refreshAt;
+    }
+}
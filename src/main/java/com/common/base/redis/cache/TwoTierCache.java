@@ -0,0 +1,229 @@
+package com.common.base.redis.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Cache with a bounded in-process L1 in front of a Redis backed L2.
+ * Reads are served from L1 when possible; every write or eviction drops the local copy
+ * and asks the {@link TwoTierCacheManager} to broadcast the invalidation to other nodes.
+ * Written values are not copied into L1, the next read loads them from L2, so a local
+ * copy never gets ahead of what Redis holds.
+ *
+ * Fills are fenced against invalidations: a reader takes a stamp before reading L2 and only stores
+ * the value in L1 if no invalidation of the key (or clear) happened since. Stamps are kept per stripe
+ * of keys, so an invalidation of another key in the same stripe at worst skips a fill.
+ */
+public class TwoTierCache implements Cache {
+
+    private final Cache delegate;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> nearCache;
+
+    private final TwoTierCacheManager cacheManager;
+
+    private static final int STRIPES = 1024;
+
+    // Bumped by every invalidation of a key of the stripe, before the L1 entry is dropped
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    private final AtomicLong clears = new AtomicLong();
+
+    TwoTierCache(Cache delegate, com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> nearCache,
+                 TwoTierCacheManager cacheManager) {
+        this.delegate = delegate;
+        this.nearCache = nearCache;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper get(Object key) {
+        String nearKey = nearKey(key);
+        ValueWrapper wrapper = nearCache.getIfPresent(nearKey);
+        if(wrapper != null) return wrapper;
+        long stamp = localStamp(key);
+        wrapper = delegate.get(key);
+        if(wrapper != null) putLocal(key, wrapper, stamp);
+        return wrapper;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, @Nullable Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if(wrapper == null) return null;
+        Object value = wrapper.get();
+        if(value != null && type != null && !type.isInstance(value)){
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @Nullable
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if(wrapper != null) return cast(wrapper.get());
+        long stamp = localStamp(key);
+        T value = delegate.get(key, valueLoader);
+        putLocal(key, new SimpleValueWrapper(value), stamp);
+        return value;
+    }
+
+    @Override
+    @Nullable
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, @Nullable Object value) {
+        delegate.put(key, value);
+        invalidateEverywhere(key);
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(Object key, @Nullable Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        invalidateEverywhere(key);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        invalidateEverywhere(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = delegate.evictIfPresent(key);
+        invalidateEverywhere(key);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        clearLocal();
+        cacheManager.publishClear(getName());
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = delegate.invalidate();
+        clearLocal();
+        cacheManager.publishClear(getName());
+        return invalidated;
+    }
+
+    /**
+     * L1 lookup only, for bulk readers that fetch the misses from L2 themselves.
+     */
+    @Nullable
+    public ValueWrapper getLocal(Object key) {
+        return nearCache.getIfPresent(nearKey(key));
+    }
+
+    /**
+     * Stamp to take before reading a key from L2, for {@link #putLocal(Object, ValueWrapper, long)}.
+     */
+    public long localStamp(Object key) {
+        // Both counters only grow, so the sum changes whenever either does
+        return invalidations.get(stripe(nearKey(key))) + clears.get();
+    }
+
+    /**
+     * Keeps a value read from L2 in L1, as {@link #get(Object)} does, unless the key was invalidated
+     * since {@code stamp} was taken. The check runs inside the map's per key compute, so it cannot
+     * interleave with the removal done by an invalidation.
+     */
+    public void putLocal(Object key, ValueWrapper wrapper, long stamp) {
+        String nearKey = nearKey(key);
+        nearCache.asMap().compute(nearKey, (k, current) -> localStamp(nearKey) == stamp ? wrapper : current);
+    }
+
+    /**
+     * Drops the L1 copy of a key on this node and on every other node, leaving L2 untouched.
+     * Used by writers that bypass {@link #put(Object, Object)}, e.g. custom TTL puts.
+     */
+    public void invalidateEverywhere(Object key) {
+        String nearKey = nearKey(key);
+        evictLocal(nearKey);
+        cacheManager.publishEvict(getName(), nearKey);
+    }
+
+    /**
+     * {@link #invalidateEverywhere(Object)} for many keys, announced to the other nodes in one message.
+     */
+    public void invalidateAllEverywhere(Collection<?> keys) {
+        if(keys.isEmpty()) return;
+        List<String> nearKeys = new ArrayList<>(keys.size());
+        for(Object key : keys){
+            String nearKey = nearKey(key);
+            evictLocal(nearKey);
+            nearKeys.add(nearKey);
+        }
+        cacheManager.publishEvictAll(getName(), nearKeys);
+    }
+
+    void evictLocal(String nearKey) {
+        invalidations.incrementAndGet(stripe(nearKey));
+        nearCache.invalidate(nearKey);
+    }
+
+    void clearLocal() {
+        clears.incrementAndGet();
+        nearCache.invalidateAll();
+    }
+
+    public long estimatedLocalSize() {
+        return nearCache.estimatedSize();
+    }
+
+    private static String nearKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private static int stripe(String nearKey) {
+        int hash = nearKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
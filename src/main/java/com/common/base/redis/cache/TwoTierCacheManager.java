@@ -0,0 +1,159 @@
+package com.common.base.redis.cache;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.lettuce.core.api.async.BaseRedisAsyncCommands;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps the Redis {@link CacheManager} with a per node L1 tier.
+ * Also acts as the pub/sub listener for invalidations published by other nodes.
+ *
+ * Message layout: {@code <nodeId>\n<op>\n<cacheName>\n<key>} where op is {@code E} (evict one key),
+ * {@code M} (evict many keys, joined by {@code \0}) or {@code C} (clear the cache, key is empty).
+ * Messages from this node are ignored.
+ * Invalidations are published on the shared Lettuce connection without waiting for the reply,
+ * so writers do not pay a round trip for them.
+ */
+@Slf4j
+public class TwoTierCacheManager extends AbstractTransactionSupportingCacheManager implements MessageListener {
+
+    private static final char SEPARATOR = '\n';
+    private static final char OP_EVICT = 'E';
+    private static final char OP_EVICT_MANY = 'M';
+    private static final char OP_CLEAR = 'C';
+    private static final char KEY_SEPARATOR = '\0';
+
+    private final CacheManager delegate;
+
+    private final RedisCacheProperties.NearCache nearCacheProperties;
+
+    private final BaseRedisAsyncCommands<String, byte[]> publisher;
+
+    private final String channel;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TwoTierCache> nearCaches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager delegate, RedisCacheProperties.NearCache nearCacheProperties,
+                               BaseRedisAsyncCommands<String, byte[]> publisher, String channel) {
+        this.delegate = delegate;
+        this.nearCacheProperties = nearCacheProperties;
+        this.publisher = publisher;
+        this.channel = channel;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>();
+        for(String name : delegate.getCacheNames()){
+            Cache cache = wrap(name);
+            if(cache != null) caches.add(cache);
+        }
+        return caches;
+    }
+
+    @Override
+    @Nullable
+    protected Cache getMissingCache(String name) {
+        return wrap(name);
+    }
+
+    @Nullable
+    private Cache wrap(String name){
+        Cache target = delegate.getCache(name);
+        if(target == null || !isNearCacheEnabled(name)) return target;
+        return nearCaches.computeIfAbsent(name, cacheName -> new TwoTierCache(target, buildNearCache(cacheName), this));
+    }
+
+    private boolean isNearCacheEnabled(String cacheName){
+        RedisCacheProperties.NearCacheSpec spec = nearCacheProperties.getCaches().get(cacheName);
+        return spec == null || spec.getEnabled() == null || spec.getEnabled();
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<String, Cache.ValueWrapper> buildNearCache(String cacheName){
+        RedisCacheProperties.NearCacheSpec spec = nearCacheProperties.getCaches().get(cacheName);
+        long maximumSize = spec != null && spec.getMaximumSize() != null ? spec.getMaximumSize() : nearCacheProperties.getMaximumSize();
+        long ttl = spec != null && spec.getTtl() != null ? spec.getTtl() : nearCacheProperties.getTtl();
+        log.info("Enabling near cache for {} (maximumSize={}, ttl={}s)", cacheName, maximumSize, ttl);
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttl))
+                .build();
+    }
+
+    void publishEvict(String cacheName, String key){
+        publish(OP_EVICT, cacheName, key);
+    }
+
+    void publishEvictAll(String cacheName, Collection<String> keys){
+        if(keys.isEmpty()) return;
+        if(keys.size() == 1){
+            publishEvict(cacheName, keys.iterator().next());
+            return;
+        }
+        publish(OP_EVICT_MANY, cacheName, String.join(String.valueOf(KEY_SEPARATOR), keys));
+    }
+
+    void publishClear(String cacheName){
+        publish(OP_CLEAR, cacheName, "");
+    }
+
+    private void publish(char op, String cacheName, String key){
+        String message = nodeId + SEPARATOR + op + SEPARATOR + cacheName + SEPARATOR + key;
+        try {
+            publisher.publish(channel, message.getBytes(StandardCharsets.UTF_8)).whenComplete((receivers, error) -> {
+                // Other nodes fall back to the near cache TTL for this entry
+                if(error != null) log.warn("Failed to publish near cache invalidation for cache: {}, key: {}", cacheName, key, error);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish near cache invalidation for cache: {}, key: {}", cacheName, key, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, @Nullable byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int first = body.indexOf(SEPARATOR);
+        int second = body.indexOf(SEPARATOR, first + 1);
+        int third = body.indexOf(SEPARATOR, second + 1);
+        if(first < 0 || second < 0 || third < 0){
+            log.warn("Ignoring malformed near cache invalidation: {}", body);
+            return;
+        }
+        if(body.regionMatches(0, nodeId, 0, first) && first == nodeId.length()) return;
+
+        TwoTierCache cache = nearCaches.get(body.substring(second + 1, third));
+        if(cache == null) return;
+        char op = body.charAt(first + 1);
+        if(op == OP_CLEAR){
+            cache.clearLocal();
+        } else if(op == OP_EVICT_MANY){
+            int from = third + 1;
+            int end;
+            while ((end = body.indexOf(KEY_SEPARATOR, from)) >= 0){
+                cache.evictLocal(body.substring(from, end));
+                from = end + 1;
+            }
+            cache.evictLocal(body.substring(from));
+        } else {
+            cache.evictLocal(body.substring(third + 1));
+        }
+    }
+}
@@ -1,25 +1,40 @@
 package com.common.base.redis.configuration;
 
-import com.fasterxml.jackson.annotation.JsonTypeInfo;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.common.base.redis.cache.JitteredTtlFunction;
+import com.common.base.redis.cache.TwoTierCacheManager;
+import com.common.base.redis.serializer.Compression;
+import com.common.base.redis.serializer.RedisValueSerializers;
+import com.common.base.redis.serializer.ValueCodec;
+import com.common.base.redis.service.RedisBulkDeleter;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.BaseRedisAsyncCommands;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.BatchStrategy;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
-@EnableConfigurationProperties(RedisCacheProperties.class)
+@EnableConfigurationProperties({RedisCacheProperties.class, RedisSerializationProperties.class})
 public class RedisCacheConfig {
 
     private final RedisCacheProperties redisCacheProperties;
@@ -29,27 +44,86 @@ public class RedisCacheConfig {
     }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, ObjectMapper objectMapper){
-        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                .prefixCacheNameWith(redisCacheProperties.getKeyPrefix()+":")
-                .entryTtl(Duration.ofSeconds(redisCacheProperties.getDefaultTtl()))
-                .disableCachingNullValues()
-                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(createRedisSerializer(objectMapper)));
-        return RedisCacheManager.builder(redisConnectionFactory)
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, RedisValueSerializers redisValueSerializers,
+                                     RedisBulkDeleter redisBulkDeleter,
+                                     ObjectProvider<StatefulConnection<String, byte[]>> stringKeyConnection){
+        RedisCacheConfiguration config = cacheConfiguration(new RedisCacheProperties.CacheSpec(), redisValueSerializers);
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new LinkedHashMap<>();
+        redisCacheProperties.getCaches().forEach((name, spec) -> cacheConfigurations.put(name, cacheConfiguration(spec, redisValueSerializers)));
+        RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory,
+                clearStrategy(redisBulkDeleter));
+        RedisCacheProperties.NearCache nearCache = redisCacheProperties.getNearCache();
+        if(!nearCache.isEnabled()){
+            return RedisCacheManager.builder(cacheWriter)
+                    .cacheDefaults(config)
+                    .withInitialCacheConfigurations(cacheConfigurations)
+                    .transactionAware()
+                    .build();
+        }
+
+        // Transaction awareness moves to the outer manager so L1 invalidations also wait for commit
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter)
                 .cacheDefaults(config)
-                .transactionAware()
+                .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+        // The string-key connection only exists with spring.redis.host set, so resolve it only here
+        TwoTierCacheManager twoTierCacheManager = new TwoTierCacheManager(redisCacheManager, nearCache,
+                asyncCommands(stringKeyConnection.getObject()), nearCacheChannel());
+        twoTierCacheManager.setTransactionAware(true);
+        return twoTierCacheManager;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "redis.cache.near-cache", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer nearCacheInvalidationListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                                CacheManager cacheManager){
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        if(cacheManager instanceof TwoTierCacheManager twoTierCacheManager){
+            container.addMessageListener(twoTierCacheManager, new ChannelTopic(nearCacheChannel()));
+        }
+        return container;
+    }
+
+    // Settings of one cache; anything the spec leaves unset comes from the redis.cache defaults
+    private RedisCacheConfiguration cacheConfiguration(RedisCacheProperties.CacheSpec spec, RedisValueSerializers redisValueSerializers){
+        long ttl = spec.getTtl() != null ? spec.getTtl() : redisCacheProperties.getDefaultTtl();
+        double ttlJitter = spec.getTtlJitter() != null ? spec.getTtlJitter() : redisCacheProperties.getTtlJitter();
+        boolean cacheNullValues = spec.getCacheNullValues() != null ? spec.getCacheNullValues() : redisCacheProperties.isCacheNullValues();
+        String keyPrefix = spec.getKeyPrefix() != null ? spec.getKeyPrefix() : redisCacheProperties.getKeyPrefix();
+        ValueCodec codec = spec.getSerializer() != null ? spec.getSerializer() : redisCacheProperties.getSerializer();
+        Compression compression = spec.getCompression() != null ? spec.getCompression() : redisCacheProperties.getCompression();
+        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
+                .prefixCacheNameWith(keyPrefix+":")
+                .entryTtl(new JitteredTtlFunction(Duration.ofSeconds(ttl), ttlJitter))
+                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .serializeValuesWith(valueSerializer(redisValueSerializers, codec, compression));
+        return cacheNullValues ? config : config.disableCachingNullValues();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BaseRedisAsyncCommands<String, byte[]> asyncCommands(StatefulConnection<String, byte[]> connection){
+        return connection instanceof StatefulRedisClusterConnection<?, ?> clusterConnection
+                ? ((StatefulRedisClusterConnection<String, byte[]>) clusterConnection).async()
+                : ((StatefulRedisConnection<String, byte[]>) connection).async();
+    }
+
+    private BatchStrategy clearStrategy(RedisBulkDeleter redisBulkDeleter){
+        return switch (redisCacheProperties.getClearStrategy()) {
+            case KEYS -> BatchStrategies.keys();
+            case SCAN_UNLINK -> redisBulkDeleter.asBatchStrategy();
+        };
+    }
 
+    private String nearCacheChannel(){
+        String channel = redisCacheProperties.getNearCache().getChannel();
+        return channel != null ? channel : redisCacheProperties.getKeyPrefix()+":near-cache:invalidation";
     }
 
-    private GenericJackson2JsonRedisSerializer createRedisSerializer(ObjectMapper objectMapper) {
-        ObjectMapper copy = objectMapper.copy();
-        copy.activateDefaultTyping(
-                LaissezFaireSubTypeValidator.instance,//Using LaissezFaireSubTypeValidator can expose your app to remote code execution (RCE) if untrusted data is deserialized. This is especially dangerous in APIs or services that accept JSON from external sources.
-                ObjectMapper.DefaultTyping.NON_FINAL,
-                JsonTypeInfo.As.PROPERTY
-        );
-        return new GenericJackson2JsonRedisSerializer(copy);
+    private RedisSerializationContext.SerializationPair<Object> valueSerializer(RedisValueSerializers redisValueSerializers, ValueCodec codec,
+                                                                                Compression compression){
+        return RedisSerializationContext.SerializationPair.fromSerializer(
+                redisValueSerializers.get(codec, compression, redisCacheProperties.getCompressionThreshold()));
     }
 }
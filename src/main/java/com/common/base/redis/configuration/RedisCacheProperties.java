@@ -1,8 +1,13 @@
 package com.common.base.redis.configuration;
 
+import com.common.base.redis.serializer.Compression;
+import com.common.base.redis.serializer.ValueCodec;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @ConfigurationProperties(prefix = "redis.cache")
 public class RedisCacheProperties {
 
@@ -12,8 +17,41 @@ public class RedisCacheProperties {
 
     private boolean cacheNullValues = false;
 
+    // Each entry TTL is shortened by a random part of up to this fraction, spreading out the expiry of entries written together
+    private double ttlJitter = 0.1;
+
     private boolean enableStatistics = false;
 
+    // Keys per MGET, SET pipeline or UNLINK pipeline of the bulk cache operations
+    private int batchSize = 200;
+
+    private NearCache nearCache = new NearCache();
+
+    // Background reloads of refresh-ahead @CacheableRedis entries
+    private Refresh refresh = new Refresh();
+
+    // Detection and local promotion of keys that take a large share of reads
+    private HotKeys hotKeys = new HotKeys();
+
+    // Background batching of puts from @CacheableRedis(writeBehind = true)
+    private WriteBehind writeBehind = new WriteBehind();
+
+    // How Cache.clear() finds the keys of a cache
+    private ClearStrategy clearStrategy = ClearStrategy.SCAN_UNLINK;
+
+    // Value codec of every cache unless overridden in caches.<name>.serializer
+    private ValueCodec serializer = ValueCodec.JSON;
+
+    // Compression of large values unless overridden in caches.<name>.compression; switching it needs no flush,
+    // but values written compressed cannot be read once a cache is back to NONE
+    private Compression compression = Compression.NONE;
+
+    // Serialized size in bytes from which values are compressed
+    private int compressionThreshold = 8192;
+
+    // Per cache settings, keyed by cache name
+    private Map<String, CacheSpec> caches = new LinkedHashMap<>();
+
     // Getters and setters
     public long getDefaultTtl() {
         return defaultTtl;
@@ -39,6 +77,22 @@ public class RedisCacheProperties {
         this.cacheNullValues = cacheNullValues;
     }
 
+    public double getTtlJitter() {
+        return ttlJitter;
+    }
+
+    public void setTtlJitter(double ttlJitter) {
+        this.ttlJitter = ttlJitter;
+    }
+
+    /**
+     * TTL jitter of a cache, its own setting or the default.
+     */
+    public double ttlJitterFor(String cacheName) {
+        CacheSpec spec = caches.get(cacheName);
+        return spec != null && spec.getTtlJitter() != null ? spec.getTtlJitter() : ttlJitter;
+    }
+
     public boolean isEnableStatistics() {
         return enableStatistics;
     }
@@ -47,4 +101,431 @@ public class RedisCacheProperties {
         this.enableStatistics = enableStatistics;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public Refresh getRefresh() {
+        return refresh;
+    }
+
+    public void setRefresh(Refresh refresh) {
+        this.refresh = refresh;
+    }
+
+    public HotKeys getHotKeys() {
+        return hotKeys;
+    }
+
+    public void setHotKeys(HotKeys hotKeys) {
+        this.hotKeys = hotKeys;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public ClearStrategy getClearStrategy() {
+        return clearStrategy;
+    }
+
+    public void setClearStrategy(ClearStrategy clearStrategy) {
+        this.clearStrategy = clearStrategy;
+    }
+
+    public ValueCodec getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(ValueCodec serializer) {
+        this.serializer = serializer;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public Map<String, CacheSpec> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(Map<String, CacheSpec> caches) {
+        this.caches = caches;
+    }
+
+    public enum ClearStrategy {
+        // Single KEYS call; blocks Redis while it walks the whole keyspace
+        KEYS,
+        // Cursor based SCAN in batches, keys removed with UNLINK
+        SCAN_UNLINK
+    }
+
+    /**
+     * Optional in-process L1 tier kept in front of Redis.
+     * Entries are bounded by size and TTL; writes and evictions are broadcast over pub/sub
+     * so every node drops its local copy.
+     */
+    public static class NearCache {
+
+        private boolean enabled = false;
+
+        private long maximumSize = 1000;
+
+        // Seconds an entry may live in L1 before it is re-read from Redis
+        private long ttl = 60;
+
+        // Pub/sub channel for invalidations, defaults to "<keyPrefix>:near-cache:invalidation"
+        private String channel;
+
+        // Per cache overrides, keyed by cache name
+        private Map<String, NearCacheSpec> caches = new LinkedHashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public void setChannel(String channel) {
+            this.channel = channel;
+        }
+
+        public Map<String, NearCacheSpec> getCaches() {
+            return caches;
+        }
+
+        public void setCaches(Map<String, NearCacheSpec> caches) {
+            this.caches = caches;
+        }
+    }
+
+    /**
+     * Executor of the refresh-ahead reloads.
+     */
+    public static class Refresh {
+
+        // Reloads running at once across all caches; requests beyond it are dropped
+        private int maxConcurrent = 16;
+
+        // One virtual thread per reload on Java 21+, a fixed platform pool otherwise
+        private boolean virtualThreads = true;
+
+        private int platformThreads = 4;
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+
+        public int getPlatformThreads() {
+            return platformThreads;
+        }
+
+        public void setPlatformThreads(int platformThreads) {
+            this.platformThreads = platformThreads;
+        }
+    }
+
+    /**
+     * Reads are counted in a count-min sketch over a sliding window of one to two {@code windowSeconds};
+     * keys read at least {@code threshold} times in it are hot. The {@code topK} hottest keys are served
+     * from an in-process copy that lives {@code promotionTtlMillis}, which also bounds how stale it can be
+     * on other nodes after a write.
+     */
+    public static class HotKeys {
+
+        private boolean enabled = false;
+
+        private long windowSeconds = 10;
+
+        private long threshold = 1000;
+
+        private int topK = 32;
+
+        private long promotionTtlMillis = 1000;
+
+        // Counters per sketch row, rounded up to a power of two; memory is 2 * 4 rows * width ints
+        private int sketchWidth = 4096;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getWindowSeconds() {
+            return windowSeconds;
+        }
+
+        public void setWindowSeconds(long windowSeconds) {
+            this.windowSeconds = windowSeconds;
+        }
+
+        public long getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(long threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getTopK() {
+            return topK;
+        }
+
+        public void setTopK(int topK) {
+            this.topK = topK;
+        }
+
+        public long getPromotionTtlMillis() {
+            return promotionTtlMillis;
+        }
+
+        public void setPromotionTtlMillis(long promotionTtlMillis) {
+            this.promotionTtlMillis = promotionTtlMillis;
+        }
+
+        public int getSketchWidth() {
+            return sketchWidth;
+        }
+
+        public void setSketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+        }
+    }
+
+    /**
+     * Queue of {@code @CacheableRedis(writeBehind = true)} puts, written by one background thread as
+     * pipelined batches once {@code flushSize} puts are queued or {@code flushIntervalMillis} has passed.
+     */
+    public static class WriteBehind {
+
+        // Puts waiting to be written; further puts are handled by the overflow policy
+        private int queueCapacity = 10000;
+
+        // Queued puts that trigger a flush without waiting for the interval
+        private int flushSize = 200;
+
+        // Longest time a put waits in the queue
+        private long flushIntervalMillis = 50;
+
+        private Overflow overflow = Overflow.DROP;
+
+        // How long BLOCK waits for room before dropping the put
+        private long blockTimeoutMillis = 100;
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getFlushSize() {
+            return flushSize;
+        }
+
+        public void setFlushSize(int flushSize) {
+            this.flushSize = flushSize;
+        }
+
+        public long getFlushIntervalMillis() {
+            return flushIntervalMillis;
+        }
+
+        public void setFlushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        public Overflow getOverflow() {
+            return overflow;
+        }
+
+        public void setOverflow(Overflow overflow) {
+            this.overflow = overflow;
+        }
+
+        public long getBlockTimeoutMillis() {
+            return blockTimeoutMillis;
+        }
+
+        public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+            this.blockTimeoutMillis = blockTimeoutMillis;
+        }
+
+        public enum Overflow {
+            // The put is not cached; the next miss loads the value again
+            DROP,
+            // The caller waits up to blockTimeoutMillis for room, then drops the put
+            BLOCK
+        }
+    }
+
+    /**
+     * Per cache near cache settings; unset values fall back to the {@link NearCache} defaults.
+     */
+    public static class NearCacheSpec {
+
+        private Boolean enabled;
+
+        private Long maximumSize;
+
+        private Long ttl;
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(Long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Long ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    /**
+     * Settings of a single cache; unset values fall back to the defaults above.
+     */
+    public static class CacheSpec {
+
+        // Seconds; 0 keeps entries until they are evicted
+        private Long ttl;
+
+        private Double ttlJitter;
+
+        private Boolean cacheNullValues;
+
+        // Replaces the global key prefix: keys are "<keyPrefix>:<cacheName>::<key>"
+        private String keyPrefix;
+
+        private ValueCodec serializer;
+
+        private Compression compression;
+
+        public Long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Long ttl) {
+            this.ttl = ttl;
+        }
+
+        public Double getTtlJitter() {
+            return ttlJitter;
+        }
+
+        public void setTtlJitter(Double ttlJitter) {
+            this.ttlJitter = ttlJitter;
+        }
+
+        public Boolean getCacheNullValues() {
+            return cacheNullValues;
+        }
+
+        public void setCacheNullValues(Boolean cacheNullValues) {
+            this.cacheNullValues = cacheNullValues;
+        }
+
+        public String getKeyPrefix() {
+            return keyPrefix;
+        }
+
+        public void setKeyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        public ValueCodec getSerializer() {
+            return serializer;
+        }
+
+        public void setSerializer(ValueCodec serializer) {
+            this.serializer = serializer;
+        }
+
+        public Compression getCompression() {
+            return compression;
+        }
+
+        public void setCompression(Compression compression) {
+            this.compression = compression;
+        }
+    }
 }
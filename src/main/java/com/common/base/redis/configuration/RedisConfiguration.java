@@ -1,10 +1,18 @@
 package com.common.base.redis.configuration;
 
+import com.common.base.redis.serializer.RedisValueSerializers;
 import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
 import io.github.bucket4j.distributed.proxy.ProxyManager;
 import io.github.bucket4j.redis.lettuce.cas.LettuceBasedProxyManager;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.ReadFrom;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
 import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.codec.StringCodec;
@@ -12,17 +20,23 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
-import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @Slf4j
@@ -30,6 +44,7 @@ import java.time.Duration;
 // if a property is explicitly set (e.g., 'rate-limiting.enabled=true')
 @ConditionalOnClass(LettuceBasedProxyManager.class)
 @ConditionalOnProperty(prefix = "spring.redis", name = "host") // Simple check to ensure basic config exists
+@EnableConfigurationProperties(RedisTopologyProperties.class)
 public class RedisConfiguration {
 
     @Value("${spring.redis.host}")
@@ -38,54 +53,110 @@ public class RedisConfiguration {
     @Value("${spring.redis.port}")
     private int redisPort;
 
+    @Value("${spring.redis.password:}")
+    private String redisPassword;
+
     @Bean
-    public LettuceConnectionFactory lettuceConnectionFactory(){
-        log.info("Configuring Redis connection for {}:{}", redisHost, redisPort);
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(redisHost, redisPort);
-        return new LettuceConnectionFactory(config);
+    public LettuceConnectionFactory lettuceConnectionFactory(RedisTopologyProperties topology){
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder clientConfig = LettuceClientConfiguration.builder()
+                .readFrom(readFrom(topology.getReadFrom()));
+        RedisPassword password = RedisPassword.of(redisPassword);
+        switch (topology.getMode()){
+            case CLUSTER -> {
+                List<String> nodes = topology.getNodes().isEmpty() ? List.of(redisHost+":"+redisPort) : topology.getNodes();
+                log.info("Configuring Redis cluster connection for {}, reading from {}", nodes, topology.getReadFrom());
+                RedisClusterConfiguration config = new RedisClusterConfiguration(nodes);
+                config.setMaxRedirects(topology.getMaxRedirects());
+                config.setPassword(password);
+                clientConfig.clientOptions(clusterClientOptions(topology));
+                return new LettuceConnectionFactory(config, clientConfig.build());
+            }
+            case SENTINEL -> {
+                log.info("Configuring Redis sentinel connection for master {} via {}, reading from {}",
+                        topology.getSentinelMaster(), topology.getNodes(), topology.getReadFrom());
+                RedisSentinelConfiguration config = new RedisSentinelConfiguration();
+                config.master(topology.getSentinelMaster());
+                topology.getNodes().forEach(node -> config.addSentinel(RedisNode.fromString(node)));
+                config.setPassword(password);
+                return new LettuceConnectionFactory(config, clientConfig.build());
+            }
+            default -> {
+                log.info("Configuring Redis connection for {}:{}", redisHost, redisPort);
+                RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(redisHost, redisPort);
+                config.setPassword(password);
+                // A single node has no replicas to read from
+                return new LettuceConnectionFactory(config);
+            }
+        }
+    }
+
+    // Accepts Lettuce's names in any case and with or without separators: REPLICA_PREFERRED, replicaPreferred
+    private static ReadFrom readFrom(String name){
+        return ReadFrom.valueOf(name.replace("_", "").replace("-", ""));
+    }
+
+    private static ClusterClientOptions clusterClientOptions(RedisTopologyProperties topology){
+        ClusterTopologyRefreshOptions refreshOptions = ClusterTopologyRefreshOptions.builder()
+                .enablePeriodicRefresh(Duration.ofSeconds(Math.max(1, topology.getTopologyRefreshSeconds())))
+                .enableAllAdaptiveRefreshTriggers()
+                .build();
+        return ClusterClientOptions.builder()
+                .topologyRefreshOptions(refreshOptions)
+                .maxRedirects(topology.getMaxRedirects())
+                .build();
     }
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory){
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory, RedisValueSerializers redisValueSerializers,
+                                                       RedisSerializationProperties redisSerializationProperties){
+        RedisSerializer<Object> valueSerializer = redisValueSerializers.get(redisSerializationProperties.getTemplateCodec());
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
         redisTemplate.setConnectionFactory(connectionFactory);
         redisTemplate.setKeySerializer(new StringRedisSerializer());
         redisTemplate.setHashKeySerializer(new StringRedisSerializer());
-        redisTemplate.setValueSerializer(new JdkSerializationRedisSerializer());
-        redisTemplate.setHashValueSerializer(new JdkSerializationRedisSerializer());
+        redisTemplate.setValueSerializer(valueSerializer);
+        redisTemplate.setHashValueSerializer(valueSerializer);
         redisTemplate.afterPropertiesSet();
         return redisTemplate;
     }
 
 
     /**
-     * 1. PROVIDE THE NATIVE RedisClient INSTANCE
+     * 1. PROVIDE THE NATIVE CLIENT INSTANCE
      * This client instance is managed by Spring Data Redis's LettuceConnectionFactory
      * and is the required dependency for Bucket4j's LettuceBasedProxyManager.
+     * A RedisClient for standalone and sentinel, a RedisClusterClient for cluster.
      * * @param connectionFactory The Spring Data Redis connection factory.
-     * @return The native Lettuce RedisClient instance.
+     * @return The native Lettuce client instance.
      */
     @Bean
-    public RedisClient redisClient(RedisConnectionFactory connectionFactory) {
+    public AbstractRedisClient redisClient(RedisConnectionFactory connectionFactory) {
         if (!(connectionFactory instanceof LettuceConnectionFactory lettuceFactory)) {
             // Throw a meaningful exception if the configuration is incorrect.
             throw new IllegalStateException("RedisConnectionFactory is not a LettuceConnectionFactory. Bucket4j Redis integration requires Lettuce.");
         }
 
-        // Extract the native RedisClient instance
-        Object nativeClient = lettuceFactory.getNativeClient();
-        if (nativeClient instanceof RedisClient client) {
-            return client;
+        // Extract the native client instance
+        AbstractRedisClient nativeClient = lettuceFactory.getNativeClient();
+        if (nativeClient instanceof RedisClient || nativeClient instanceof RedisClusterClient) {
+            return nativeClient;
         }
 
         throw new IllegalStateException("Could not extract RedisClient from LettuceConnectionFactory. Check Lettuce setup.");
     }
 
+    /**
+     * Connection for Bucket4j and the async Lua scripts. It keeps the default ReadFrom (upstream),
+     * so rate limiting never reads state from a lagging replica.
+     */
     @Bean
-    public StatefulRedisConnection<String, byte[]> stringKeyConnection(RedisClient redisClient) {
+    public StatefulConnection<String, byte[]> stringKeyConnection(AbstractRedisClient redisClient) {
         // Define the codec: Key (String) -> StringCodec.UTF8, Value (Bucket data) -> ByteArrayCodec.INSTANCE
         RedisCodec<String, byte[]> codec = RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE);
-        return redisClient.connect(codec);
+        if (redisClient instanceof RedisClusterClient clusterClient) {
+            return clusterClient.connect(codec);
+        }
+        return ((RedisClient) redisClient).connect(codec);
     }
 
     /**
@@ -96,7 +167,8 @@ public class RedisConfiguration {
      * @return The Bucket4j ProxyManager for distributed rate limiting.
      */
     @Bean
-    public ProxyManager<String> proxyManager(StatefulRedisConnection<String, byte[]> stringKeyConnection) {
+    @SuppressWarnings("unchecked")
+    public ProxyManager<String> proxyManager(StatefulConnection<String, byte[]> stringKeyConnection) {
         // The builder will correctly infer ProxyManager<String> because of the connection type.
         // Define the expiration strategy using the configured TTL
 
@@ -122,7 +194,12 @@ public class RedisConfiguration {
         ExpirationAfterWriteStrategy expirationStrategy =
                 ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ofMinutes(60));
         try {
-            return LettuceBasedProxyManager.builderFor(stringKeyConnection)
+            // Bucket keys carry a hash tag (see RateLimitKeys.forIdentifier and RateLimitKeys.toRedisKey), each bucket lives on one slot
+            LettuceBasedProxyManager.LettuceBasedProxyManagerBuilder<String> builder =
+                    stringKeyConnection instanceof StatefulRedisClusterConnection<?, ?> clusterConnection
+                            ? LettuceBasedProxyManager.builderFor((StatefulRedisClusterConnection<String, byte[]>) clusterConnection)
+                            : LettuceBasedProxyManager.builderFor((StatefulRedisConnection<String, byte[]>) stringKeyConnection);
+            return builder
                     .withExpirationStrategy(expirationStrategy)
                     .build();
         } catch (Exception e) {
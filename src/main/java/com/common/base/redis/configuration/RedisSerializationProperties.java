@@ -0,0 +1,46 @@
+package com.common.base.redis.configuration;
+
+import com.common.base.redis.serializer.ValueCodec;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "redis.serialization")
+public class RedisSerializationProperties {
+
+    // Value codec of the shared RedisTemplate
+    private ValueCodec templateCodec = ValueCodec.JDK;
+
+    // Type ids for the SMILE codec, e.g. 64: com.example.UserDto; ids below 64 are reserved
+    private Map<Integer, String> types = new LinkedHashMap<>();
+
+    // Packages whose unregistered classes the SMILE codec reads by class name, in addition to the application's own
+    private List<String> allowedPackages = new ArrayList<>();
+
+    public ValueCodec getTemplateCodec() {
+        return templateCodec;
+    }
+
+    public void setTemplateCodec(ValueCodec templateCodec) {
+        this.templateCodec = templateCodec;
+    }
+
+    public Map<Integer, String> getTypes() {
+        return types;
+    }
+
+    public void setTypes(Map<Integer, String> types) {
+        this.types = types;
+    }
+
+    public List<String> getAllowedPackages() {
+        return allowedPackages;
+    }
+
+    public void setAllowedPackages(List<String> allowedPackages) {
+        this.allowedPackages = allowedPackages;
+    }
+}
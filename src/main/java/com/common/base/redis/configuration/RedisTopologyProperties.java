@@ -0,0 +1,87 @@
+package com.common.base.redis.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How the application reaches Redis. Standalone uses {@code spring.redis.host} and {@code spring.redis.port};
+ * sentinel and cluster take their nodes from {@link #nodes}. {@code spring.redis.host} must still be set,
+ * it is the switch that enables {@link RedisConfiguration}; in cluster mode it doubles as the seed node
+ * when no nodes are listed.
+ */
+@ConfigurationProperties(prefix = "redis.topology")
+public class RedisTopologyProperties {
+
+    private Mode mode = Mode.STANDALONE;
+
+    // host:port of the cluster seed nodes or of the sentinels
+    private List<String> nodes = new ArrayList<>();
+
+    // Name of the master monitored by the sentinels
+    private String sentinelMaster;
+
+    // Lettuce ReadFrom of the connection factory (cache reads), e.g. UPSTREAM, REPLICA_PREFERRED, NEAREST;
+    // rate limiting scripts always run on the upstream node
+    private String readFrom = "UPSTREAM";
+
+    private int maxRedirects = 5;
+
+    // Periodic cluster topology refresh; failovers and MOVED replies also trigger an adaptive refresh
+    private long topologyRefreshSeconds = 30;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<String> nodes) {
+        this.nodes = nodes;
+    }
+
+    public String getSentinelMaster() {
+        return sentinelMaster;
+    }
+
+    public void setSentinelMaster(String sentinelMaster) {
+        this.sentinelMaster = sentinelMaster;
+    }
+
+    public String getReadFrom() {
+        return readFrom;
+    }
+
+    public void setReadFrom(String readFrom) {
+        this.readFrom = readFrom;
+    }
+
+    public int getMaxRedirects() {
+        return maxRedirects;
+    }
+
+    public void setMaxRedirects(int maxRedirects) {
+        this.maxRedirects = maxRedirects;
+    }
+
+    public long getTopologyRefreshSeconds() {
+        return topologyRefreshSeconds;
+    }
+
+    public void setTopologyRefreshSeconds(long topologyRefreshSeconds) {
+        this.topologyRefreshSeconds = topologyRefreshSeconds;
+    }
+
+    public enum Mode {
+        STANDALONE,
+        SENTINEL,
+        CLUSTER
+    }
+}
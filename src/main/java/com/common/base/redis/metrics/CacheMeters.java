@@ -0,0 +1,56 @@
+package com.common.base.redis.metrics;
+
+/**
+ * Meters of one cache, resolved once per call so recording does no registry lookup.
+ * The counted variants let bulk operations record a whole batch with one increment.
+ */
+public interface CacheMeters {
+
+    CacheMeters NOOP = new CacheMeters() {
+        @Override
+        public void hit(long count) {
+        }
+
+        @Override
+        public void miss(long count) {
+        }
+
+        @Override
+        public void put(long count) {
+        }
+
+        @Override
+        public void eviction(long count) {
+        }
+
+        @Override
+        public void load(long durationNanos, boolean success) {
+        }
+    };
+
+    default void hit() {
+        hit(1);
+    }
+
+    default void miss() {
+        miss(1);
+    }
+
+    default void put() {
+        put(1);
+    }
+
+    default void eviction() {
+        eviction(1);
+    }
+
+    void hit(long count);
+
+    void miss(long count);
+
+    void put(long count);
+
+    void eviction(long count);
+
+    void load(long durationNanos, boolean success);
+}
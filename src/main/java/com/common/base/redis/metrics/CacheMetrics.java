@@ -0,0 +1,118 @@
+package com.common.base.redis.metrics;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Per cache hit, miss, put, eviction and load time meters, enabled by {@code redis.cache.enable-statistics}.
+ * Meters of the caches named in {@code redis.cache.caches} and {@code redis.cache.near-cache.caches}
+ * are registered at startup, other caches on first use; after that a recording is a map read and
+ * an increment. The write-behind queue adds its depth, flush time, batch size and dropped puts.
+ * Uses the application's MeterRegistry, or Micrometer's global registry when there is none.
+ */
+@Component
+public class CacheMetrics {
+
+    private final MeterRegistry registry;
+
+    private final boolean enabled;
+
+    private final Map<String, CacheMeters> meters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CacheMetrics(ObjectProvider<MeterRegistry> meterRegistry, RedisCacheProperties redisCacheProperties) {
+        this(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), redisCacheProperties.isEnableStatistics());
+        redisCacheProperties.getCaches().keySet().forEach(this::forCache);
+        redisCacheProperties.getNearCache().getCaches().keySet().forEach(this::forCache);
+    }
+
+    public CacheMetrics(MeterRegistry registry, boolean enabled) {
+        this.registry = registry;
+        this.enabled = enabled;
+    }
+
+    public CacheMeters forCache(String cacheName){
+        if(!enabled) return CacheMeters.NOOP;
+        CacheMeters cacheMeters = meters.get(cacheName);
+        return cacheMeters != null ? cacheMeters : meters.computeIfAbsent(cacheName, this::register);
+    }
+
+    /**
+     * Registers the write-behind queue depth gauge and returns the flush meters.
+     */
+    public WriteBehindMeters writeBehind(IntSupplier queueDepth){
+        if(!enabled) return WriteBehindMeters.NOOP;
+        // Strong reference: the supplier is typically a method reference nothing else holds on to
+        Gauge.builder("redis.cache.write-behind.queue", queueDepth, IntSupplier::getAsInt).strongReference(true).register(registry);
+        return new RegisteredWriteBehindMeters(
+                Timer.builder("redis.cache.write-behind.flushes").tag("result", "success").register(registry),
+                Timer.builder("redis.cache.write-behind.flushes").tag("result", "failure").register(registry),
+                DistributionSummary.builder("redis.cache.write-behind.batch").register(registry),
+                Counter.builder("redis.cache.write-behind.dropped").register(registry));
+    }
+
+    private CacheMeters register(String cacheName){
+        return new RegisteredCacheMeters(
+                Counter.builder("redis.cache.gets").tag("cache", cacheName).tag("result", "hit").register(registry),
+                Counter.builder("redis.cache.gets").tag("cache", cacheName).tag("result", "miss").register(registry),
+                Counter.builder("redis.cache.puts").tag("cache", cacheName).register(registry),
+                Counter.builder("redis.cache.evictions").tag("cache", cacheName).register(registry),
+                Timer.builder("redis.cache.loads").tag("cache", cacheName).tag("result", "success").register(registry),
+                Timer.builder("redis.cache.loads").tag("cache", cacheName).tag("result", "failure").register(registry));
+    }
+
+    private record RegisteredCacheMeters(Counter hits, Counter misses, Counter puts, Counter evictions,
+                                         Timer successfulLoads, Timer failedLoads) implements CacheMeters {
+        @Override
+        public void hit(long count) {
+            hits.increment(count);
+        }
+
+        @Override
+        public void miss(long count) {
+            misses.increment(count);
+        }
+
+        @Override
+        public void put(long count) {
+            puts.increment(count);
+        }
+
+        @Override
+        public void eviction(long count) {
+            evictions.increment(count);
+        }
+
+        @Override
+        public void load(long durationNanos, boolean success) {
+            (success ? successfulLoads : failedLoads).record(durationNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private record RegisteredWriteBehindMeters(Timer successfulFlushes, Timer failedFlushes, DistributionSummary batchSizes,
+                                               Counter drops) implements WriteBehindMeters {
+        @Override
+        public void flush(long durationNanos, int entries, boolean success) {
+            (success ? successfulFlushes : failedFlushes).record(durationNanos, TimeUnit.NANOSECONDS);
+            batchSizes.record(entries);
+        }
+
+        @Override
+        public void dropped() {
+            drops.increment();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.common.base.redis.metrics;
+
+/**
+ * Meters of the write-behind queue; the queue depth is a gauge read from the queue itself.
+ */
+public interface WriteBehindMeters {
+
+    WriteBehindMeters NOOP = new WriteBehindMeters() {
+        @Override
+        public void flush(long durationNanos, int entries, boolean success) {
+        }
+
+        @Override
+        public void dropped() {
+        }
+    };
+
+    void flush(long durationNanos, int entries, boolean success);
+
+    void dropped();
+}
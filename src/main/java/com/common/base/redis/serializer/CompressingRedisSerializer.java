@@ -0,0 +1,158 @@
+package com.common.base.redis.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Wraps a value serializer and compresses payloads of at least {@code threshold} bytes.
+ *
+ * Layout: {@code [header]} followed by either the codec's bytes (header {@link Compression#RAW_HEADER})
+ * or the uncompressed length as a 4 byte big-endian int and the compressed bytes. Values that do not
+ * shrink are stored raw. Reads accept every compression, so a cache can switch codec without a flush,
+ * and payloads without a header (written before compression was enabled) are passed to the codec as is.
+ * The uncompressed length is checked against {@link #MAX_LENGTH} and {@link #MAX_RATIO} times the
+ * compressed size before anything is allocated, so a corrupt or hostile value cannot claim gigabytes;
+ * writes store values that would not pass that check raw.
+ * Codecs implementing {@link RangeRedisSerializer} write behind the header and read from behind it or
+ * from a pooled buffer, others get exact-size copies. Scratch buffers come from a small pool; buffers
+ * above 1 MB are not kept.
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    // Redis' own limit for a string value
+    static final int MAX_LENGTH = 512 << 20;
+
+    // Above what deflate can reach, and far above what zstd reaches on real cached values
+    static final int MAX_RATIO = 1024;
+
+    private static final int LENGTH_BYTES = 4;
+
+    private static final int MAX_POOLED_BUFFER = 1 << 20;
+
+    private final RedisSerializer<Object> delegate;
+
+    @Nullable
+    private final RangeRedisSerializer rangeDelegate;
+
+    private final Compression compression;
+
+    private final ValueCompressors compressors;
+
+    private final ValueCompressor compressor;
+
+    private final int threshold;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    CompressingRedisSerializer(RedisSerializer<Object> delegate, Compression compression, int threshold, ValueCompressors compressors) {
+        this.delegate = delegate;
+        this.rangeDelegate = delegate instanceof RangeRedisSerializer range ? range : null;
+        this.compression = compression;
+        this.compressors = compressors;
+        this.compressor = compressors.get(compression);
+        this.threshold = Math.max(1, threshold);
+        this.buffers = new ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        // With a range codec the raw bytes start at 1 and the header slot is already there
+        byte[] raw;
+        int rawOffset;
+        if(rangeDelegate != null){
+            raw = rangeDelegate.serialize(value, 1);
+            rawOffset = 1;
+        } else {
+            raw = delegate.serialize(value);
+            if(raw == null) return null;
+            rawOffset = 0;
+        }
+        int rawLength = raw.length - rawOffset;
+        if(rawLength < threshold) return withRawHeader(raw, rawOffset);
+
+        // Only keep the compressed form when it is smaller than the raw one
+        byte[] buffer = acquireBuffer(rawLength);
+        try {
+            int offset = 1 + LENGTH_BYTES;
+            int written = compressor.compress(raw, rawOffset, rawLength, buffer, offset);
+            if(written < 0 || offset + written >= rawLength || !isReadable(rawLength, written)) return withRawHeader(raw, rawOffset);
+            buffer[0] = compression.header();
+            buffer[1] = (byte) (rawLength >>> 24);
+            buffer[2] = (byte) (rawLength >>> 16);
+            buffer[3] = (byte) (rawLength >>> 8);
+            buffer[4] = (byte) rawLength;
+            return Arrays.copyOf(buffer, offset + written);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if(bytes == null || bytes.length == 0) return delegate.deserialize(bytes);
+        byte header = bytes[0];
+        if(header == Compression.RAW_HEADER){
+            return rangeDelegate != null
+                    ? rangeDelegate.deserialize(bytes, 1, bytes.length - 1)
+                    : delegate.deserialize(Arrays.copyOfRange(bytes, 1, bytes.length));
+        }
+        Compression payloadCompression = ValueCompressors.forHeader(header);
+        if(payloadCompression == null || bytes.length < 1 + LENGTH_BYTES){
+            return delegate.deserialize(bytes);
+        }
+        int length = (bytes[1] & 0xff) << 24 | (bytes[2] & 0xff) << 16 | (bytes[3] & 0xff) << 8 | (bytes[4] & 0xff);
+        if(length < 0 || !isReadable(length, bytes.length - 1 - LENGTH_BYTES)){
+            throw new SerializationException("Invalid uncompressed length " + length + " for " + bytes.length + " stored bytes");
+        }
+        if(rangeDelegate == null){
+            byte[] raw = new byte[length];
+            decompress(payloadCompression, bytes, raw, length);
+            return delegate.deserialize(raw);
+        }
+        byte[] buffer = acquireBuffer(length);
+        try {
+            decompress(payloadCompression, bytes, buffer, length);
+            return rangeDelegate.deserialize(buffer, 0, length);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private void decompress(Compression payloadCompression, byte[] bytes, byte[] dst, int length){
+        try {
+            ValueCompressor payloadCompressor = payloadCompression == compression ? compressor : compressors.get(payloadCompression);
+            payloadCompressor.decompress(bytes, 1 + LENGTH_BYTES, dst, length);
+        } catch (IllegalStateException e) {
+            throw new SerializationException("Cannot read " + payloadCompression + " compressed value", e);
+        }
+    }
+
+    static boolean isReadable(int length, int compressedLength){
+        return length <= MAX_LENGTH && (long) length <= (long) Math.max(1, compressedLength) * MAX_RATIO;
+    }
+
+    private static byte[] withRawHeader(byte[] raw, int rawOffset){
+        if(rawOffset == 1){
+            raw[0] = Compression.RAW_HEADER;
+            return raw;
+        }
+        byte[] bytes = new byte[raw.length + 1];
+        bytes[0] = Compression.RAW_HEADER;
+        System.arraycopy(raw, 0, bytes, 1, raw.length);
+        return bytes;
+    }
+
+    private byte[] acquireBuffer(int size){
+        byte[] buffer = buffers.poll();
+        return buffer != null && buffer.length >= size ? buffer : new byte[size];
+    }
+
+    private void releaseBuffer(byte[] buffer){
+        if(buffer.length <= MAX_POOLED_BUFFER) buffers.offer(buffer);
+    }
+}
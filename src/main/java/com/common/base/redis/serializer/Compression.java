@@ -0,0 +1,29 @@
+package com.common.base.redis.serializer;
+
+/**
+ * Compression applied on top of a {@link ValueCodec} to values above the size threshold.
+ * The header byte starts every payload written by {@link CompressingRedisSerializer}; none of them can
+ * be the first byte of a JDK, JSON or Smile payload, so values written before compression was enabled
+ * are still read.
+ */
+public enum Compression {
+    // Values are stored as the codec writes them, without a header
+    NONE((byte) 0),
+    // java.util.zip raw deflate at BEST_SPEED, no extra dependency
+    DEFLATE((byte) 0x02),
+    // Zstandard level 3 via zstd-jni, which must be on the classpath; smaller and faster than deflate
+    ZSTD((byte) 0x03);
+
+    // Header of values below the threshold or that did not shrink
+    static final byte RAW_HEADER = 0x01;
+
+    private final byte header;
+
+    Compression(byte header) {
+        this.header = header;
+    }
+
+    byte header(){
+        return header;
+    }
+}
@@ -0,0 +1,64 @@
+package com.common.base.redis.serializer;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw deflate (no zlib header or checksum, the Redis value is its own frame).
+ * Deflaters and inflaters hold native buffers and are expensive to create, so a bounded number
+ * of them is kept for reuse; extras beyond the pool are released right away.
+ */
+final class DeflateValueCompressor implements ValueCompressor {
+
+    private final BlockingQueue<Deflater> deflaters;
+
+    private final BlockingQueue<Inflater> inflaters;
+
+    DeflateValueCompressor(int poolSize) {
+        this.deflaters = new ArrayBlockingQueue<>(poolSize);
+        this.inflaters = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) {
+        Deflater deflater = deflaters.poll();
+        if(deflater == null) deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(src, srcOffset, srcLength);
+            deflater.finish();
+            int written = deflater.deflate(dst, dstOffset, dst.length - dstOffset);
+            return deflater.finished() ? written : -1;
+        } finally {
+            deflater.reset();
+            if(!deflaters.offer(deflater)) deflater.end();
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, byte[] dst, int length) {
+        Inflater inflater = inflaters.poll();
+        if(inflater == null) inflater = new Inflater(true);
+        try {
+            inflater.setInput(src, offset, src.length - offset);
+            int read = 0;
+            while (read < length){
+                int n = inflater.inflate(dst, read, length - read);
+                if(n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                read += n;
+            }
+            if(read != length){
+                throw new SerializationException("Truncated deflate payload: " + read + " of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt deflate payload", e);
+        } finally {
+            inflater.reset();
+            if(!inflaters.offer(inflater)) inflater.end();
+        }
+    }
+}
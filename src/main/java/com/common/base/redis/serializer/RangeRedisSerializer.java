@@ -0,0 +1,21 @@
+package com.common.base.redis.serializer;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Value serializer that can write after and read from part of an array, so
+ * {@link CompressingRedisSerializer} can put its header in front of a payload, and read one from
+ * behind it or from a pooled buffer, without copying it.
+ */
+interface RangeRedisSerializer {
+
+    /**
+     * Serializes the value after {@code prefix} leading bytes left for the caller.
+     */
+    byte[] serialize(Object value, int prefix) throws SerializationException;
+
+    /**
+     * Reads a value from {@code bytes[offset, offset + length)}; the array is not kept after the call.
+     */
+    Object deserialize(byte[] bytes, int offset, int length) throws SerializationException;
+}
@@ -0,0 +1,81 @@
+package com.common.base.redis.serializer;
+
+import com.common.base.redis.configuration.RedisSerializationProperties;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One shared serializer instance per {@link ValueCodec}, used by the RedisTemplate and the cache manager,
+ * and per codec, {@link Compression} and threshold for caches that compress large values.
+ */
+@Component
+public class RedisValueSerializers {
+
+    private final Map<ValueCodec, RedisSerializer<Object>> serializers = new EnumMap<>(ValueCodec.class);
+
+    private final Map<CompressedCodec, RedisSerializer<Object>> compressingSerializers = new ConcurrentHashMap<>();
+
+    private final ValueCompressors compressors = new ValueCompressors();
+
+    /**
+     * Besides {@code redis.serialization.allowed-packages}, the SMILE codec reads unregistered classes
+     * from the application's auto-configuration packages.
+     */
+    @Autowired
+    public RedisValueSerializers(ObjectMapper objectMapper, RedisSerializationProperties properties, BeanFactory beanFactory) {
+        this(objectMapper, properties, AutoConfigurationPackages.has(beanFactory) ? AutoConfigurationPackages.get(beanFactory) : List.of());
+    }
+
+    public RedisValueSerializers(ObjectMapper objectMapper, RedisSerializationProperties properties) {
+        this(objectMapper, properties, List.of());
+    }
+
+    private RedisValueSerializers(ObjectMapper objectMapper, RedisSerializationProperties properties, List<String> applicationPackages) {
+        TypeIdRegistry registry = new TypeIdRegistry(properties.getTypes(), getClass().getClassLoader());
+        List<String> allowedPackages = new ArrayList<>(properties.getAllowedPackages());
+        allowedPackages.addAll(applicationPackages);
+        serializers.put(ValueCodec.JDK, new JdkSerializationRedisSerializer());
+        serializers.put(ValueCodec.JSON, createJsonSerializer(objectMapper));
+        serializers.put(ValueCodec.SMILE, new SmileRedisSerializer(registry, allowedPackages));
+    }
+
+    public RedisSerializer<Object> get(ValueCodec codec){
+        return serializers.get(codec);
+    }
+
+    /**
+     * @throws IllegalStateException if {@code compression} is ZSTD and zstd-jni is not on the classpath
+     */
+    public RedisSerializer<Object> get(ValueCodec codec, Compression compression, int threshold){
+        if(compression == Compression.NONE) return get(codec);
+        return compressingSerializers.computeIfAbsent(new CompressedCodec(codec, compression, threshold),
+                key -> new CompressingRedisSerializer(get(codec), compression, threshold, compressors));
+    }
+
+    private GenericJackson2JsonRedisSerializer createJsonSerializer(ObjectMapper objectMapper) {
+        ObjectMapper copy = objectMapper.copy();
+        copy.activateDefaultTyping(
+                LaissezFaireSubTypeValidator.instance,//Using LaissezFaireSubTypeValidator can expose your app to remote code execution (RCE) if untrusted data is deserialized. This is especially dangerous in APIs or services that accept JSON from external sources.
+                ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY
+        );
+        return new GenericJackson2JsonRedisSerializer(copy);
+    }
+
+    private record CompressedCodec(ValueCodec codec, Compression compression, int threshold) {
+    }
+}
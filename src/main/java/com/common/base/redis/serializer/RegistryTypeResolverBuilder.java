@@ -0,0 +1,125 @@
+package com.common.base.redis.serializer;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.exc.InvalidTypeIdException;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.TypeIdResolver;
+import com.fasterxml.jackson.databind.jsontype.impl.TypeIdResolverBase;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Default typing that writes {@link TypeIdRegistry} ids instead of fully qualified class names.
+ * Types are included for the same values as Spring's {@code GenericJackson2JsonRedisSerializer}:
+ * everything except primitives, wrappers, enums and final JDK types such as String.
+ * Ids that are class names are only resolved for registered types, {@code java.util} collections and
+ * maps, {@code java.time} and {@code java.math} types and classes of the allowed packages, so a
+ * payload cannot make the mapper instantiate arbitrary classes.
+ */
+final class RegistryTypeResolverBuilder extends ObjectMapper.DefaultTypeResolverBuilder {
+
+    static final String TYPE_PROPERTY = "@t";
+
+    private final TypeIdRegistry registry;
+
+    RegistryTypeResolverBuilder(TypeIdRegistry registry, Collection<String> allowedPackages) {
+        super(ObjectMapper.DefaultTyping.NON_FINAL, validator(registry, allowedPackages));
+        this.registry = registry;
+        init(JsonTypeInfo.Id.CUSTOM, null);
+        inclusion(JsonTypeInfo.As.PROPERTY);
+        typeProperty(TYPE_PROPERTY);
+    }
+
+    static PolymorphicTypeValidator validator(TypeIdRegistry registry, Collection<String> allowedPackages){
+        BasicPolymorphicTypeValidator.Builder builder = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType(new BasicPolymorphicTypeValidator.TypeMatcher() {
+                    @Override
+                    public boolean match(MapperConfig<?> config, Class<?> type) {
+                        return registry.isRegistered(type) || isJdkValueType(type);
+                    }
+                })
+                .allowIfSubTypeIsArray();
+        for(String allowedPackage : allowedPackages){
+            builder.allowIfSubType(allowedPackage.endsWith(".") ? allowedPackage : allowedPackage + ".");
+        }
+        return builder.build();
+    }
+
+    private static boolean isJdkValueType(Class<?> type){
+        String name = type.getName();
+        if(name.startsWith("java.time.") || name.startsWith("java.math.")) return true;
+        return name.startsWith("java.util.") && (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type));
+    }
+
+    @Override
+    public boolean useForType(JavaType type){
+        if(type.isJavaLangObject()) return true;
+        while (type.isArrayType() || type.isReferenceType()){
+            type = type.getContentType();
+        }
+        Class<?> raw = type.getRawClass();
+        if(type.isEnumType() || ClassUtils.isPrimitiveOrWrapper(raw)) return false;
+        if(type.isFinal() && raw.getPackageName().startsWith("java")) return false;
+        return !TreeNode.class.isAssignableFrom(raw);
+    }
+
+    @Override
+    protected TypeIdResolver idResolver(MapperConfig<?> config, JavaType baseType, PolymorphicTypeValidator subtypeValidator,
+                                        Collection<NamedType> subtypes, boolean forSer, boolean forDeser){
+        return new RegistryTypeIdResolver(baseType, config.getTypeFactory(), registry, subtypeValidator);
+    }
+
+    private static final class RegistryTypeIdResolver extends TypeIdResolverBase {
+
+        private final TypeIdRegistry registry;
+
+        private final PolymorphicTypeValidator validator;
+
+        RegistryTypeIdResolver(JavaType baseType, TypeFactory typeFactory, TypeIdRegistry registry, PolymorphicTypeValidator validator) {
+            super(baseType, typeFactory);
+            this.registry = registry;
+            this.validator = validator;
+        }
+
+        @Override
+        public String idFromValue(Object value){
+            return idFromValueAndType(value, value.getClass());
+        }
+
+        @Override
+        public String idFromValueAndType(Object value, Class<?> type){
+            // Enum constants with a body are anonymous subclasses
+            if(Enum.class.isAssignableFrom(type) && !type.isEnum()) type = type.getSuperclass();
+            return registry.idFor(type);
+        }
+
+        @Override
+        public JavaType typeFromId(DatabindContext context, String id) throws IOException {
+            Class<?> type = registry.typeFor(id);
+            if(type == null){
+                if(_baseType == null) throw InvalidTypeIdException.from(null, "Unknown type id '" + id + "'", null, id);
+                // Class name: loaded only if the validator allows it, after Jackson's own deny list
+                return context.resolveAndValidateSubType(_baseType, id, validator);
+            }
+            return _baseType == null || _baseType.isJavaLangObject()
+                    ? context.constructType(type)
+                    : context.getTypeFactory().constructSpecializedType(_baseType, type);
+        }
+
+        @Override
+        public JsonTypeInfo.Id getMechanism(){
+            return JsonTypeInfo.Id.CUSTOM;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.common.base.redis.serializer;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Binary JSON (Smile) values with registered type ids.
+ * Property names and repeated short strings are back-referenced within a payload and class names
+ * are replaced by {@link TypeIdRegistry} ids, which makes payloads considerably smaller than the
+ * JSON and JDK forms. Payloads that do not start with the Smile header, e.g. entries written by a
+ * previous codec, read as {@code null} so caches treat them as a miss and overwrite them.
+ */
+@Slf4j
+public class SmileRedisSerializer implements RedisSerializer<Object>, RangeRedisSerializer {
+
+    // Spring's cached null marker
+    private static final byte[] NULL_VALUE = {0};
+
+    private final ObjectMapper mapper;
+
+    /**
+     * @param allowedPackages packages whose unregistered classes may be read by class name
+     */
+    public SmileRedisSerializer(TypeIdRegistry registry, Collection<String> allowedPackages) {
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        // Own mapper: the stored form must not change with the web layer's JSON settings.
+        // Classpath modules (java.time, Optional, ...) are picked up; new fields may be added to cached types.
+        this.mapper = SmileMapper.builder(smileFactory)
+                .findAndAddModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        this.mapper.setDefaultTyping(new RegistryTypeResolverBuilder(registry, allowedPackages));
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        return serialize(value, 0);
+    }
+
+    @Override
+    public byte[] serialize(Object value, int prefix) throws SerializationException {
+        if(value == null) return new byte[prefix];
+        if(value instanceof NullValue){
+            byte[] bytes = new byte[prefix + 1];
+            bytes[prefix] = NULL_VALUE[0];
+            return bytes;
+        }
+        if(prefix == 0){
+            try {
+                return mapper.writeValueAsBytes(value);
+            } catch (IOException e) {
+                throw new SerializationException("Could not write Smile: " + e.getMessage(), e);
+            }
+        }
+        try (ByteArrayBuilder out = new ByteArrayBuilder()) {
+            for(int i = 0; i < prefix; i++){
+                out.write(0);
+            }
+            mapper.writeValue(out, value);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write Smile: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        return bytes == null ? null : deserialize(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, int offset, int length) throws SerializationException {
+        if(length == 0) return null;
+        if(length == 1 && bytes[offset] == NULL_VALUE[0]) return NullValue.INSTANCE;
+        if(!isSmile(bytes, offset, length)){
+            log.debug("Ignoring a {} byte value that was not written by the Smile codec", length);
+            return null;
+        }
+        try {
+            return mapper.readValue(bytes, offset, length, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read Smile: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isSmile(byte[] bytes, int offset, int length){
+        return length >= 4 && bytes[offset] == ':' && bytes[offset + 1] == ')' && bytes[offset + 2] == '\n';
+    }
+}
@@ -0,0 +1,75 @@
+package com.common.base.redis.serializer;
+
+import com.common.base.redis.cache.RefreshableValue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Stable numeric ids for the classes written into serialized payloads.
+ * Ids below {@link #FIRST_USER_ID} are reserved for common JDK types; application types are
+ * registered through {@code redis.serialization.types}. Ids must never be reused for another
+ * class while payloads written with them may still be in Redis. Unregistered classes are written
+ * by class name and only read back from the allowed packages, see {@code redis.serialization.allowed-packages}.
+ */
+public final class TypeIdRegistry {
+
+    public static final int FIRST_USER_ID = 64;
+
+    private static final List<Class<?>> BUILT_IN_TYPES = List.of(
+            ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+            HashSet.class, LinkedHashSet.class, TreeSet.class, Date.class,
+            LocalDate.class, LocalDateTime.class, Instant.class, BigDecimal.class, BigInteger.class,
+            RefreshableValue.class
+    );
+
+    private final Map<Class<?>, String> idsByType = new HashMap<>();
+
+    private final Map<String, Class<?>> typesById = new HashMap<>();
+
+    public TypeIdRegistry(Map<Integer, String> userTypes, ClassLoader classLoader) {
+        for(int i=0;i< BUILT_IN_TYPES.size();i++){
+            register(i + 1, BUILT_IN_TYPES.get(i));
+        }
+        userTypes.forEach((id, className) -> {
+            if(id < FIRST_USER_ID){
+                throw new IllegalArgumentException("Type ids below " + FIRST_USER_ID + " are reserved: " + id + "=" + className);
+            }
+            try {
+                register(id, Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Unknown class registered for type id " + id + ": " + className, e);
+            }
+        });
+    }
+
+    private void register(int id, Class<?> type){
+        String key = Integer.toString(id);
+        if(typesById.putIfAbsent(key, type) != null || idsByType.putIfAbsent(type, key) != null){
+            throw new IllegalArgumentException("Duplicate type id registration: " + id + "=" + type.getName());
+        }
+    }
+
+    /**
+     * @return the registered id, or the class name for unregistered classes
+     */
+    public String idFor(Class<?> type){
+        String id = idsByType.get(type);
+        return id != null ? id : type.getName();
+    }
+
+    public boolean isRegistered(Class<?> type){
+        return idsByType.containsKey(type);
+    }
+
+    /**
+     * @return the registered class, or {@code null} when the id is a class name
+     */
+    public Class<?> typeFor(String id){
+        return typesById.get(id);
+    }
+}
@@ -0,0 +1,13 @@
+package com.common.base.redis.serializer;
+
+/**
+ * Value encodings available for Redis templates and caches.
+ */
+public enum ValueCodec {
+    // Java serialization; values must implement Serializable
+    JDK,
+    // Jackson JSON with fully qualified class names embedded for polymorphic values
+    JSON,
+    // Jackson Smile (binary JSON) with short registered type ids instead of class names
+    SMILE
+}
@@ -0,0 +1,19 @@
+package com.common.base.redis.serializer;
+
+/**
+ * Block compressor used by {@link CompressingRedisSerializer}. Implementations are thread safe and
+ * pool their native contexts and scratch buffers.
+ */
+interface ValueCompressor {
+
+    /**
+     * Compresses {@code src[srcOffset, srcOffset + srcLength)} into {@code dst} starting at {@code dstOffset}.
+     * @return the number of bytes written, or -1 when the result would not fit before the end of {@code dst}
+     */
+    int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset);
+
+    /**
+     * Decompresses exactly {@code length} bytes from {@code src[offset, src.length)} into the start of {@code dst}.
+     */
+    void decompress(byte[] src, int offset, byte[] dst, int length);
+}
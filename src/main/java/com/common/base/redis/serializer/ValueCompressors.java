@@ -0,0 +1,45 @@
+package com.common.base.redis.serializer;
+
+import org.springframework.util.ClassUtils;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Shared compressors, created on first use so ZSTD only needs zstd-jni when something uses it.
+ */
+final class ValueCompressors {
+
+    private static final boolean ZSTD_PRESENT = ClassUtils.isPresent("com.github.luben.zstd.ZstdCompressCtx", ValueCompressors.class.getClassLoader());
+
+    private final int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final Map<Compression, ValueCompressor> compressors = new EnumMap<>(Compression.class);
+
+    synchronized ValueCompressor get(Compression compression){
+        return compressors.computeIfAbsent(compression, this::create);
+    }
+
+    private ValueCompressor create(Compression compression){
+        return switch (compression) {
+            case DEFLATE -> new DeflateValueCompressor(poolSize);
+            case ZSTD -> {
+                if(!ZSTD_PRESENT){
+                    throw new IllegalStateException("ZSTD compression needs com.github.luben:zstd-jni on the classpath");
+                }
+                yield new ZstdValueCompressor(poolSize);
+            }
+            case NONE -> throw new IllegalArgumentException("No compressor for " + compression);
+        };
+    }
+
+    /**
+     * @return the compression a payload header stands for, or {@code null} for raw and headerless payloads
+     */
+    static Compression forHeader(byte header){
+        for(Compression compression : Compression.values()){
+            if(compression != Compression.NONE && compression.header() == header) return compression;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,57 @@
+package com.common.base.redis.serializer;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Zstandard through zstd-jni, an optional dependency. Contexts own native memory, so a bounded
+ * number is pooled and extras are closed right away. Only loaded when a cache selects ZSTD.
+ */
+final class ZstdValueCompressor implements ValueCompressor {
+
+    private static final int LEVEL = 3;
+
+    private final BlockingQueue<ZstdCompressCtx> compressors;
+
+    private final BlockingQueue<ZstdDecompressCtx> decompressors;
+
+    ZstdValueCompressor(int poolSize) {
+        this.compressors = new ArrayBlockingQueue<>(poolSize);
+        this.decompressors = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) {
+        ZstdCompressCtx context = compressors.poll();
+        if(context == null) context = new ZstdCompressCtx().setLevel(LEVEL);
+        try {
+            return context.compressByteArray(dst, dstOffset, dst.length - dstOffset, src, srcOffset, srcLength);
+        } catch (ZstdException e) {
+            // Destination too small: the value does not shrink enough to be worth it
+            return -1;
+        } finally {
+            if(!compressors.offer(context)) context.close();
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int offset, byte[] dst, int length) {
+        ZstdDecompressCtx context = decompressors.poll();
+        if(context == null) context = new ZstdDecompressCtx();
+        try {
+            int read = context.decompressByteArray(dst, 0, length, src, offset, src.length - offset);
+            if(read != length){
+                throw new SerializationException("Truncated zstd payload: " + read + " of " + length + " bytes");
+            }
+        } catch (ZstdException e) {
+            throw new SerializationException("Corrupt zstd payload", e);
+        } finally {
+            if(!decompressors.offer(context)) context.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.common.base.redis.service;
+
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs Lua scripts without blocking, on the shared Lettuce connection.
+ * Mirrors what {@code RedisTemplate.execute(RedisScript, ...)} does synchronously: EVALSHA first,
+ * EVAL only when the server answers NOSCRIPT. Futures complete on Lettuce I/O threads, so callers
+ * should hop to their own executor before doing any blocking work. On a cluster connection the script
+ * is routed to the slot of its first key, so all keys of a script must share a hash tag.
+ */
+@Service
+public class AsyncRedisScriptExecutor {
+
+    private final RedisScriptingAsyncCommands<String, byte[]> commands;
+
+    @SuppressWarnings("unchecked")
+    public AsyncRedisScriptExecutor(StatefulConnection<String, byte[]> stringKeyConnection) {
+        this.commands = stringKeyConnection instanceof StatefulRedisClusterConnection<?, ?> clusterConnection
+                ? ((StatefulRedisClusterConnection<String, byte[]>) clusterConnection).async()
+                : ((StatefulRedisConnection<String, byte[]>) stringKeyConnection).async();
+    }
+
+    public <T> CompletableFuture<T> execute(RedisScript<?> script, ScriptOutputType outputType, String[] keys, byte[]... args){
+        CompletableFuture<T> evalSha = commands.<T>evalsha(script.getSha1(), outputType, keys, args).toCompletableFuture();
+        return evalSha.exceptionallyCompose(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if(cause instanceof RedisNoScriptException){
+                return commands.<T>eval(script.getScriptAsString(), outputType, keys, args).toCompletableFuture();
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    public static byte[] arg(String value){
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] arg(long value){
+        return arg(Long.toString(value));
+    }
+}
@@ -0,0 +1,74 @@
+package com.common.base.redis.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and cancellation handle for a {@link RedisBulkDeleter} run.
+ * Counters are updated after every batch; cancelling stops the run before its next batch.
+ */
+public class BulkDeletion {
+
+    private final String pattern;
+
+    private final AtomicLong scanned = new AtomicLong();
+
+    private final AtomicLong deleted = new AtomicLong();
+
+    private final CompletableFuture<Long> completion = new CompletableFuture<>();
+
+    private volatile boolean cancelled;
+
+    BulkDeletion(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    /**
+     * Completes with the number of deleted keys, also when the run was cancelled part way.
+     */
+    public CompletableFuture<Long> completion() {
+        return completion;
+    }
+
+    void onBatch(long scannedKeys, long deletedKeys) {
+        scanned.addAndGet(scannedKeys);
+        deleted.addAndGet(deletedKeys);
+    }
+
+    void complete() {
+        completion.complete(deleted.get());
+    }
+
+    void fail(Throwable error) {
+        completion.completeExceptionally(error);
+    }
+
+    @Override
+    public String toString() {
+        return "BulkDeletion[pattern=" + pattern + ", scanned=" + scanned + ", deleted=" + deleted + ", cancelled=" + cancelled + "]";
+    }
+}
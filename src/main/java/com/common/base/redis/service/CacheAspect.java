@@ -1,17 +1,28 @@
 package com.common.base.redis.service;
 
 import com.common.base.redis.annotation.CacheEvictRedis;
+import com.common.base.redis.annotation.CacheableAllRedis;
 import com.common.base.redis.annotation.CacheableRedis;
+import com.common.base.redis.cache.RefreshableValue;
+import com.common.base.redis.metrics.CacheMetrics;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.stereotype.Component;
 import org.aspectj.lang.annotation.Aspect;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 @Aspect
@@ -20,10 +31,24 @@ public class CacheAspect {
 
     private final RedisCacheService redisCacheService;
 
-    private final ExpressionParser parser = new SpelExpressionParser();
+    private final CacheKeyGeneratorRegistry keyGeneratorRegistry = new CacheKeyGeneratorRegistry();
 
-    public CacheAspect(RedisCacheService redisCacheService) {
+    private final CacheLoadCoordinator cacheLoadCoordinator;
+
+    private final CacheMetrics cacheMetrics;
+
+    private final CacheRefresher cacheRefresher;
+
+    private final ConcurrentMap<Method, ElementsParameter> elementsParameters = new ConcurrentHashMap<>();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    public CacheAspect(RedisCacheService redisCacheService, CacheLoadCoordinator cacheLoadCoordinator, CacheMetrics cacheMetrics,
+                       CacheRefresher cacheRefresher) {
         this.redisCacheService = redisCacheService;
+        this.cacheLoadCoordinator = cacheLoadCoordinator;
+        this.cacheMetrics = cacheMetrics;
+        this.cacheRefresher = cacheRefresher;
     }
 
     @Around("@annotation(cacheableRedis)")
@@ -32,15 +57,37 @@ public class CacheAspect {
         String key = resolveKey(joinPoint, cacheableRedis.key());
 
         // Try to get from cache first
-        Object cachedValue = redisCacheService.get(cacheName, key, Object.class);
+        Object cachedValue = redisCacheService.getCached(cacheName, key);
+        if(cachedValue instanceof RefreshableValue refreshable){
+            // Past its refresh point or stale: serve it now, reload in the background
+            if(refreshable.isRefreshDue(System.currentTimeMillis())){
+                cacheRefresher.refresh(cacheName, key, cacheableRedis.leaseTimeoutMillis(), () -> loadAndCache(joinPoint, cacheableRedis, key));
+            }
+            return refreshable.getValue();
+        }
         if(cachedValue != null)return cachedValue;
 
-        // Execute method if not cached
-        Object result = joinPoint.proceed();
+        // Execute method if not cached, one loader per key
+        return cacheLoadCoordinator.load(cacheName, key, cacheableRedis, () -> loadAndCache(joinPoint, cacheableRedis, key));
+    }
+
+    private Object loadAndCache(ProceedingJoinPoint joinPoint, CacheableRedis cacheableRedis, String key) throws Throwable {
+        String cacheName = cacheableRedis.cacheName();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            cacheMetrics.forCache(cacheName).load(System.nanoTime() - start, false);
+            throw e;
+        }
+        cacheMetrics.forCache(cacheName).load(System.nanoTime() - start, true);
 
         // Cache the result
-        if(result != null){
-            if(cacheableRedis.ttl()>0){
+        if(result != null && !cacheRefreshable(cacheName, key, result, cacheableRedis)){
+            if(cacheableRedis.writeBehind()){
+                redisCacheService.putBehind(cacheName, key, result, cacheableRedis.ttl()>0 ? Duration.ofSeconds(cacheableRedis.ttl()) : null);
+            } else if(cacheableRedis.ttl()>0){
                 redisCacheService.putWithCustomTtl(cacheName, key, result, cacheableRedis.ttl(), TimeUnit.SECONDS);
             } else {
                 redisCacheService.put(cacheName, key, result);
@@ -49,6 +96,89 @@ public class CacheAspect {
         return result;
     }
 
+    // Stores the result wrapped with its refresh point, kept in Redis for the TTL plus the stale TTL.
+    // Only the logical TTL is jittered, once; the stale window is added to it as is
+    private boolean cacheRefreshable(String cacheName, String key, Object result, CacheableRedis cacheableRedis){
+        if(cacheableRedis.refreshAhead() <= 0 && cacheableRedis.staleTtl() <= 0) return false;
+        Duration ttl = cacheableRedis.ttl()>0
+                ? redisCacheService.jitteredTtl(cacheName, Duration.ofSeconds(cacheableRedis.ttl()))
+                : redisCacheService.getTimeToLive(cacheName, key, result);
+        // Entries that never expire have nothing to refresh ahead of
+        if(ttl == null || ttl.isZero() || ttl.isNegative()) return false;
+
+        long ttlMillis = ttl.toMillis();
+        double refreshFraction = cacheableRedis.refreshAhead() > 0 && cacheableRedis.refreshAhead() < 1 ? cacheableRedis.refreshAhead() : 1;
+        long now = System.currentTimeMillis();
+        RefreshableValue refreshable = new RefreshableValue(result, now + (long) (ttlMillis * refreshFraction), now + ttlMillis);
+        long storedTtlMillis = ttlMillis + TimeUnit.SECONDS.toMillis(Math.max(0, cacheableRedis.staleTtl()));
+        if(cacheableRedis.writeBehind()){
+            redisCacheService.putBehind(cacheName, key, refreshable, Duration.ofMillis(storedTtlMillis));
+        } else {
+            redisCacheService.putWithCustomTtl(cacheName, key, refreshable, storedTtlMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    @Around("@annotation(cacheableAllRedis)")
+    public Object handleCacheableAll(ProceedingJoinPoint joinPoint, CacheableAllRedis cacheableAllRedis) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        ElementsParameter parameter = elementsParameters.computeIfAbsent(signature.getMethod(),
+                method -> ElementsParameter.resolve(method, parameterNames(method, signature), cacheableAllRedis.keys()));
+        Object[] args = joinPoint.getArgs();
+        Collection<?> elements = (Collection<?>) args[parameter.index()];
+        if(elements == null || elements.isEmpty()) return joinPoint.proceed();
+
+        String cacheName = cacheableAllRedis.cacheName();
+        Map<String, Object> elementsByKey = new LinkedHashMap<>();
+        for(Object element : elements){
+            elementsByKey.putIfAbsent(String.valueOf(element), element);
+        }
+        Map<String, Object> cached = redisCacheService.getAll(cacheName, elementsByKey.keySet(), Object.class);
+
+        List<Object> missing = new ArrayList<>();
+        elementsByKey.forEach((key, element) -> {
+            if(!cached.containsKey(key)) missing.add(element);
+        });
+        Map<?, ?> loaded = missing.isEmpty() ? Map.of() : loadAndCacheAll(joinPoint, cacheableAllRedis, parameter, args, missing);
+
+        // Keep the caller's order; cached nulls and elements the method did not return are left out
+        Map<Object, Object> result = new LinkedHashMap<>();
+        elementsByKey.forEach((key, element) -> {
+            Object value = cached.containsKey(key) ? cached.get(key) : loaded.get(element);
+            if(value != null) result.put(element, value);
+        });
+        return result;
+    }
+
+    private Map<?, ?> loadAndCacheAll(ProceedingJoinPoint joinPoint, CacheableAllRedis cacheableAllRedis, ElementsParameter parameter,
+                                     Object[] args, List<Object> missing) throws Throwable {
+        String cacheName = cacheableAllRedis.cacheName();
+        Object[] missingArgs = args.clone();
+        missingArgs[parameter.index()] = parameter.set() ? new LinkedHashSet<>(missing) : missing;
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed(missingArgs);
+        } catch (Throwable e) {
+            cacheMetrics.forCache(cacheName).load(System.nanoTime() - start, false);
+            throw e;
+        }
+        cacheMetrics.forCache(cacheName).load(System.nanoTime() - start, true);
+        if(result == null) return Map.of();
+
+        Map<?, ?> loaded = (Map<?, ?>) result;
+        Map<String, Object> entries = new LinkedHashMap<>();
+        loaded.forEach((element, value) -> {
+            if(value != null) entries.put(String.valueOf(element), value);
+        });
+        if(cacheableAllRedis.ttl()>0){
+            redisCacheService.putAll(cacheName, entries, cacheableAllRedis.ttl(), TimeUnit.SECONDS);
+        } else {
+            redisCacheService.putAll(cacheName, entries);
+        }
+        return loaded;
+    }
+
     @Around("@annotation(cacheEvictRedis)")
     public Object handleCacheEvict(ProceedingJoinPoint joinPoint, CacheEvictRedis cacheEvictRedis) throws Throwable {
         String cacheName = cacheEvictRedis.cacheName();
@@ -67,17 +197,37 @@ public class CacheAspect {
     }
 
     private String resolveKey(ProceedingJoinPoint joinPoint, String keyExpression){
-        if(keyExpression.isEmpty()){
-            Method method = ((MethodSignature)joinPoint.getSignature()).getMethod();
-            return method.getName();
-        }
-        // Support SpEL expressions for dynamic keys
-        StandardEvaluationContext context = new StandardEvaluationContext();
-        Object[] args = joinPoint.getArgs();
-        String[] parameterNames = ((MethodSignature)joinPoint.getSignature()).getParameterNames();
-        for(int i=0;i< parameterNames.length;i++){
-            context.setVariable(parameterNames[i], args[i]);
+        // Expressions are compiled once per method, see CacheKeyGeneratorRegistry
+        return keyGeneratorRegistry.generate((MethodSignature) joinPoint.getSignature(), keyExpression, joinPoint.getArgs());
+    }
+
+    private String[] parameterNames(Method method, MethodSignature signature){
+        String[] names = parameterNameDiscoverer.getParameterNames(method);
+        if(names == null) names = signature.getParameterNames();
+        return names != null ? names : new String[0];
+    }
+
+    /**
+     * The collection parameter of a {@link CacheableAllRedis} method, and whether the missing
+     * elements must be passed back to it as a Set rather than a List.
+     */
+    private record ElementsParameter(int index, boolean set) {
+
+        static ElementsParameter resolve(Method method, String[] parameterNames, String keys){
+            if(!method.getReturnType().isAssignableFrom(LinkedHashMap.class)){
+                throw new IllegalStateException("@CacheableAllRedis method must return a Map: " + method);
+            }
+            String name = keys.startsWith("#") ? keys.substring(1) : keys;
+            Class<?>[] types = method.getParameterTypes();
+            for(int i=0;i< types.length;i++){
+                boolean named = name.isEmpty() ? Collection.class.isAssignableFrom(types[i])
+                        : i < parameterNames.length && parameterNames[i].equals(name);
+                if(!named) continue;
+                if(types[i].isAssignableFrom(ArrayList.class)) return new ElementsParameter(i, false);
+                if(types[i].isAssignableFrom(LinkedHashSet.class)) return new ElementsParameter(i, true);
+                throw new IllegalStateException("@CacheableAllRedis parameter must be a List, Set or Collection: " + method);
+            }
+            throw new IllegalStateException("@CacheableAllRedis found no collection parameter '" + keys + "' on " + method);
         }
-        return parser.parseExpression(keyExpression).getValue(context, String.class);
     }
 }
@@ -0,0 +1,343 @@
+package com.common.base.redis.service;
+
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.ConstructorResolver;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.IndexAccessor;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.OperatorOverloader;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeComparator;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.TypeLocator;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.OpPlus;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles cache key expressions once per annotated method.
+ * Empty keys, {@code #param} and {@code #param.property} get reflective fast paths, and so do
+ * concatenations of them that start with a string literal, such as {@code 'user:' + #id}. Anything else
+ * is parsed once and evaluated with SpEL in mixed compiler mode against one shared context per method;
+ * a call only allocates a small view binding the arguments as variables, so the steady state does
+ * no parsing and no parameter name discovery.
+ */
+class CacheKeyGeneratorRegistry {
+
+    private static final Pattern SIMPLE_EXPRESSION = Pattern.compile("^#([A-Za-z_$][\\w$]*)(?:\\.([A-Za-z_$][\\w$]*))?$");
+
+    // Read when a property is navigated on a null argument
+    private static final Object NULL_TARGET = new Object();
+
+    private final ConcurrentMap<Method, MethodKeyGenerators> registry = new ConcurrentHashMap<>();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, CacheKeyGeneratorRegistry.class.getClassLoader()));
+
+    String generate(MethodSignature signature, String keyExpression, Object[] args){
+        Method method = signature.getMethod();
+        MethodKeyGenerators generators = registry.get(method);
+        if(generators == null){
+            generators = registry.computeIfAbsent(method, m -> new MethodKeyGenerators(m, parameterNames(m, signature)));
+        }
+        return generators.forExpression(keyExpression).generate(args);
+    }
+
+    private String[] parameterNames(Method method, MethodSignature signature){
+        String[] names = parameterNameDiscoverer.getParameterNames(method);
+        if(names == null) names = signature.getParameterNames();
+        return names != null ? names : new String[0];
+    }
+
+    @FunctionalInterface
+    interface KeyGenerator {
+        String generate(Object[] args);
+    }
+
+    @FunctionalInterface
+    private interface ValueReader {
+        Object read(Object[] args);
+    }
+
+    private final class MethodKeyGenerators {
+
+        private final Method method;
+
+        private final String[] parameterNames;
+
+        // Usually one entry, two when a method carries both cache annotations
+        private final Map<String, KeyGenerator> generators = new ConcurrentHashMap<>(2);
+
+        MethodKeyGenerators(Method method, String[] parameterNames) {
+            this.method = method;
+            this.parameterNames = parameterNames;
+        }
+
+        KeyGenerator forExpression(String keyExpression){
+            KeyGenerator generator = generators.get(keyExpression);
+            if(generator == null){
+                generator = generators.computeIfAbsent(keyExpression, this::compile);
+            }
+            return generator;
+        }
+
+        private KeyGenerator compile(String keyExpression){
+            if(keyExpression.isEmpty()){
+                String methodName = method.getName();
+                return args -> methodName;
+            }
+            Expression expression = parser.parseExpression(keyExpression);
+            KeyGenerator spel = spelGenerator(expression);
+            KeyGenerator simple = simpleGenerator(keyExpression, spel);
+            if(simple != null) return simple;
+            KeyGenerator concatenation = concatenationGenerator(expression, spel);
+            return concatenation != null ? concatenation : spel;
+        }
+
+        // #param or #param.property, null when the expression is not one of those
+        private KeyGenerator simpleGenerator(String keyExpression, KeyGenerator spel){
+            ValueReader reader = reader(keyExpression);
+            if(reader == null) return null;
+            return args -> {
+                Object value = reader.read(args);
+                // Let SpEL report navigation on null exactly as before
+                return value == NULL_TARGET ? spel.generate(args) : toKey(value);
+            };
+        }
+
+        private ValueReader reader(String keyExpression){
+            Matcher matcher = SIMPLE_EXPRESSION.matcher(keyExpression);
+            if(!matcher.matches()) return null;
+
+            int index = indexOf(matcher.group(1));
+            if(index < 0) return null;
+            if(matcher.group(2) == null){
+                return args -> args[index];
+            }
+            Member accessor = findAccessor(method.getParameterTypes()[index], matcher.group(2));
+            if(accessor == null) return null;
+            return args -> {
+                Object target = args[index];
+                return target == null ? NULL_TARGET : read(accessor, target);
+            };
+        }
+
+        /**
+         * A string literal followed by {@code +} terms that are literals, {@code #param} or {@code #param.property}.
+         * Starting with a literal makes every {@code +} a string concatenation, which the plan reproduces
+         * with SpEL's string conversion: enums by name, null as "null", anything else by toString.
+         */
+        private KeyGenerator concatenationGenerator(Expression expression, KeyGenerator spel){
+            if(!(expression instanceof SpelExpression spelExpression)) return null;
+            List<SpelNode> terms = new ArrayList<>();
+            flattenConcatenation(spelExpression.getAST(), terms);
+            if(terms.size() < 2 || !(terms.get(0) instanceof StringLiteral)) return null;
+
+            ValueReader[] plan = new ValueReader[terms.size()];
+            for(int i=0;i< plan.length;i++){
+                SpelNode term = terms.get(i);
+                if(term instanceof StringLiteral literal){
+                    Object value = literal.getLiteralValue().getValue();
+                    plan[i] = args -> value;
+                    continue;
+                }
+                plan[i] = reader(term.toStringAST());
+                if(plan[i] == null) return null;
+            }
+            return args -> {
+                StringBuilder key = new StringBuilder(64);
+                for(ValueReader part : plan){
+                    Object value = part.read(args);
+                    if(value == NULL_TARGET) return spel.generate(args);
+                    key.append(toKey(value));
+                }
+                return key.toString();
+            };
+        }
+
+        // Only the left operand continues the chain: a parenthesized right operand may be a numeric sum
+        private static void flattenConcatenation(SpelNode node, List<SpelNode> terms){
+            if(node instanceof OpPlus && node.getChildCount() == 2){
+                flattenConcatenation(node.getChild(0), terms);
+                terms.add(node.getChild(1));
+            } else {
+                terms.add(node);
+            }
+        }
+
+        private KeyGenerator spelGenerator(Expression expression){
+            Map<String, Integer> indexes = new HashMap<>();
+            for(int i=0;i< parameterNames.length;i++){
+                indexes.put(parameterNames[i], i);
+            }
+            EvaluationContext shared = sharedContext();
+            return args -> expression.getValue(new ArgumentsContext(shared, indexes, args), String.class);
+        }
+
+        private int indexOf(String parameterName){
+            for(int i=0;i< parameterNames.length;i++){
+                if(parameterNames[i].equals(parameterName)) return i;
+            }
+            return -1;
+        }
+    }
+
+    private static Member findAccessor(Class<?> type, String property){
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, property);
+        if(descriptor != null && descriptor.getReadMethod() != null){
+            return accessible(descriptor.getReadMethod());
+        }
+        if(type.isRecord()){
+            Method accessor = ReflectionUtils.findMethod(type, property);
+            if(accessor != null) return accessible(accessor);
+        }
+        Field field = ReflectionUtils.findField(type, property);
+        if(field != null && Modifier.isPublic(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())){
+            return field;
+        }
+        return null;
+    }
+
+    private static Method accessible(Method method){
+        ReflectionUtils.makeAccessible(method);
+        return method;
+    }
+
+    private static Object read(Member accessor, Object target){
+        if(accessor instanceof Method method){
+            return ReflectionUtils.invokeMethod(method, target);
+        }
+        return ReflectionUtils.getField((Field) accessor, target);
+    }
+
+    private static String toKey(Object value){
+        if(value instanceof Enum<?> constant) return constant.name();
+        return value == null ? null : value.toString();
+    }
+
+    // Resolvers and converters are initialized up front, so concurrent evaluations only read the context
+    private static EvaluationContext sharedContext(){
+        StandardEvaluationContext context = new StandardEvaluationContext();
+        context.getPropertyAccessors();
+        context.getIndexAccessors();
+        context.getConstructorResolvers();
+        context.getMethodResolvers();
+        context.getTypeLocator();
+        context.getTypeConverter();
+        context.getTypeComparator();
+        context.getOperatorOverloader();
+        return context;
+    }
+
+    /**
+     * Per call view of a shared context that resolves {@code #param} to the call's arguments.
+     * Variables an expression assigns stay in this view.
+     */
+    private static final class ArgumentsContext implements EvaluationContext {
+
+        private final EvaluationContext shared;
+
+        private final Map<String, Integer> indexes;
+
+        private final Object[] args;
+
+        private Map<String, Object> assigned;
+
+        ArgumentsContext(EvaluationContext shared, Map<String, Integer> indexes, Object[] args) {
+            this.shared = shared;
+            this.indexes = indexes;
+            this.args = args;
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            if(assigned != null && assigned.containsKey(name)) return assigned.get(name);
+            Integer index = indexes.get(name);
+            return index != null && index < args.length ? args[index] : shared.lookupVariable(name);
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            if(assigned == null) assigned = new HashMap<>();
+            assigned.put(name, value);
+        }
+
+        @Override
+        public TypedValue getRootObject() {
+            return shared.getRootObject();
+        }
+
+        @Override
+        public List<PropertyAccessor> getPropertyAccessors() {
+            return shared.getPropertyAccessors();
+        }
+
+        @Override
+        public List<IndexAccessor> getIndexAccessors() {
+            return shared.getIndexAccessors();
+        }
+
+        @Override
+        public List<ConstructorResolver> getConstructorResolvers() {
+            return shared.getConstructorResolvers();
+        }
+
+        @Override
+        public List<MethodResolver> getMethodResolvers() {
+            return shared.getMethodResolvers();
+        }
+
+        @Override
+        public BeanResolver getBeanResolver() {
+            return shared.getBeanResolver();
+        }
+
+        @Override
+        public TypeLocator getTypeLocator() {
+            return shared.getTypeLocator();
+        }
+
+        @Override
+        public TypeConverter getTypeConverter() {
+            return shared.getTypeConverter();
+        }
+
+        @Override
+        public TypeComparator getTypeComparator() {
+            return shared.getTypeComparator();
+        }
+
+        @Override
+        public OperatorOverloader getOperatorOverloader() {
+            return shared.getOperatorOverloader();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.annotation.CacheableRedis;
+import com.common.base.redis.configuration.RedisCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Protects cache misses against stampedes.
+ * In process, concurrent callers for the same key wait on the first caller's load (single flight).
+ * Across nodes, an optional Redis lease lets one node recompute while the others poll the cache.
+ * When the wait budget runs out, one waiter takes over: in process the first waiter to time out loads
+ * and hands its result to the others, across nodes the lease is retried and only the node that gets it
+ * loads. Callers only load on their own, rather than fail, once a takeover has had its budget too.
+ */
+@Component
+@Slf4j
+public class CacheLoadCoordinator {
+
+    private static final long MIN_POLL_MILLIS = 10;
+    private static final long MAX_POLL_MILLIS = 100;
+
+    private final RedisCacheService redisCacheService;
+
+    private final RedisLeaseService redisLeaseService;
+
+    private final RedisCacheProperties redisCacheProperties;
+
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public CacheLoadCoordinator(RedisCacheService redisCacheService, RedisLeaseService redisLeaseService,
+                                RedisCacheProperties redisCacheProperties) {
+        this.redisCacheService = redisCacheService;
+        this.redisLeaseService = redisLeaseService;
+        this.redisCacheProperties = redisCacheProperties;
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Object load() throws Throwable;
+    }
+
+    public Object load(String cacheName, String key, CacheableRedis cacheableRedis, Loader loader) throws Throwable {
+        if(!cacheableRedis.singleFlight()){
+            return loadOnce(cacheName, key, cacheableRedis, loader);
+        }
+        String flightKey = cacheName+"::"+key;
+        Flight flight = new Flight();
+        Flight leader = inFlight.putIfAbsent(flightKey, flight);
+        if(leader != null){
+            return awaitLeader(leader, cacheableRedis.waitBudgetMillis(), loader);
+        }
+        try {
+            return flight.run(() -> loadOnce(cacheName, key, cacheableRedis, loader));
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private Object awaitLeader(Flight leader, long waitBudgetMillis, Loader loader) throws Throwable {
+        try {
+            return leader.await(waitBudgetMillis);
+        } catch (TimeoutException e) {
+            if(leader.takeOver()){
+                log.debug("Single flight wait budget of {}ms exhausted, taking over the load", waitBudgetMillis);
+                return leader.run(loader);
+            }
+        }
+        // Another waiter took over, give it a budget of its own
+        try {
+            return leader.await(waitBudgetMillis);
+        } catch (TimeoutException e) {
+            log.debug("Single flight takeover did not finish within {}ms, loading directly", waitBudgetMillis);
+            return loader.load();
+        }
+    }
+
+    private Object loadOnce(String cacheName, String key, CacheableRedis cacheableRedis, Loader loader) throws Throwable {
+        if(!cacheableRedis.distributedLock()){
+            return loader.load();
+        }
+        String leaseKey = redisCacheProperties.getKeyPrefix()+":lease:"+cacheName+"::"+key;
+        String token;
+        try {
+            token = redisLeaseService.tryAcquire(leaseKey, cacheableRedis.leaseTimeoutMillis());
+        } catch (Exception e) {
+            log.warn("Could not acquire cache lease {}, loading without it", leaseKey, e);
+            return loader.load();
+        }
+        if(token != null){
+            return loadUnderLease(cacheName, key, leaseKey, token, loader);
+        }
+        Object cached = pollCache(cacheName, key, cacheableRedis.waitBudgetMillis());
+        if(cached != null) return cached;
+        return takeOverLease(cacheName, key, leaseKey, cacheableRedis, loader);
+    }
+
+    /**
+     * After the wait budget, retries the lease between polls so only the node that gets it, once the holder
+     * releases it or it expires, loads; the others keep reading the cache. Loads directly only once the
+     * lease timeout has passed too.
+     */
+    private Object takeOverLease(String cacheName, String key, String leaseKey, CacheableRedis cacheableRedis, Loader loader) throws Throwable {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cacheableRedis.leaseTimeoutMillis());
+        while (true){
+            String token;
+            try {
+                token = redisLeaseService.tryAcquire(leaseKey, cacheableRedis.leaseTimeoutMillis());
+            } catch (Exception e) {
+                log.warn("Could not take over cache lease {}, loading without it", leaseKey, e);
+                return loader.load();
+            }
+            if(token != null){
+                return loadUnderLease(cacheName, key, leaseKey, token, loader);
+            }
+            Object cached = pollCache(cacheName, key, Math.min(MAX_POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if(cached != null) return cached;
+            if(System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()){
+                log.debug("Cache lease {} still held after its timeout, loading directly", leaseKey);
+                return loader.load();
+            }
+        }
+    }
+
+    private Object loadUnderLease(String cacheName, String key, String leaseKey, String token, Loader loader) throws Throwable {
+        try {
+            // Another node may have filled the entry between our miss and the lease
+            Object cached = redisCacheService.get(cacheName, key, Object.class);
+            return cached != null ? cached : loader.load();
+        } finally {
+            redisLeaseService.release(leaseKey, token);
+        }
+    }
+
+    private Object pollCache(String cacheName, String key, long waitBudgetMillis){
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitBudgetMillis);
+        long pause = MIN_POLL_MILLIS;
+        while (true){
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0) return null;
+            LockSupport.parkNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(pause)));
+            if(Thread.currentThread().isInterrupted()) return null;
+            Object cached = redisCacheService.get(cacheName, key, Object.class);
+            if(cached != null) return cached;
+            pause = Math.min(pause * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * One in-process load of a key; the leader runs it, or the one waiter that takes it over.
+     */
+    private static final class Flight {
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private final AtomicBoolean takenOver = new AtomicBoolean();
+
+        boolean takeOver(){
+            return takenOver.compareAndSet(false, true);
+        }
+
+        Object run(Loader loader) throws Throwable {
+            try {
+                Object value = loader.load();
+                result.complete(value);
+                return value;
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                throw t;
+            }
+        }
+
+        Object await(long waitBudgetMillis) throws Throwable {
+            try {
+                return result.get(waitBudgetMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException("Interrupted while waiting for the cache load");
+            }
+        }
+    }
+}
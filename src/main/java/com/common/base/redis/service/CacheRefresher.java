@@ -0,0 +1,111 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import com.common.base.util.ExecutorFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reloads refresh-ahead cache entries in the background while callers keep reading the cached value.
+ * A key is refreshed at most once at a time on this node, and a Redis lease keeps other nodes from
+ * refreshing it concurrently. At most {@code redis.cache.refresh.max-concurrent} reloads run at once;
+ * further requests are dropped and retried by a later read, so a slow backend cannot pile up work.
+ * Reloads run without the caller's thread bound context (security context, transaction); only the
+ * logging MDC of the read that triggered the reload is carried over.
+ */
+@Component
+@Slf4j
+public class CacheRefresher {
+
+    private final RedisLeaseService redisLeaseService;
+
+    private final String leasePrefix;
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public CacheRefresher(RedisLeaseService redisLeaseService, RedisCacheProperties redisCacheProperties) {
+        RedisCacheProperties.Refresh refresh = redisCacheProperties.getRefresh();
+        this.redisLeaseService = redisLeaseService;
+        this.leasePrefix = redisCacheProperties.getKeyPrefix()+":refresh:";
+        this.executor = ExecutorFactory.newExecutor("cache-refresh", refresh.isVirtualThreads(), Math.max(1, refresh.getPlatformThreads()));
+        this.permits = new Semaphore(Math.max(1, refresh.getMaxConcurrent()));
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules a reload unless the key is already being refreshed or the refresher is saturated.
+     * @return whether a reload was scheduled
+     */
+    public boolean refresh(String cacheName, String key, long leaseMillis, CacheLoadCoordinator.Loader loader){
+        String refreshKey = cacheName+"::"+key;
+        if(!refreshing.add(refreshKey)) return false;
+        if(!permits.tryAcquire()){
+            refreshing.remove(refreshKey);
+            return false;
+        }
+        Map<String, String> callerContext = MDC.getCopyOfContextMap();
+        try {
+            executor.execute(() -> {
+                Map<String, String> threadContext = MDC.getCopyOfContextMap();
+                setContextMap(callerContext);
+                try {
+                    refreshWithLease(refreshKey, leaseMillis, loader);
+                } finally {
+                    setContextMap(threadContext);
+                    permits.release();
+                    refreshing.remove(refreshKey);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            refreshing.remove(refreshKey);
+            return false;
+        }
+    }
+
+    private void refreshWithLease(String refreshKey, long leaseMillis, CacheLoadCoordinator.Loader loader){
+        String leaseKey = leasePrefix+refreshKey;
+        String token;
+        try {
+            token = redisLeaseService.tryAcquire(leaseKey, leaseMillis);
+        } catch (Exception e) {
+            log.warn("Could not acquire refresh lease {}, skipping refresh", leaseKey, e);
+            return;
+        }
+        // Another node is already refreshing this key
+        if(token == null) return;
+        try {
+            loader.load();
+        } catch (Throwable t) {
+            log.warn("Background refresh of {} failed, the cached value is kept until it expires", refreshKey, t);
+        } finally {
+            redisLeaseService.release(leaseKey, token);
+        }
+    }
+
+    private static void setContextMap(Map<String, String> context){
+        if(context == null){
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+}
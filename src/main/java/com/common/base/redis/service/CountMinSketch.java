@@ -0,0 +1,79 @@
+package com.common.base.redis.service;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size count-min sketch over a sliding window made of two periods.
+ * Counters are plain ints updated without synchronization: a lost increment under contention only
+ * lowers an estimate slightly, and an update costs a few array writes. {@link #rotate()} starts a new
+ * period, so estimates cover between one and two periods of reads.
+ */
+final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+
+    private final int width;
+
+    private final int mask;
+
+    private volatile int[] current;
+
+    private volatile int[] previous;
+
+    CountMinSketch(int width) {
+        this.width = width <= 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.mask = this.width - 1;
+        this.current = new int[DEPTH * this.width];
+        this.previous = new int[DEPTH * this.width];
+    }
+
+    /**
+     * Counts one occurrence and returns the estimate including it.
+     */
+    long increment(long hash){
+        int[] counts = current;
+        int[] older = previous;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for(int row = 0; row < DEPTH; row++){
+            int index = row * width + ((h1 + row * h2) & mask);
+            int count = counts[index] + 1;
+            counts[index] = count;
+            min = Math.min(min, (long) count + older[index]);
+        }
+        return min;
+    }
+
+    long estimate(long hash){
+        int[] counts = current;
+        int[] older = previous;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for(int row = 0; row < DEPTH; row++){
+            int index = row * width + ((h1 + row * h2) & mask);
+            min = Math.min(min, (long) counts[index] + older[index]);
+        }
+        return min;
+    }
+
+    // Called from a single thread; writers still holding the old arrays only affect the dropped period
+    void rotate(){
+        int[] recycled = previous;
+        Arrays.fill(recycled, 0);
+        previous = current;
+        current = recycled;
+    }
+
+    static long hash(String cacheName, String key){
+        // String hash codes are cached, so this allocates nothing; fmix64 spreads them over both halves
+        long h = ((long) cacheName.hashCode() << 32) ^ (key.hashCode() & 0xffffffffL);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,220 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import com.common.base.util.ExecutorFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the keys that take a large share of cache reads and keeps short lived local copies of them.
+ * Every read updates a count-min sketch (four counter writes, no allocation); keys whose windowed estimate
+ * reaches the threshold compete for the {@code topK} hot slots, the lowest estimate making room for a
+ * higher one. Memory is fixed: the sketch plus at most {@code topK} entries and their promoted values.
+ * Promoted copies are dropped on local writes and expire after {@code promotionTtlMillis} everywhere else.
+ */
+@Component
+@Slf4j
+public class HotKeyDetector {
+
+    private final boolean enabled;
+
+    private final long threshold;
+
+    private final int topK;
+
+    private final long promotionTtlNanos;
+
+    private final CountMinSketch sketch;
+
+    // cache name -> key -> entry; two levels so a lookup allocates no composite key
+    private final Map<String, Map<String, Entry>> hotKeys = new ConcurrentHashMap<>();
+
+    private volatile int hotCount;
+
+    // Lowest estimate among the hot keys once all slots are taken; cheaper keys skip admission
+    private volatile long admissionFloor;
+
+    private final ScheduledExecutorService rotator;
+
+    public HotKeyDetector(RedisCacheProperties redisCacheProperties) {
+        RedisCacheProperties.HotKeys properties = redisCacheProperties.getHotKeys();
+        this.enabled = properties.isEnabled();
+        this.threshold = Math.max(1, properties.getThreshold());
+        this.topK = Math.max(1, properties.getTopK());
+        this.promotionTtlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getPromotionTtlMillis());
+        this.sketch = enabled ? new CountMinSketch(properties.getSketchWidth()) : null;
+        if(enabled){
+            long windowSeconds = Math.max(1, properties.getWindowSeconds());
+            this.rotator = Executors.newSingleThreadScheduledExecutor(ExecutorFactory.daemonThreadFactory("hot-key-window"));
+            this.rotator.scheduleAtFixedRate(this::rotate, windowSeconds, windowSeconds, TimeUnit.SECONDS);
+        } else {
+            this.rotator = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        if(rotator != null) rotator.shutdownNow();
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Counts a read of the key.
+     * @return the hot entry of the key, or {@code null} when it is not hot
+     */
+    Entry record(String cacheName, String key){
+        if(!enabled) return null;
+        long hash = CountMinSketch.hash(cacheName, key);
+        long estimate = sketch.increment(hash);
+        if(estimate < threshold) return null;
+        Entry entry = find(cacheName, key);
+        if(entry != null){
+            entry.estimate = estimate;
+            return entry;
+        }
+        if(hotCount >= topK && estimate <= admissionFloor) return null;
+        return admit(cacheName, key, hash, estimate);
+    }
+
+    /**
+     * Serves the key from a local copy until the promotion TTL passes.
+     */
+    void promote(Entry entry, Cache.ValueWrapper valueWrapper){
+        entry.expiresAtNanos = System.nanoTime() + promotionTtlNanos;
+        entry.value = valueWrapper;
+    }
+
+    /**
+     * Drops the promoted copy of a key after a write or eviction on this node.
+     */
+    void invalidate(String cacheName, String key){
+        if(hotCount == 0) return;
+        Entry entry = find(cacheName, key);
+        if(entry != null) entry.value = null;
+    }
+
+    void invalidateCache(String cacheName){
+        if(hotCount == 0) return;
+        Map<String, Entry> entries = hotKeys.get(cacheName);
+        if(entries != null) entries.values().forEach(entry -> entry.value = null);
+    }
+
+    /**
+     * @return the current hot keys, hottest first
+     */
+    public List<HotKey> getHotKeys(){
+        List<HotKey> result = new ArrayList<>(hotCount);
+        hotKeys.values().forEach(entries -> entries.values()
+                .forEach(entry -> result.add(new HotKey(entry.cacheName, entry.key, entry.estimate))));
+        result.sort(Comparator.comparingLong(HotKey::estimatedReads).reversed());
+        return result;
+    }
+
+    private Entry find(String cacheName, String key){
+        Map<String, Entry> entries = hotKeys.get(cacheName);
+        return entries != null ? entries.get(key) : null;
+    }
+
+    private synchronized Entry admit(String cacheName, String key, long hash, long estimate){
+        Entry existing = find(cacheName, key);
+        if(existing != null) return existing;
+        if(hotCount >= topK){
+            Entry coldest = coldest();
+            if(coldest == null || coldest.estimate >= estimate) return null;
+            remove(coldest);
+        }
+        Entry entry = new Entry(cacheName, key, hash, estimate);
+        hotKeys.computeIfAbsent(cacheName, name -> new ConcurrentHashMap<>()).put(key, entry);
+        hotCount++;
+        updateAdmissionFloor();
+        log.debug("Cache key became hot: {}::{} (~{} reads)", cacheName, key, estimate);
+        return entry;
+    }
+
+    // Starts a new sketch period and drops keys that cooled down below the threshold
+    private synchronized void rotate(){
+        try {
+            sketch.rotate();
+            for(Map<String, Entry> entries : hotKeys.values()){
+                for(Entry entry : entries.values()){
+                    entry.estimate = sketch.estimate(entry.hash);
+                    if(entry.estimate < threshold) remove(entry);
+                }
+            }
+            updateAdmissionFloor();
+        } catch (RuntimeException e) {
+            log.warn("Hot key window rotation failed", e);
+        }
+    }
+
+    private Entry coldest(){
+        Entry coldest = null;
+        for(Map<String, Entry> entries : hotKeys.values()){
+            for(Entry entry : entries.values()){
+                if(coldest == null || entry.estimate < coldest.estimate) coldest = entry;
+            }
+        }
+        return coldest;
+    }
+
+    private void remove(Entry entry){
+        Map<String, Entry> entries = hotKeys.get(entry.cacheName);
+        if(entries != null && entries.remove(entry.key, entry)){
+            entry.value = null;
+            hotCount--;
+        }
+    }
+
+    private void updateAdmissionFloor(){
+        Entry coldest = hotCount >= topK ? coldest() : null;
+        admissionFloor = coldest != null ? coldest.estimate : 0;
+    }
+
+    public record HotKey(String cacheName, String key, long estimatedReads) {
+    }
+
+    /**
+     * A hot key and its promoted value. Fields are written racily; readers only ever see a value
+     * together with an expiry that was set before it.
+     */
+    static final class Entry {
+
+        private final String cacheName;
+
+        private final String key;
+
+        private final long hash;
+
+        private volatile long estimate;
+
+        private volatile Cache.ValueWrapper value;
+
+        private volatile long expiresAtNanos;
+
+        private Entry(String cacheName, String key, long hash, long estimate) {
+            this.cacheName = cacheName;
+            this.key = key;
+            this.hash = hash;
+            this.estimate = estimate;
+        }
+
+        Cache.ValueWrapper promoted(){
+            Cache.ValueWrapper promoted = value;
+            return promoted != null && System.nanoTime() - expiresAtNanos < 0 ? promoted : null;
+        }
+    }
+}
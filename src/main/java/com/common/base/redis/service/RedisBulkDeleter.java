@@ -0,0 +1,164 @@
+package com.common.base.redis.service;
+
+import com.common.base.util.ExecutorFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.cache.BatchStrategy;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Deletes keys by pattern without blocking Redis.
+ * Keys are walked with cursor based SCAN and removed with UNLINK, which frees memory in a
+ * background thread on the server. Each batch is unlinked as a pipeline of multi-key UNLINK commands
+ * on a second connection, so the scan cursor never waits on deletions. Never use KEYS for this:
+ * it is O(N) over the whole keyspace and blocks every other client while it runs.
+ */
+@Service
+@Slf4j
+public class RedisBulkDeleter {
+
+    private final RedisConnectionFactory connectionFactory;
+
+    // SCAN COUNT hint and number of keys collected before they are unlinked
+    private final int batchSize;
+
+    // Keys per UNLINK command within a batch
+    private final int unlinkChunkSize;
+
+    private final ExecutorService executor;
+
+    public RedisBulkDeleter(RedisConnectionFactory connectionFactory,
+                            @Value("${redis.bulk-delete.batch-size:1000}") int batchSize,
+                            @Value("${redis.bulk-delete.unlink-chunk-size:100}") int unlinkChunkSize) {
+        this.connectionFactory = connectionFactory;
+        this.batchSize = Math.max(1, batchSize);
+        this.unlinkChunkSize = Math.max(1, unlinkChunkSize);
+        this.executor = ExecutorFactory.newExecutor("redis-bulk-delete", false, 1);
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    /**
+     * Deletes matching keys on the calling thread.
+     * @return the number of deleted keys
+     */
+    public long deleteByPattern(String pattern){
+        BulkDeletion deletion = new BulkDeletion(pattern);
+        run(deletion, null);
+        return deletion.getDeleted();
+    }
+
+    public BulkDeletion deleteByPatternAsync(String pattern){
+        return deleteByPatternAsync(pattern, null);
+    }
+
+    /**
+     * Deletes matching keys in the background.
+     * @param onProgress called after each batch, may be {@code null}
+     */
+    public BulkDeletion deleteByPatternAsync(String pattern, Consumer<BulkDeletion> onProgress){
+        BulkDeletion deletion = new BulkDeletion(pattern);
+        executor.execute(() -> {
+            try {
+                run(deletion, onProgress);
+            } catch (Exception e) {
+                // Already recorded on the handle
+                log.error("Bulk deletion failed: {}", deletion, e);
+            }
+        });
+        return deletion;
+    }
+
+    /**
+     * Clear strategy for {@code RedisCacheWriter}: SCAN and UNLINK on the connection the writer hands in.
+     */
+    public BatchStrategy asBatchStrategy(){
+        return (connection, name, pattern) -> {
+            BulkDeletion deletion = new BulkDeletion(name);
+            scanAndUnlink(connection, pattern, deletion, null, batch -> unlinkInChunks(connection, batch));
+            return deletion.getDeleted();
+        };
+    }
+
+    private void run(BulkDeletion deletion, Consumer<BulkDeletion> onProgress){
+        byte[] rawPattern = deletion.getPattern().getBytes(StandardCharsets.UTF_8);
+        try (RedisConnection scanConnection = connectionFactory.getConnection();
+             RedisConnection unlinkConnection = connectionFactory.getConnection()) {
+            scanAndUnlink(scanConnection, rawPattern, deletion, onProgress, batch -> unlinkPipelined(unlinkConnection, batch));
+            deletion.complete();
+            log.info("Bulk deletion finished: {}", deletion);
+        } catch (RuntimeException e) {
+            deletion.fail(e);
+            throw e;
+        }
+    }
+
+    private void scanAndUnlink(RedisConnection connection, byte[] pattern, BulkDeletion deletion,
+                               Consumer<BulkDeletion> onProgress, ToLongFunction<List<byte[]>> unlink){
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(batchSize).build();
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            while (cursor.hasNext() && !deletion.isCancelled()){
+                batch.add(cursor.next());
+                if(batch.size() >= batchSize){
+                    flush(batch, deletion, onProgress, unlink);
+                }
+            }
+        }
+        if(!batch.isEmpty() && !deletion.isCancelled()){
+            flush(batch, deletion, onProgress, unlink);
+        }
+    }
+
+    private void flush(List<byte[]> batch, BulkDeletion deletion, Consumer<BulkDeletion> onProgress, ToLongFunction<List<byte[]>> unlink){
+        long deleted = unlink.applyAsLong(batch);
+        deletion.onBatch(batch.size(), deleted);
+        batch.clear();
+        if(onProgress != null) onProgress.accept(deletion);
+    }
+
+    private long unlinkPipelined(RedisConnection connection, List<byte[]> keys){
+        connection.openPipeline();
+        try {
+            for(int from = 0; from < keys.size(); from += unlinkChunkSize){
+                connection.keyCommands().unlink(chunk(keys, from));
+            }
+        } catch (RuntimeException e) {
+            connection.closePipeline();
+            throw e;
+        }
+        long deleted = 0;
+        for(Object reply : connection.closePipeline()){
+            if(reply instanceof Number number) deleted += number.longValue();
+        }
+        return deleted;
+    }
+
+    private long unlinkInChunks(RedisConnection connection, List<byte[]> keys){
+        long deleted = 0;
+        for(int from = 0; from < keys.size(); from += unlinkChunkSize){
+            Long count = connection.keyCommands().unlink(chunk(keys, from));
+            if(count != null) deleted += count;
+        }
+        return deleted;
+    }
+
+    private byte[][] chunk(List<byte[]> keys, int from){
+        return keys.subList(from, Math.min(keys.size(), from + unlinkChunkSize)).toArray(new byte[0][]);
+    }
+}
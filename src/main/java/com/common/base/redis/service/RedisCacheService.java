@@ -1,10 +1,37 @@
 package com.common.base.redis.service;
 
+import com.common.base.redis.cache.JitteredTtlFunction;
+import com.common.base.redis.cache.RefreshableValue;
+import com.common.base.redis.cache.TwoTierCache;
+import com.common.base.redis.configuration.RedisCacheProperties;
+import com.common.base.redis.metrics.CacheMeters;
+import com.common.base.redis.metrics.CacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -14,51 +41,367 @@ public class RedisCacheService {
 
     private final RedisTemplate<String, Object> redisTemplate;
 
-    public RedisCacheService(CacheManager cacheManager, RedisTemplate<String, Object> redisTemplate) {
+    private final CacheMetrics cacheMetrics;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final RedisCacheProperties redisCacheProperties;
+
+    private final WriteBehindQueue writeBehindQueue;
+
+    // Keys per round trip of the bulk operations
+    private final int batchSize;
+
+    // What RedisCache stores for a cached null, so bulk reads and writes stay interchangeable with it
+    private static final byte[] BINARY_NULL_VALUE = RedisSerializer.java().serialize(NullValue.INSTANCE);
+
+    public RedisCacheService(CacheManager cacheManager, RedisTemplate<String, Object> redisTemplate, CacheMetrics cacheMetrics,
+                             RedisCacheProperties redisCacheProperties, HotKeyDetector hotKeyDetector) {
         this.cacheManager = cacheManager;
         this.redisTemplate = redisTemplate;
+        this.cacheMetrics = cacheMetrics;
+        this.hotKeyDetector = hotKeyDetector;
+        this.redisCacheProperties = redisCacheProperties;
+        this.batchSize = Math.max(1, redisCacheProperties.getBatchSize());
+        this.writeBehindQueue = new WriteBehindQueue(redisCacheProperties.getWriteBehind(), this::writeAll,
+                cacheMetrics.writeBehind(this::getWriteBehindQueueSize));
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        writeBehindQueue.close();
     }
 
     public void put(String cacheName, String key, Object value){
         Cache cache = cacheManager.getCache(cacheName);
-        if(cache != null)cache.put(key, value);
+        if(cache != null){
+            writeBehindQueue.discard(cacheName, key);
+            cache.put(key, value);
+            hotKeyDetector.invalidate(cacheName, key);
+            cacheMetrics.forCache(cacheName).put();
+        }
+    }
+
+    /**
+     * Queues the put for a background batch write instead of writing it now, see {@code redis.cache.write-behind}.
+     * Until the batch is written, reads on this node see the queued value; other nodes still miss.
+     * @param ttl the entry TTL, {@code null} for the cache's own
+     * @return whether the put was queued; a put that finds the queue full is not cached at all
+     */
+    public boolean putBehind(String cacheName, String key, Object value, @Nullable Duration ttl){
+        return cacheManager.getCache(cacheName) != null && writeBehindQueue.offer(cacheName, key, value, ttl);
+    }
+
+    public int getWriteBehindQueueSize(){
+        return writeBehindQueue.size();
     }
 
     public <T> T get(String cacheName, String key, Class<T> type){
+        return type.cast(unwrap(getCached(cacheName, key)));
+    }
+
+    // The value as stored, refresh-ahead envelopes included
+    Object getCached(String cacheName, String key){
         Cache cache = cacheManager.getCache(cacheName);
         if(cache != null){
-            Cache.ValueWrapper valueWrapper = cache.get(key);
+            WriteBehindQueue.PendingPut pending = writeBehindQueue.pending(cacheName, key);
+            if(pending != null){
+                cacheMetrics.forCache(cacheName).hit();
+                return pending.value();
+            }
+            HotKeyDetector.Entry hotKey = hotKeyDetector.record(cacheName, key);
+            Cache.ValueWrapper valueWrapper = hotKey != null ? hotKey.promoted() : null;
+            if(valueWrapper == null){
+                valueWrapper = cache.get(key);
+                if(valueWrapper != null && hotKey != null) hotKeyDetector.promote(hotKey, valueWrapper);
+            }
             if(valueWrapper != null){
-                type.cast(valueWrapper);
+                cacheMetrics.forCache(cacheName).hit();
+                return valueWrapper.get();
             }
+            cacheMetrics.forCache(cacheName).miss();
         }
         return null;
     }
 
+    /**
+     * Keys currently detected as hot, hottest first; empty unless {@code redis.cache.hot-keys.enabled}.
+     */
+    public List<HotKeyDetector.HotKey> getHotKeys(){
+        return hotKeyDetector.getHotKeys();
+    }
+
     public void evict(String cacheName, String key){
         Cache cache = cacheManager.getCache(cacheName);
         if(cache != null){
+            writeBehindQueue.discard(cacheName, key);
             cache.evict(key);
+            hotKeyDetector.invalidate(cacheName, key);
+            cacheMetrics.forCache(cacheName).eviction();
         }
     }
 
     public void evictAll(String cacheName){
         Cache cache = cacheManager.getCache(cacheName);
         if(cache != null){
+            writeBehindQueue.discardCache(cacheName);
             cache.clear();
+            hotKeyDetector.invalidateCache(cacheName);
         }
     }
 
+    /**
+     * Reads many keys with one MGET per batch instead of one GET per key.
+     * Keys that are not cached are absent from the returned map; a cached null maps to {@code null}.
+     * With a near cache, L1 is consulted first and only its misses go to Redis.
+     */
+    public <T> Map<String, T> getAll(String cacheName, Collection<String> keys, Class<T> type){
+        Map<String, T> found = new LinkedHashMap<>();
+        Cache cache = cacheManager.getCache(cacheName);
+        if(cache == null || keys.isEmpty()) return found;
+
+        TwoTierCache twoTierCache = unwrapTwoTierCache(cache);
+        List<String> remaining = new ArrayList<>(keys.size());
+        for(String key : new LinkedHashSet<>(keys)){
+            Cache.ValueWrapper local = twoTierCache != null ? twoTierCache.getLocal(key) : null;
+            if(local != null){
+                found.put(key, type.cast(unwrap(local.get())));
+            } else {
+                remaining.add(key);
+            }
+        }
+
+        RedisCache redisCache = unwrapRedisCache(cache);
+        if(redisCache == null){
+            for(String key : remaining){
+                Cache.ValueWrapper valueWrapper = cache.get(key);
+                if(valueWrapper != null) found.put(key, type.cast(unwrap(valueWrapper.get())));
+            }
+        } else {
+            RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+            for(int from = 0; from < remaining.size(); from += batchSize){
+                List<String> chunk = remaining.subList(from, Math.min(remaining.size(), from + batchSize));
+                byte[][] rawKeys = serializeKeys(config, cacheName, chunk);
+                // Taken before the read, so an invalidation racing with MGET keeps the value out of L1
+                long[] stamps = new long[twoTierCache != null ? chunk.size() : 0];
+                for(int i = 0; i < stamps.length; i++){
+                    stamps[i] = twoTierCache.localStamp(chunk.get(i));
+                }
+                List<byte[]> rawValues = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+                if(rawValues == null) continue;
+                for(int i = 0; i < chunk.size(); i++){
+                    byte[] rawValue = rawValues.get(i);
+                    if(rawValue == null) continue;
+                    Object value = deserializeValue(config, rawValue);
+                    if(twoTierCache != null) twoTierCache.putLocal(chunk.get(i), new SimpleValueWrapper(value), stamps[i]);
+                    found.put(chunk.get(i), type.cast(unwrap(value)));
+                }
+            }
+        }
+
+        CacheMeters meters = cacheMetrics.forCache(cacheName);
+        meters.hit(found.size());
+        meters.miss(keys.size() - found.size());
+        return found;
+    }
+
+    /**
+     * Writes many entries with the cache's configured TTL, one pipeline per batch.
+     */
+    public void putAll(String cacheName, Map<String, ?> entries){
+        putAll(cacheName, entries, null);
+    }
+
+    /**
+     * Writes many entries with the given TTL, one pipeline of {@code SET ... PX} per batch.
+     * Null values are stored only when the cache caches nulls, otherwise they are skipped.
+     */
+    public void putAll(String cacheName, Map<String, ?> entries, long ttl, TimeUnit timeUnit){
+        putAll(cacheName, entries, Duration.ofMillis(timeUnit.toMillis(ttl)));
+    }
+
+    /**
+     * The TTL shortened by the cache's jitter, drawn per call.
+     */
+    public Duration jitteredTtl(String cacheName, Duration ttl){
+        return JitteredTtlFunction.apply(ttl, redisCacheProperties.ttlJitterFor(cacheName));
+    }
+
+    // Refreshable envelopes come with a logical TTL already jittered by the caller plus the stale window,
+    // which jittering again would shorten
+    private Duration storedTtl(String cacheName, Object value, Duration ttl){
+        return value instanceof RefreshableValue ? ttl : jitteredTtl(cacheName, ttl);
+    }
+
+    private void putAll(String cacheName, Map<String, ?> entries, @Nullable Duration ttl){
+        entries.keySet().forEach(key -> writeBehindQueue.discard(cacheName, key));
+        writeAll(cacheName, entries, ttl);
+    }
+
+    // Leaves queued write-behind puts alone, the write-behind flush itself comes through here
+    private void writeAll(String cacheName, Map<String, ?> entries, @Nullable Duration ttl){
+        Cache cache = cacheManager.getCache(cacheName);
+        if(cache == null || entries.isEmpty()) return;
+        RedisCache redisCache = unwrapRedisCache(cache);
+        if(redisCache == null){
+            entries.forEach((key, value) -> {
+                if(ttl == null){
+                    cache.put(key, value);
+                    hotKeyDetector.invalidate(cacheName, key);
+                    cacheMetrics.forCache(cacheName).put();
+                } else {
+                    writeWithCustomTtl(cacheName, key, value, ttl.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            });
+            return;
+        }
+
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        List<? extends Map.Entry<String, ?>> list = new ArrayList<>(entries.entrySet());
+        long written = 0;
+        for(int from = 0; from < list.size(); from += batchSize){
+            List<? extends Map.Entry<String, ?>> chunk = list.subList(from, Math.min(list.size(), from + batchSize));
+            List<byte[]> rawKeys = new ArrayList<>(chunk.size());
+            List<byte[]> rawValues = new ArrayList<>(chunk.size());
+            List<Expiration> expirations = new ArrayList<>(chunk.size());
+            for(Map.Entry<String, ?> entry : chunk){
+                Object value = entry.getValue();
+                if(value == null && !config.getAllowCacheNullValues()) continue;
+                Duration entryTtl = ttl != null ? storedTtl(cacheName, value, ttl) : config.getTtlFunction().getTimeToLive(entry.getKey(), value);
+                rawKeys.add(serializeKey(config, cacheName, entry.getKey()));
+                rawValues.add(value == null ? BINARY_NULL_VALUE : ByteUtils.getBytes(config.getValueSerializationPair().write(value)));
+                expirations.add(entryTtl == null || entryTtl.isZero() || entryTtl.isNegative() ? Expiration.persistent() : Expiration.from(entryTtl));
+            }
+            if(rawKeys.isEmpty()) continue;
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for(int i = 0; i < rawKeys.size(); i++){
+                    connection.stringCommands().set(rawKeys.get(i), rawValues.get(i), expirations.get(i), SetOption.upsert());
+                }
+                return null;
+            });
+            written += rawKeys.size();
+            invalidateNearCache(cache, chunk.stream().map(Map.Entry::getKey).toList());
+        }
+        entries.keySet().forEach(key -> hotKeyDetector.invalidate(cacheName, key));
+        cacheMetrics.forCache(cacheName).put(written);
+    }
+
+    /**
+     * Removes many keys with one multi-key UNLINK per batch.
+     */
+    public void evictAll(String cacheName, Collection<String> keys){
+        Cache cache = cacheManager.getCache(cacheName);
+        if(cache == null || keys.isEmpty()) return;
+        keys.forEach(key -> writeBehindQueue.discard(cacheName, key));
+        RedisCache redisCache = unwrapRedisCache(cache);
+        if(redisCache == null){
+            keys.forEach(cache::evict);
+        } else {
+            RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+            List<String> list = new ArrayList<>(keys);
+            for(int from = 0; from < list.size(); from += batchSize){
+                List<String> chunk = list.subList(from, Math.min(list.size(), from + batchSize));
+                byte[][] rawKeys = serializeKeys(config, cacheName, chunk);
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().unlink(rawKeys));
+                invalidateNearCache(cache, chunk);
+            }
+        }
+        keys.forEach(key -> hotKeyDetector.invalidate(cacheName, key));
+        cacheMetrics.forCache(cacheName).eviction(keys.size());
+    }
+
+    /**
+     * TTL a plain put would give this entry, jitter included, {@code null} when the cache has no Redis tier.
+     */
+    public Duration getTimeToLive(String cacheName, String key, Object value){
+        RedisCache redisCache = unwrapRedisCache(cacheManager.getCache(cacheName));
+        return redisCache == null ? null : redisCache.getCacheConfiguration().getTtlFunction().getTimeToLive(key, value);
+    }
+
     public boolean exists(String cacheName, String key){
         Cache cache = cacheManager.getCache(cacheName);
         return cache != null && cache.get(key) != null;
     }
 
     public void putWithCustomTtl(String cacheName, String key, Object value, long ttl, TimeUnit timeUnit){
-        redisTemplate.opsForValue().set(buildKey(cacheName, key), value, ttl, timeUnit);
+        writeBehindQueue.discard(cacheName, key);
+        writeWithCustomTtl(cacheName, key, value, ttl, timeUnit);
+    }
+
+    private void writeWithCustomTtl(String cacheName, String key, Object value, long ttl, TimeUnit timeUnit){
+        Cache cache = cacheManager.getCache(cacheName);
+        RedisCache redisCache = unwrapRedisCache(cache);
+        if(redisCache == null){
+            redisTemplate.opsForValue().set(buildKey(cacheName, key), value, storedTtl(cacheName, value, Duration.ofMillis(timeUnit.toMillis(ttl))));
+            return;
+        }
+        // Write through the cache's own writer so the entry uses the same key prefix and serializer as reads
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        byte[] cacheKey = serializeKey(config, cacheName, key);
+        byte[] cacheValue = ByteUtils.getBytes(config.getValueSerializationPair().write(value));
+        redisCache.getNativeCache().put(cacheName, cacheKey, cacheValue, storedTtl(cacheName, value, Duration.ofMillis(timeUnit.toMillis(ttl))));
+        invalidateNearCache(cache, key);
+        hotKeyDetector.invalidate(cacheName, key);
+        cacheMetrics.forCache(cacheName).put();
     }
 
     private String buildKey(String cacheName, String key) {
         return cacheName+"::"+key;
     }
+
+    private static Object unwrap(Object value){
+        return value instanceof RefreshableValue refreshable ? refreshable.getValue() : value;
+    }
+
+    private static byte[] serializeKey(RedisCacheConfiguration config, String cacheName, String key){
+        return ByteUtils.getBytes(config.getKeySerializationPair().write(config.getKeyPrefixFor(cacheName)+key));
+    }
+
+    private static byte[][] serializeKeys(RedisCacheConfiguration config, String cacheName, List<String> keys){
+        byte[][] rawKeys = new byte[keys.size()][];
+        for(int i = 0; i < rawKeys.length; i++){
+            rawKeys[i] = serializeKey(config, cacheName, keys.get(i));
+        }
+        return rawKeys;
+    }
+
+    private static Object deserializeValue(RedisCacheConfiguration config, byte[] rawValue){
+        if(config.getAllowCacheNullValues() && Arrays.equals(rawValue, BINARY_NULL_VALUE)) return null;
+        Object value = config.getValueSerializationPair().read(ByteBuffer.wrap(rawValue));
+        return value instanceof NullValue ? null : value;
+    }
+
+    private static void invalidateNearCache(Cache cache, String key){
+        TwoTierCache twoTierCache = unwrapTwoTierCache(cache);
+        if(twoTierCache != null){
+            twoTierCache.invalidateEverywhere(key);
+        }
+    }
+
+    private static void invalidateNearCache(Cache cache, Collection<String> keys){
+        TwoTierCache twoTierCache = unwrapTwoTierCache(cache);
+        if(twoTierCache != null){
+            twoTierCache.invalidateAllEverywhere(keys);
+        }
+    }
+
+    private static TwoTierCache unwrapTwoTierCache(Cache cache){
+        if(cache instanceof TransactionAwareCacheDecorator decorator){
+            cache = decorator.getTargetCache();
+        }
+        return cache instanceof TwoTierCache twoTierCache ? twoTierCache : null;
+    }
+
+    private static RedisCache unwrapRedisCache(Cache cache){
+        while (cache != null && !(cache instanceof RedisCache)){
+            if(cache instanceof TransactionAwareCacheDecorator decorator){
+                cache = decorator.getTargetCache();
+            } else if (cache instanceof TwoTierCache twoTierCache){
+                cache = twoTierCache.getDelegate();
+            } else {
+                return null;
+            }
+        }
+        return (RedisCache) cache;
+    }
 }
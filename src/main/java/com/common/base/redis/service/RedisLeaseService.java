@@ -0,0 +1,59 @@
+package com.common.base.redis.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Short lived, token guarded leases ({@code SET key token NX PX ttl}).
+ * A lease only protects work from being duplicated across nodes; it is not a fencing lock,
+ * callers must stay correct if it expires while they are still working.
+ */
+@Service
+@Slf4j
+public class RedisLeaseService {
+
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/cache/lease-release.lua"), Long.class);
+
+    private static final RedisSerializer<String> STRING_SERIALIZER = new StringRedisSerializer();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public RedisLeaseService(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * @return the lease token, or {@code null} when another holder owns the lease
+     */
+    public String tryAcquire(String leaseKey, long leaseMillis){
+        String token = UUID.randomUUID().toString();
+        byte[] rawKey = leaseKey.getBytes(StandardCharsets.UTF_8);
+        byte[] rawToken = token.getBytes(StandardCharsets.UTF_8);
+        Boolean acquired = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(rawKey, rawToken, Expiration.milliseconds(leaseMillis), RedisStringCommands.SetOption.ifAbsent()));
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    public void release(String leaseKey, String token){
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, STRING_SERIALIZER, (RedisSerializer<Long>) null,
+                    Collections.singletonList(leaseKey), token);
+        } catch (Exception e) {
+            // The lease expires on its own
+            log.warn("Failed to release lease: {}", leaseKey, e);
+        }
+    }
+}
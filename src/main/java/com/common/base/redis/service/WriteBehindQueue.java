@@ -0,0 +1,222 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import com.common.base.redis.metrics.WriteBehindMeters;
+import com.common.base.util.ExecutorFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue of cache puts, written to Redis in batches by one background thread.
+ * Producers only do a CAS on the size and a lock-free offer. The latest pending put of every key is kept
+ * in a map until its write has landed: it answers reads of keys not flushed yet (or being flushed), repeated
+ * puts of a key collapse into one write, and a synchronous put or evict of the key cancels the pending one
+ * so the flush cannot bring back an old value.
+ * Puts that fail to flush are logged and lost, which for a cache only means a later miss.
+ */
+@Slf4j
+final class WriteBehindQueue {
+
+    /**
+     * Writes one batch of a cache, all entries with the same TTL ({@code null} for the cache's own).
+     */
+    @FunctionalInterface
+    interface BatchWriter {
+        void write(String cacheName, Map<String, Object> entries, @Nullable Duration ttl);
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final ConcurrentLinkedQueue<PendingPut> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Map<String, PendingPut> latest = new ConcurrentHashMap<>();
+
+    private final int capacity;
+
+    private final int flushSize;
+
+    private final long flushIntervalNanos;
+
+    private final boolean block;
+
+    private final long blockTimeoutNanos;
+
+    private final BatchWriter writer;
+
+    private final WriteBehindMeters meters;
+
+    private volatile Thread worker;
+
+    private volatile boolean closed;
+
+    WriteBehindQueue(RedisCacheProperties.WriteBehind properties, BatchWriter writer, WriteBehindMeters meters) {
+        this.capacity = Math.max(1, properties.getQueueCapacity());
+        this.flushSize = Math.max(1, Math.min(capacity, properties.getFlushSize()));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getFlushIntervalMillis()));
+        this.block = properties.getOverflow() == RedisCacheProperties.WriteBehind.Overflow.BLOCK;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, properties.getBlockTimeoutMillis()));
+        this.writer = writer;
+        this.meters = meters;
+    }
+
+    int size(){
+        return size.get();
+    }
+
+    /**
+     * @return whether the put was queued; {@code false} when the queue stayed full or is closed
+     */
+    boolean offer(String cacheName, String key, Object value, @Nullable Duration ttl){
+        if(closed || !reserve()){
+            meters.dropped();
+            return false;
+        }
+        PendingPut put = new PendingPut(cacheName, key, value, ttl);
+        latest.put(put.id(), put);
+        queue.offer(put);
+        Thread current = worker;
+        if(current == null){
+            current = startWorker();
+        }
+        if(size.get() >= flushSize) LockSupport.unpark(current);
+        return true;
+    }
+
+    /**
+     * The value of a queued put of the key, if any.
+     */
+    @Nullable
+    PendingPut pending(String cacheName, String key){
+        return latest.isEmpty() ? null : latest.get(id(cacheName, key));
+    }
+
+    void discard(String cacheName, String key){
+        if(!latest.isEmpty()) latest.remove(id(cacheName, key));
+    }
+
+    void discardCache(String cacheName){
+        if(latest.isEmpty()) return;
+        String prefix = cacheName+"::";
+        latest.keySet().removeIf(id -> id.startsWith(prefix));
+    }
+
+    /**
+     * Stops taking puts and writes what is queued before returning.
+     */
+    void close(){
+        closed = true;
+        Thread current = worker;
+        if(current == null) return;
+        LockSupport.unpark(current);
+        try {
+            current.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean reserve(){
+        long deadline = 0;
+        while (true){
+            int current = size.get();
+            if(current < capacity){
+                if(size.compareAndSet(current, current + 1)) return true;
+                continue;
+            }
+            if(!block) return false;
+            // Full: wake the worker and wait for it to make room
+            if(deadline == 0) deadline = System.nanoTime() + blockTimeoutNanos;
+            else if(System.nanoTime() - deadline >= 0 || closed) return false;
+            Thread flusher = worker;
+            if(flusher != null) LockSupport.unpark(flusher);
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    private synchronized Thread startWorker(){
+        if(worker == null){
+            Thread thread = ExecutorFactory.daemonThreadFactory("cache-write-behind").newThread(this::run);
+            worker = thread;
+            thread.start();
+        }
+        return worker;
+    }
+
+    private void run(){
+        while (!closed || size.get() > 0){
+            if(size.get() < flushSize && !closed){
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            flushBatch();
+        }
+    }
+
+    private void flushBatch(){
+        // cache name -> TTL -> puts; each group is one putAll
+        Map<String, Map<Duration, List<PendingPut>>> groups = new LinkedHashMap<>();
+        int drained = 0;
+        PendingPut put;
+        while (drained < flushSize && (put = queue.poll()) != null){
+            size.decrementAndGet();
+            drained++;
+            // Superseded by a newer put, or cancelled by a synchronous write or evict
+            if(latest.get(put.id()) != put) continue;
+            groups.computeIfAbsent(put.cacheName(), name -> new LinkedHashMap<>())
+                    .computeIfAbsent(put.ttl(), ttl -> new ArrayList<>())
+                    .add(put);
+        }
+        groups.forEach((cacheName, byTtl) -> byTtl.forEach((ttl, puts) -> write(cacheName, puts, ttl)));
+    }
+
+    private void write(String cacheName, List<PendingPut> puts, @Nullable Duration ttl){
+        Map<String, Object> entries = new LinkedHashMap<>();
+        puts.forEach(put -> entries.put(put.key(), put.value()));
+        long start = System.nanoTime();
+        try {
+            writer.write(cacheName, entries, ttl);
+            meters.flush(System.nanoTime() - start, entries.size(), true);
+        } catch (RuntimeException e) {
+            meters.flush(System.nanoTime() - start, entries.size(), false);
+            log.warn("Write-behind flush of {} entries to cache {} failed", entries.size(), cacheName, e);
+        } finally {
+            // Reads were answered from the pending put until now; a newer put of the key stays
+            puts.forEach(put -> latest.remove(put.id(), put));
+        }
+    }
+
+    private static String id(String cacheName, String key){
+        return cacheName+"::"+key;
+    }
+
+    record PendingPut(String cacheName, String key, Object value, @Nullable Duration ttl) {
+
+        String id(){
+            return WriteBehindQueue.id(cacheName, key);
+        }
+
+        // Identity, so a newer put of the same key and value is not mistaken for this one
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cacheName, key);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.common.base.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds executors for background and continuation work.
+ * The library targets Java 17, so virtual threads are looked up reflectively and used
+ * only when the running JVM provides them (Java 21+).
+ */
+@Slf4j
+public final class ExecutorFactory {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private ExecutorFactory() {
+    }
+
+    public static boolean isVirtualThreadsAvailable(){
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * @param virtualThreads  prefer one virtual thread per task when the JVM supports it
+     * @param platformThreads pool size used otherwise
+     */
+    public static ExecutorService newExecutor(String name, boolean virtualThreads, int platformThreads){
+        if(virtualThreads){
+            if(NEW_VIRTUAL_THREAD_EXECUTOR != null){
+                try {
+                    return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    log.warn("Could not create virtual thread executor for {}, using platform threads", name, e);
+                }
+            } else {
+                log.info("Virtual threads requested for {} but not available on this JVM, using platform threads", name);
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, daemonThreadFactory(name));
+    }
+
+    public static ThreadFactory daemonThreadFactory(String name){
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name+"-"+counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Method findVirtualThreadExecutorFactory(){
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
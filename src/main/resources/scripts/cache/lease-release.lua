@@ -0,0 +1,8 @@
+-- Releases a lease only if it is still held by the caller.
+-- KEYS[1] lease key
+-- ARGV[1] token written when the lease was acquired
+-- Returns 1 when the lease was released, 0 when it had expired or belongs to someone else
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
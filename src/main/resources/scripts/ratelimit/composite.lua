@@ -0,0 +1,105 @@
+-- Composite limit: every limit is checked first, and only when all of them admit the request is it
+-- counted against each of them, so a request rejected by one limit uses up none of the others.
+-- KEYS[i] state of limit i
+-- ARGV[3i-2] algorithm of limit i: 1 token bucket, 2 fixed window, 3 sliding window counter
+-- ARGV[3i-1] limit i max requests (bucket capacity)
+-- ARGV[3i]   limit i window length in milliseconds (time to refill a whole bucket)
+-- Returns {allowed (1/0), index of the first rejecting limit (0 when allowed), remaining, retryAfterMillis}
+-- remaining is the lowest across the limits; retryAfterMillis the longest across the rejecting ones
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local failed = 0
+local remaining = -1
+local retryAfter = 0
+local writes = {}
+
+for i = 1, #KEYS do
+    local algorithm = tonumber(ARGV[3 * i - 2])
+    local limit = tonumber(ARGV[3 * i - 1])
+    local window = tonumber(ARGV[3 * i])
+    local allowed, left, wait
+
+    if algorithm == 1 then
+        local state = redis.call('HMGET', KEYS[i], 't', 'ts')
+        local rate = limit / window
+        local tokens = tonumber(state[1])
+        local last = tonumber(state[2])
+        if tokens == nil or last == nil then
+            tokens = limit
+        else
+            tokens = math.min(limit, tokens + math.max(0, now - last) * rate)
+        end
+        allowed = tokens >= 1
+        left = math.floor(tokens) - 1
+        wait = allowed and 0 or math.ceil((1 - tokens) / rate)
+        writes[i] = tokens - 1
+    elseif algorithm == 2 then
+        local count = tonumber(redis.call('GET', KEYS[i])) or 0
+        allowed = count + 1 <= limit
+        left = limit - count - 1
+        if allowed then
+            wait = 0
+        else
+            wait = redis.call('PTTL', KEYS[i])
+            if wait < 0 then wait = window end
+        end
+    else
+        local index = math.floor(now / window)
+        local elapsed = now - index * window
+        local state = redis.call('HMGET', KEYS[i], 'w', 'c', 'p')
+        local stored = tonumber(state[1])
+        local current = tonumber(state[2]) or 0
+        local previous = tonumber(state[3]) or 0
+        if stored ~= index then
+            if stored == index - 1 then previous = current else previous = 0 end
+            current = 0
+        end
+        local estimate = previous * (window - elapsed) / window + current
+        allowed = estimate + 1 <= limit
+        left = math.floor(limit - estimate - 1)
+        if allowed then
+            wait = 0
+        elseif limit < 1 then
+            wait = window
+        elseif current + 1 <= limit then
+            wait = math.ceil(window - (limit - 1 - current) * window / previous) - elapsed
+        else
+            wait = window - elapsed + math.ceil(window * (1 - (limit - 1) / current))
+        end
+        writes[i] = {index, current + 1, previous, 2 * window - elapsed}
+    end
+
+    if allowed then
+        if remaining < 0 or left < remaining then remaining = left end
+    else
+        if failed == 0 then failed = i end
+        wait = math.max(wait, 1)
+        if wait > retryAfter then retryAfter = wait end
+    end
+end
+
+if failed > 0 then
+    return {0, failed, 0, retryAfter}
+end
+
+for i = 1, #KEYS do
+    local algorithm = tonumber(ARGV[3 * i - 2])
+    local window = tonumber(ARGV[3 * i])
+    if algorithm == 1 then
+        -- Tokens are fractional, kept as a string so they are not truncated to an integer reply
+        redis.call('HSET', KEYS[i], 't', tostring(writes[i]), 'ts', now)
+        -- An untouched bucket is full again after one window, the same as a missing key
+        redis.call('PEXPIRE', KEYS[i], window)
+    elseif algorithm == 2 then
+        if redis.call('INCR', KEYS[i]) == 1 then
+            redis.call('PEXPIRE', KEYS[i], window)
+        end
+    else
+        local w = writes[i]
+        redis.call('HSET', KEYS[i], 'w', w[1], 'c', w[2], 'p', w[3])
+        redis.call('PEXPIRE', KEYS[i], w[4])
+    end
+end
+
+return {1, 0, math.max(remaining, 0), 0}
@@ -0,0 +1,24 @@
+-- Attempt counter: create, increment or reset in one atomic step.
+-- KEYS[1] hash with fields first, last, count, blocked
+-- ARGV[1] 1 for a successful attempt, 0 for a failed one
+-- ARGV[2] max failed attempts before the key is blocked
+-- ARGV[3] window length in milliseconds, counted from the first attempt
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+if redis.call('HSETNX', KEYS[1], 'first', now) == 1 then
+    redis.call('PEXPIRE', KEYS[1], ARGV[3])
+end
+
+if ARGV[1] == '1' then
+    redis.call('HSET', KEYS[1], 'last', now, 'count', 0, 'blocked', 0)
+    return 0
+end
+
+local count = redis.call('HINCRBY', KEYS[1], 'count', 1)
+local blocked = 0
+if count >= tonumber(ARGV[2]) then
+    blocked = 1
+end
+redis.call('HSET', KEYS[1], 'last', now, 'blocked', blocked)
+return count
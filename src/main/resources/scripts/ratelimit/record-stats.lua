@@ -0,0 +1,29 @@
+-- Request statistics: totals plus a ring of per minute counters, updated in one step.
+-- KEYS[1] hash with fields first, last, total, blocked, m<slot> (minute of the slot), c<slot> (count)
+-- ARGV[1] number of requests since the last update
+-- ARGV[2] how many of them were blocked
+-- ARGV[3] number of minute slots in the ring
+-- ARGV[4] time to live in milliseconds, refreshed on every update
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local minute = math.floor(now / 60000)
+local slot = minute % tonumber(ARGV[3])
+local requests = tonumber(ARGV[1])
+local blocked = tonumber(ARGV[2])
+
+redis.call('HSETNX', KEYS[1], 'first', now)
+redis.call('HSET', KEYS[1], 'last', now)
+redis.call('HINCRBY', KEYS[1], 'total', requests)
+if blocked > 0 then
+    redis.call('HINCRBY', KEYS[1], 'blocked', blocked)
+end
+
+-- A slot still stamped with an older minute belongs to a previous turn of the ring
+if redis.call('HGET', KEYS[1], 'm' .. slot) == tostring(minute) then
+    redis.call('HINCRBY', KEYS[1], 'c' .. slot, requests)
+else
+    redis.call('HSET', KEYS[1], 'm' .. slot, minute, 'c' .. slot, requests)
+end
+
+redis.call('PEXPIRE', KEYS[1], ARGV[4])
+return 0
@@ -0,0 +1,43 @@
+-- Sliding window counter: the previous fixed window's count, weighted by the part of it the sliding
+-- window still covers, plus the current window's count. Read, roll over and increment in one atomic step.
+-- KEYS[1] hash with fields w (current window index), c (its count) and p (previous window's count)
+-- ARGV[1] max requests per window
+-- ARGV[2] window length in milliseconds
+-- Returns {allowed (1/0), remaining, retryAfterMillis}
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local index = math.floor(now / window)
+local elapsed = now - index * window
+
+local state = redis.call('HMGET', KEYS[1], 'w', 'c', 'p')
+local stored = tonumber(state[1])
+local current = tonumber(state[2]) or 0
+local previous = tonumber(state[3]) or 0
+if stored ~= index then
+    -- Roll over: the stored window becomes the previous one only if it is the one right before
+    if stored == index - 1 then previous = current else previous = 0 end
+    current = 0
+end
+
+local estimate = previous * (window - elapsed) / window + current
+if estimate + 1 <= limit then
+    current = current + 1
+    redis.call('HSET', KEYS[1], 'w', index, 'c', current, 'p', previous)
+    -- Needed until the end of the next window, where this window is the weighted one
+    redis.call('PEXPIRE', KEYS[1], 2 * window - elapsed)
+    return {1, math.floor(limit - estimate - 1), 0}
+end
+
+local retryAfter
+if limit < 1 then
+    retryAfter = window
+elseif current + 1 <= limit then
+    -- Wait for the previous window's weight to decay enough in this window
+    retryAfter = math.ceil(window - (limit - 1 - current) * window / previous) - elapsed
+else
+    -- Wait for the next window, then for this window's weight to decay enough
+    retryAfter = window - elapsed + math.ceil(window * (1 - (limit - 1) / current))
+end
+return {0, 0, math.max(retryAfter, 1)}
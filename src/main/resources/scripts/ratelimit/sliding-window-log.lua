@@ -0,0 +1,26 @@
+-- Sliding window log: trim, count, conditional add and expire in one atomic step.
+-- KEYS[1] sorted set holding one member per admitted request
+-- ARGV[1] max requests per window
+-- ARGV[2] window length in milliseconds
+-- ARGV[3] caller nonce, keeps members unique when requests share a millisecond
+-- Returns {allowed (1/0), remaining, retryAfterMillis}
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+local count = redis.call('ZCARD', KEYS[1])
+
+if count < limit then
+    redis.call('ZADD', KEYS[1], now, now .. ':' .. ARGV[3])
+    redis.call('PEXPIRE', KEYS[1], window)
+    return {1, limit - count - 1, 0}
+end
+
+local retryAfter = window
+local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+if oldest[2] then
+    retryAfter = tonumber(oldest[2]) + window - now
+end
+return {0, 0, retryAfter}
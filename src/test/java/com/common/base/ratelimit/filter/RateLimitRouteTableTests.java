@@ -0,0 +1,81 @@
+package com.common.base.ratelimit.filter;
+
+import com.common.base.ratelimit.configuration.RateLimitRouteProperties;
+import com.common.base.ratelimit.configuration.RateLimitRouteProperties.Route;
+import com.common.base.ratelimit.enums.RateLimitType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitRouteTableTests {
+
+    private final RateLimitRouteTable defaults = new RateLimitRouteTable(new RateLimitRouteProperties());
+
+    // Same answers as the contains() checks the default routes replaced
+    @ParameterizedTest
+    @CsvSource({
+            "/api/v1/communication/auth/otp/send, OTP_EMAIL",
+            "/communication/auth/otp/send/email, OTP_EMAIL",
+            "/communication/auth/otp/sendSms, OTP_EMAIL",
+            "/login, LOGIN_ATTEMPT",
+            "/api/login, LOGIN_ATTEMPT",
+            "/api/login/refresh, LOGIN_ATTEMPT",
+            "/loginUser, LOGIN_ATTEMPT",
+            "/user/login-otp, LOGIN_ATTEMPT",
+            "/mylogin, API_REQUEST",
+            "/api/users, API_REQUEST",
+            "/, API_REQUEST"
+    })
+    void defaultRoutesMatchSubstringRules(String path, RateLimitType expected) {
+        assertThat(defaults.resolve(path).getType()).isEqualTo(expected);
+    }
+
+    @Test
+    void mostSpecificPatternWins() {
+        RateLimitRouteTable table = table(
+                new Route("/api/**", RateLimitType.API_REQUEST, 100, null),
+                new Route("/api/*/login", RateLimitType.LOGIN_ATTEMPT, null, null),
+                new Route("/api/v?/login", RateLimitType.OTP_SMS, null, null),
+                new Route("/api/v1/login", RateLimitType.OTP_EMAIL, null, null));
+
+        assertThat(table.resolve("/api/v1/login").getType()).isEqualTo(RateLimitType.OTP_EMAIL);
+        assertThat(table.resolve("/api/v2/login").getType()).isEqualTo(RateLimitType.OTP_SMS);
+        assertThat(table.resolve("/api/v10/login").getType()).isEqualTo(RateLimitType.LOGIN_ATTEMPT);
+        assertThat(table.resolve("/api/v10/users").getMaxRequests()).isEqualTo(100);
+        assertThat(table.resolve("/api").getMaxRequests()).isEqualTo(100);
+        assertThat(table.resolve("/other").getType()).isEqualTo(RateLimitType.API_REQUEST);
+        assertThat(table.resolve("/other").getMaxRequests()).isNull();
+    }
+
+    @Test
+    void firstConfiguredRouteWinsForIdenticalPatterns() {
+        RateLimitRouteTable table = table(
+                new Route("/a/*", RateLimitType.OTP_SMS, null, null),
+                new Route("/a/*", RateLimitType.OTP_EMAIL, null, null));
+        assertThat(table.resolve("/a/b").getType()).isEqualTo(RateLimitType.OTP_SMS);
+    }
+
+    @Test
+    void doubleStarBacktracks() {
+        RateLimitRouteTable table = table(new Route("/**/x/**/y", RateLimitType.OTP_SMS, null, null));
+        assertThat(table.resolve("/a/x/b/x/c/y").getType()).isEqualTo(RateLimitType.OTP_SMS);
+        assertThat(table.resolve("/a/x/b/x/c/z").getType()).isEqualTo(RateLimitType.API_REQUEST);
+    }
+
+    @Test
+    void rejectsIncompleteRoute() {
+        assertThatThrownBy(() -> table(new Route("/a", null, null, null))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static RateLimitRouteTable table(Route... routes) {
+        RateLimitRouteProperties properties = new RateLimitRouteProperties();
+        properties.setRoutes(new ArrayList<>(List.of(routes)));
+        return new RateLimitRouteTable(properties);
+    }
+}
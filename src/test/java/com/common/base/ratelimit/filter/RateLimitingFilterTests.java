@@ -0,0 +1,94 @@
+package com.common.base.ratelimit.filter;
+
+import com.common.base.ratelimit.configuration.RateLimitRouteProperties;
+import com.common.base.ratelimit.enums.RateLimitType;
+import com.common.base.ratelimit.service.SecurityService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimitingFilterTests {
+
+    private final SecurityService securityService = mock(SecurityService.class);
+
+    private final CompletableFuture<Boolean> check = new CompletableFuture<>();
+
+    private RateLimitingFilter filter;
+
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        when(securityService.isRateLimitedAsync(anyString(), any(RateLimitType.class), anyInt(), anyInt())).thenReturn(check);
+        filter = new RateLimitingFilter(securityService, new RateLimitRouteTable(new RateLimitRouteProperties()));
+        ReflectionTestUtils.setField(filter, "asyncEnabled", true);
+        ReflectionTestUtils.setField(filter, "asyncThreads", 1);
+        ReflectionTestUtils.setField(filter, "asyncTimeoutMillis", 100L);
+        filter.initAsyncExecutor();
+        request = new MockHttpServletRequest("GET", "/api/users");
+        request.setAsyncSupported(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.shutdownAsyncExecutor();
+    }
+
+    @Test
+    void admittedRequestIsDispatchedAndPassesOnAsyncDispatch() throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        check.complete(false);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> asyncContext().getDispatchedPath() != null);
+
+        MockFilterChain chain = asyncDispatch();
+        assertThat(chain.getRequest()).isSameAs(request);
+    }
+
+    @Test
+    void timeoutIsRethrownOnAsyncDispatchAndLateResultIgnored() throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        for(AsyncListener listener : asyncContext().getListeners()){
+            listener.onTimeout(new AsyncEvent(asyncContext()));
+        }
+        assertThat(asyncContext().getDispatchedPath()).isNotNull();
+
+        check.complete(true);
+        // The late answer must not write a 429 into the request already handed back to the container
+        Thread.sleep(50);
+        assertThat(((MockHttpServletResponse) asyncContext().getResponse()).getStatus()).isEqualTo(200);
+
+        assertThatThrownBy(this::asyncDispatch).isInstanceOf(ServletException.class);
+    }
+
+    private MockFilterChain asyncDispatch() throws Exception {
+        request.setDispatcherType(DispatcherType.ASYNC);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain;
+    }
+
+    private MockAsyncContext asyncContext() {
+        return (MockAsyncContext) request.getAsyncContext();
+    }
+}
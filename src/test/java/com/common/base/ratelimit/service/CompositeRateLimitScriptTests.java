@@ -0,0 +1,117 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.CompositeRateLimitProperties;
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import com.common.base.ratelimit.configuration.RedisBucketProperties;
+import com.common.base.ratelimit.enums.CompositeLimitAlgorithm;
+import com.common.base.ratelimit.metrics.RateLimitMetrics;
+import com.common.base.ratelimit.service.RateLimitingService.RateLimitResult;
+import com.common.base.redis.LiveRedis;
+import com.common.base.redis.service.AsyncRedisScriptExecutor;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.common.base.ratelimit.service.CompositeRateLimiterTests.limit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs composite.lua against a real Redis, see {@link LiveRedis}; skipped when none is reachable.
+ */
+class CompositeRateLimitScriptTests {
+
+    private static final String TYPE = "COMPOSITE_SCRIPT_TEST";
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private CompositeRateLimiter limiter;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = LiveRedis.connectOrSkip();
+        redisTemplate = LiveRedis.template(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        if(connectionFactory != null) connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Set<String> keys = redisTemplate.keys("rate_limit:composite:{" + TYPE + "}*");
+        if(keys != null && !keys.isEmpty()) redisTemplate.delete(keys);
+        CompositeRateLimitProperties properties = new CompositeRateLimitProperties();
+        properties.getPolicies().put(TYPE, List.of(
+                limit("per-ip", "ip", CompositeLimitAlgorithm.TOKEN_BUCKET, 3),
+                limit("per-user", "user", CompositeLimitAlgorithm.SLIDING_WINDOW, 2),
+                limit("global", CompositeRateLimitProperties.GLOBAL, CompositeLimitAlgorithm.FIXED_WINDOW, 4)));
+        RateLimitDegradationProperties degradation = new RateLimitDegradationProperties();
+        degradation.setEnabled(false);
+        RateLimitMetrics metrics = new RateLimitMetrics(new SimpleMeterRegistry(), false);
+        limiter = new CompositeRateLimiter(redisTemplate, mock(AsyncRedisScriptExecutor.class), properties,
+                new TokenBucketRateLimiter(mock(ProxyManager.class), new RedisBucketProperties(), degradation, metrics),
+                degradation, metrics);
+    }
+
+    @Test
+    void rejectedRequestsConsumeNothing() {
+        assertThat(check("ip1", "u1").isAllowed()).isTrue();
+        assertThat(check("ip1", "u1").isAllowed()).isTrue();
+
+        RateLimitResult rejected = check("ip1", "u1");
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getFailedLimit()).isEqualTo("per-user");
+        assertThat(rejected.getWaitTimeSeconds()).isPositive();
+        // Neither per-ip nor global counted the rejected request
+        for(int i = 0; i < 5; i++){
+            assertThat(check("ip1", "u1").getFailedLimit()).isEqualTo("per-user");
+        }
+        assertThat(check("ip1", "u2").isAllowed()).isTrue();
+        assertThat(check("ip2", "u3").isAllowed()).isTrue();
+        assertThat(redisTemplate.opsForValue().get("rate_limit:composite:{" + TYPE + "}:global")).isEqualTo("4");
+    }
+
+    @Test
+    void firstRejectingLimitIsReported() {
+        assertThat(check("ip1", "u1").isAllowed()).isTrue();
+        assertThat(check("ip1", "u2").isAllowed()).isTrue();
+        assertThat(check("ip1", "u3").isAllowed()).isTrue();
+        RateLimitResult byIp = check("ip1", "u4");
+        assertThat(byIp.getFailedLimit()).isEqualTo("per-ip");
+
+        assertThat(check("ip2", "u4").isAllowed()).isTrue();
+        // per-ip has room, global is used up
+        RateLimitResult byGlobal = check("ip3", "u5");
+        assertThat(byGlobal.isAllowed()).isFalse();
+        assertThat(byGlobal.getFailedLimit()).isEqualTo("global");
+        // Both per-ip and global reject; the first in the policy is named
+        assertThat(check("ip1", "u6").getFailedLimit()).isEqualTo("per-ip");
+    }
+
+    @Test
+    void allowedReplyReportsTheLowestRemaining() {
+        RateLimitResult result = check("ip1", "u1");
+        assertThat(result.isAllowed()).isTrue();
+        // per-user: 2 - 1
+        assertThat(result.getRemainingRequests()).isEqualTo(1);
+        assertThat(result.getFailedLimit()).isNull();
+    }
+
+    private RateLimitResult check(String ip, String user) {
+        return limiter.check(TYPE, Map.of("ip", ip, "user", user)::get);
+    }
+}
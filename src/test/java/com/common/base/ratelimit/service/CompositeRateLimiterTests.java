@@ -0,0 +1,188 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.CompositeRateLimitProperties;
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import com.common.base.ratelimit.configuration.RedisBucketProperties;
+import com.common.base.ratelimit.enums.CompositeLimitAlgorithm;
+import com.common.base.ratelimit.enums.DegradedPolicy;
+import com.common.base.ratelimit.metrics.RateLimitMetrics;
+import com.common.base.ratelimit.service.RateLimitingService.RateLimitResult;
+import com.common.base.redis.service.AsyncRedisScriptExecutor;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CompositeRateLimiterTests {
+
+    private static final String TYPE = "API_GENERAL";
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+
+    private final AsyncRedisScriptExecutor asyncScriptExecutor = mock(AsyncRedisScriptExecutor.class);
+
+    private final RateLimitDegradationProperties degradation = new RateLimitDegradationProperties();
+
+    private final Map<String, String> identifiers = Map.of("ip", "10.0.0.1");
+
+    @Test
+    void replyNamesTheRejectingLimitAndRoundsTheWaitUp() {
+        reply(List.of(0L, 2L, 0L, 1500L));
+        RateLimitResult result = limiter().check(TYPE, identifiers::get);
+
+        assertThat(result.isAllowed()).isFalse();
+        assertThat(result.getFailedLimit()).isEqualTo("global");
+        assertThat(result.getWaitTimeSeconds()).isEqualTo(2);
+        assertThat(result.getAlgorithm()).isEqualTo(CompositeRateLimiter.ALGORITHM);
+    }
+
+    @Test
+    void allowedReplyCarriesTheLowestRemaining() {
+        reply(List.of(1L, 0L, 7L, 0L));
+        RateLimitResult result = limiter().check(TYPE, identifiers::get);
+
+        assertThat(result.isAllowed()).isTrue();
+        assertThat(result.getRemainingRequests()).isEqualTo(7);
+        assertThat(result.getFailedLimit()).isNull();
+    }
+
+    @Test
+    void missingScopeIdentifierIsNotARedisFailure() {
+        degradation.setDefaultPolicy(DegradedPolicy.FAIL_OPEN);
+        assertThatThrownBy(() -> limiter().check(TYPE, scope -> null)).isInstanceOf(IllegalArgumentException.class);
+        verifyScriptCalls(0);
+    }
+
+    @Test
+    void disabledDegradationRethrowsEveryError() {
+        degradation.setEnabled(false);
+        failRedis();
+        CompositeRateLimiter limiter = limiter();
+
+        for(int i = 0; i < 50; i++){
+            assertThatThrownBy(() -> limiter.check(TYPE, identifiers::get)).isInstanceOf(RedisConnectionFailureException.class);
+        }
+        verifyScriptCalls(50);
+    }
+
+    @Test
+    void failuresOpenTheSharedBreakerAndApplyFailClosed() {
+        degradation.setDefaultPolicy(DegradedPolicy.FAIL_CLOSED);
+        failRedis();
+        TokenBucketRateLimiter tokenBucketRateLimiter = tokenBucketRateLimiter();
+        CompositeRateLimiter limiter = limiter(tokenBucketRateLimiter);
+
+        for(int i = 0; i < 50; i++){
+            RateLimitResult result = limiter.check(TYPE, identifiers::get);
+            assertThat(result.isAllowed()).isFalse();
+            assertThat(result.getWaitTimeSeconds()).isPositive();
+        }
+        verifyScriptCalls(degradation.getMinimumCalls());
+        // The token bucket checks see the same open breaker
+        assertThat(tokenBucketRateLimiter.circuitBreaker().getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void failOpenAdmitsWithTheLowestLimit() {
+        degradation.getPolicies().put(TYPE, DegradedPolicy.FAIL_OPEN);
+        failRedis();
+        RateLimitResult result = limiter().check(TYPE, identifiers::get);
+
+        assertThat(result.isAllowed()).isTrue();
+        assertThat(result.getRemainingRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void failLocalKeepsRejectedRequestsOffTheOtherLimits() {
+        degradation.setDefaultPolicy(DegradedPolicy.FAIL_LOCAL);
+        failRedis();
+        CompositeRateLimiter limiter = limiter();
+
+        // ip allows 2 per caller, global 3 in total
+        assertThat(limiter.check(TYPE, scope -> "a").isAllowed()).isTrue();
+        assertThat(limiter.check(TYPE, scope -> "a").isAllowed()).isTrue();
+        RateLimitResult byIp = limiter.check(TYPE, scope -> "a");
+        assertThat(byIp.isAllowed()).isFalse();
+        assertThat(byIp.getFailedLimit()).isEqualTo("ip");
+        // The request rejected by ip did not use up the last global token
+        assertThat(limiter.check(TYPE, scope -> "b").isAllowed()).isTrue();
+        RateLimitResult byGlobal = limiter.check(TYPE, scope -> "c");
+        assertThat(byGlobal.isAllowed()).isFalse();
+        assertThat(byGlobal.getFailedLimit()).isEqualTo("global");
+    }
+
+    @Test
+    void asyncFailureIsDegradedToo() {
+        degradation.setDefaultPolicy(DegradedPolicy.FAIL_CLOSED);
+        when(asyncScriptExecutor.execute(any(), any(), any(), any(byte[][].class)))
+                .thenReturn(CompletableFuture.failedFuture(new RedisConnectionFailureException("redis down")));
+
+        RateLimitResult result = limiter().checkAsync(TYPE, identifiers::get).join();
+        assertThat(result.isAllowed()).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reply(List<Object> reply) {
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class)))
+                .thenReturn(reply);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void failRedis() {
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("redis down"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void verifyScriptCalls(int calls) {
+        verify(redisTemplate, calls == 0 ? never() : times(calls))
+                .execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class));
+    }
+
+    private CompositeRateLimiter limiter() {
+        return limiter(tokenBucketRateLimiter());
+    }
+
+    private CompositeRateLimiter limiter(TokenBucketRateLimiter tokenBucketRateLimiter) {
+        CompositeRateLimitProperties properties = new CompositeRateLimitProperties();
+        properties.getPolicies().put(TYPE, List.of(
+                limit("ip", "ip", CompositeLimitAlgorithm.SLIDING_WINDOW, 2),
+                limit("global", CompositeRateLimitProperties.GLOBAL, CompositeLimitAlgorithm.FIXED_WINDOW, 3)));
+        return new CompositeRateLimiter(redisTemplate, asyncScriptExecutor, properties, tokenBucketRateLimiter, degradation,
+                new RateLimitMetrics(new SimpleMeterRegistry(), false));
+    }
+
+    @SuppressWarnings("unchecked")
+    private TokenBucketRateLimiter tokenBucketRateLimiter() {
+        return new TokenBucketRateLimiter(mock(ProxyManager.class), new RedisBucketProperties(), degradation,
+                new RateLimitMetrics(new SimpleMeterRegistry(), false));
+    }
+
+    static CompositeRateLimitProperties.Limit limit(String name, String scope, CompositeLimitAlgorithm algorithm, long max) {
+        CompositeRateLimitProperties.Limit limit = new CompositeRateLimitProperties.Limit();
+        limit.setName(name);
+        limit.setScope(scope);
+        limit.setAlgorithm(algorithm);
+        limit.setLimit(max);
+        limit.setWindowSeconds(60);
+        return limit;
+    }
+}
@@ -0,0 +1,98 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.LocalBucketProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalTokenBucketRegistryTests {
+
+    private static final long PERIOD = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void consumesAndRefillsWholePeriods() {
+        LocalTokenBucketRegistry.Segment segment = new LocalTokenBucketRegistry.Segment(16);
+        assertThat(segment.tryConsume(1, 2, 1, PERIOD, 1, 0)).isTrue();
+        assertThat(segment.tryConsume(1, 2, 1, PERIOD, 1, 0)).isTrue();
+        assertThat(segment.tryConsume(1, 2, 1, PERIOD, 1, PERIOD - 1)).isFalse();
+        assertThat(segment.tryConsume(1, 2, 1, PERIOD, 1, PERIOD)).isTrue();
+        assertThat(segment.tryConsume(1, 2, 1, PERIOD, 1, PERIOD)).isFalse();
+    }
+
+    @Test
+    void removalShiftsWrappedClusterBack() {
+        LocalTokenBucketRegistry.Segment segment = new LocalTokenBucketRegistry.Segment(12);
+        // 16 slots: 14, 30 and 46 share home slot 14, 15 starts at slot 15; the cluster wraps to slot 1
+        segment.tryConsume(14, 1, 1, PERIOD, 1, 100);
+        segment.tryConsume(30, 1, 1, PERIOD, 1, 0);
+        segment.tryConsume(46, 1, 1, PERIOD, 1, 100);
+        segment.tryConsume(15, 1, 1, PERIOD, 1, 100);
+
+        assertThat(segment.evictIdle(100, 50)).isEqualTo(1);
+
+        assertThat(segment.find(30)).isNegative();
+        for(long hash : new long[]{14, 46, 15}){
+            assertThat(segment.find(hash)).isNotNegative();
+            // Still present with its bucket drained, not re-created full
+            assertThat(segment.tryConsume(hash, 1, 1, PERIOD, 1, 100)).isFalse();
+        }
+        assertThat(segment.size()).isEqualTo(3);
+    }
+
+    @Test
+    void matchesModelUnderRandomInsertsAndRemovals() {
+        LocalTokenBucketRegistry.Segment segment = new LocalTokenBucketRegistry.Segment(1_000);
+        Map<Long, Long> accessedAt = new HashMap<>();
+        Random random = new Random(42);
+        for(long now = 1; now <= 20_000; now++){
+            // Few distinct low bits so probe sequences collide and wrap
+            long hash = (random.nextInt(2_000) + 1) * 64L + random.nextInt(4);
+            segment.tryConsume(hash, 10, 1, PERIOD, 1, now);
+            accessedAt.put(hash, now);
+            if(now % 500 == 0){
+                long cutoff = now;
+                segment.evictIdle(now, 300);
+                accessedAt.values().removeIf(at -> cutoff - at > 300);
+            }
+        }
+        assertThat(segment.size()).isEqualTo(accessedAt.size());
+        for(long hash : accessedAt.keySet()){
+            assertThat(segment.find(hash)).isNotNegative();
+        }
+    }
+
+    @Test
+    void evictsWhenFull() {
+        LocalTokenBucketRegistry.Segment segment = new LocalTokenBucketRegistry.Segment(8);
+        for(long hash = 1; hash <= 100; hash++){
+            segment.tryConsume(hash, 1, 1, PERIOD, 1, hash);
+        }
+        assertThat(segment.size()).isEqualTo(8);
+        // The newest key always survives the sampled eviction
+        assertThat(segment.find(100)).isNotNegative();
+    }
+
+    @Test
+    void rejectsNonPositiveRefill() {
+        LocalTokenBucketRegistry registry = new LocalTokenBucketRegistry(new LocalBucketProperties());
+        try {
+            assertThatThrownBy(() -> registry.tryConsume("k", 5, 5, 0, 1)).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> registry.tryConsume("k", 5, 0, PERIOD, 1)).isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsInvalidProperties() {
+        LocalBucketProperties properties = new LocalBucketProperties();
+        properties.setSweepIntervalSeconds(0);
+        assertThatThrownBy(() -> new LocalTokenBucketRegistry(properties)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
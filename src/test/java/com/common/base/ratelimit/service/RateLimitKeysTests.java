@@ -0,0 +1,32 @@
+package com.common.base.ratelimit.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.PatternMatchUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitKeysTests {
+
+    @Test
+    void typePatternMatchesEveryHashTaggedKeyOfTheType() {
+        String pattern = RateLimitKeys.patternForType("API");
+        String key = RateLimitKeys.forIdentifier("203.0.113.7", "API");
+
+        assertThat(key).matches("rate_limit:API:\\{[0-9a-f]{32}}");
+        assertThat(PatternMatchUtils.simpleMatch(pattern, key)).isTrue();
+        assertThat(PatternMatchUtils.simpleMatch(pattern, key + ":counter")).isTrue();
+    }
+
+    @Test
+    void typePatternLeavesOtherKeysAlone() {
+        String pattern = RateLimitKeys.patternForType("API");
+
+        assertThat(PatternMatchUtils.simpleMatch(pattern, RateLimitKeys.forIdentifier("203.0.113.7", "API_GENERAL"))).isFalse();
+        assertThat(PatternMatchUtils.simpleMatch(pattern, "rate_limit:stats:API:{" + RateLimitKeys.hashIdentifier("203.0.113.7") + "}")).isFalse();
+    }
+
+    @Test
+    void typePatternEscapesGlobCharacters() {
+        assertThat(RateLimitKeys.patternForType("a*b?[c]")).isEqualTo("rate_limit:a\\*b\\?\\[c\\]:*");
+    }
+}
@@ -0,0 +1,117 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RateLimitStatsProperties;
+import com.common.base.redis.service.AsyncRedisScriptExecutor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class RateLimitStatsRecorderTests {
+
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private final RateLimitStatsRecorder recorder = new RateLimitStatsRecorder(null, new RecordingExecutor(), properties());
+
+    @AfterEach
+    void tearDown() {
+        recorder.shutdown();
+    }
+
+    @Test
+    void decisionsAreCountedLocallyAndFlushedOncePerIdentifier() {
+        // Three blocked, two allowed
+        for(int i=0;i<5;i++) recorder.record("API", "a", i >= 3);
+        recorder.record("API", "b", true);
+        assertThat(calls).isEmpty();
+
+        recorder.flush();
+        assertThat(calls).containsExactlyInAnyOrder("rate_limit:stats:API:{a} 5 3", "rate_limit:stats:API:{b} 1 0");
+    }
+
+    @Test
+    void idleIdentifiersAreNotWrittenAgain() {
+        recorder.record("API", "a", true);
+        recorder.flush();
+        recorder.flush();
+        recorder.flush();
+        assertThat(calls).hasSize(1);
+
+        recorder.record("API", "a", false);
+        recorder.flush();
+        assertThat(calls).containsExactly("rate_limit:stats:API:{a} 1 0", "rate_limit:stats:API:{a} 1 1");
+    }
+
+    @Test
+    void decisionsRecordedDuringFlushesAreNeverLost() throws Exception {
+        int threads = 4;
+        int decisions = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean recording = new AtomicBoolean(true);
+        try {
+            // Idle flushes keep dropping entries while the recorders keep bringing them back
+            Future<?> flushing = pool.submit(() -> {
+                while(recording.get()) recorder.flush();
+            });
+            List<Future<?>> recorders = new ArrayList<>();
+            for(int t=0;t<threads;t++){
+                recorders.add(pool.submit(() -> {
+                    for(int i=0;i<decisions;i++) recorder.record("API", "a", i % 2 == 0);
+                }));
+            }
+            for(Future<?> future : recorders) future.get();
+            recording.set(false);
+            flushing.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        recorder.flush();
+
+        long requests = 0;
+        long blocked = 0;
+        synchronized (calls){
+            for(String call : calls){
+                String[] parts = call.split(" ");
+                requests += Long.parseLong(parts[1]);
+                blocked += Long.parseLong(parts[2]);
+            }
+        }
+        assertThat(requests).isEqualTo((long) threads * decisions);
+        assertThat(blocked).isEqualTo((long) threads * decisions / 2);
+    }
+
+    private static RateLimitStatsProperties properties() {
+        RateLimitStatsProperties properties = new RateLimitStatsProperties();
+        // Flushed by the tests only
+        properties.setFlushIntervalMillis(3_600_000);
+        return properties;
+    }
+
+    private final class RecordingExecutor extends AsyncRedisScriptExecutor {
+
+        @SuppressWarnings("unchecked")
+        RecordingExecutor() {
+            super(mock(StatefulRedisConnection.class));
+        }
+
+        @Override
+        public <T> CompletableFuture<T> execute(RedisScript<?> script, ScriptOutputType outputType, String[] keys, byte[]... args) {
+            calls.add(keys[0] + " " + new String(args[0], StandardCharsets.UTF_8) + " " + new String(args[1], StandardCharsets.UTF_8));
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisCircuitBreakerTests {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(properties(true, 10_000));
+        for(int i=0;i<9;i++) breaker.onError();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void opensOnFailureRate() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(properties(true, 10_000));
+        for(int i=0;i<5;i++) breaker.onSuccess(FAST);
+        for(int i=0;i<5;i++) breaker.onError();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.nanosUntilRetry()).isPositive();
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(properties(true, 10_000));
+        for(int i=0;i<5;i++) breaker.onSuccess(FAST);
+        for(int i=0;i<5;i++) breaker.onSuccess(SLOW);
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void failuresSlideOutOfTheWindow() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(properties(true, 10_000));
+        for(int i=0;i<4;i++) breaker.onError();
+        for(int i=0;i<50;i++) breaker.onSuccess(FAST);
+        for(int i=0;i<20;i++) breaker.onError();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenClosesAfterSuccessfulTrials() throws InterruptedException {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(properties(true, 1));
+        for(int i=0;i<10;i++) breaker.onError();
+        Thread.sleep(5);
+
+        for(int i=0;i<3;i++) assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.HALF_OPEN);
+        for(int i=0;i<3;i++) breaker.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedTrialReopens() throws InterruptedException {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(properties(true, 1));
+        for(int i=0;i<10;i++) breaker.onError();
+        Thread.sleep(5);
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onError();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void disabledNeverOpens() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(properties(false, 10_000));
+        for(int i=0;i<100;i++) breaker.onError();
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    private static RateLimitDegradationProperties properties(boolean enabled, long openDurationMillis) {
+        RateLimitDegradationProperties properties = new RateLimitDegradationProperties();
+        properties.setEnabled(enabled);
+        properties.setOpenDurationMillis(openDurationMillis);
+        return properties;
+    }
+}
@@ -0,0 +1,172 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.SlidingWindowProperties;
+import com.common.base.ratelimit.enums.RateLimitType;
+import com.common.base.ratelimit.enums.SlidingWindowAlgorithm;
+import com.common.base.ratelimit.service.RateLimitingService.RateLimitResult;
+import com.common.base.redis.LiveRedis;
+import com.common.base.redis.service.AsyncRedisScriptExecutor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs sliding-window-log.lua and sliding-window-counter.lua against a real Redis, see {@link LiveRedis};
+ * skipped when none is reachable.
+ */
+class SlidingWindowScriptTests {
+
+    private static final String KEY = "rate_limit:sliding:script-test";
+
+    private static final String COUNTER_KEY = KEY + ":counter";
+
+    private static final int HOUR = 3600;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private SlidingWindowRateLimiter limiter;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = LiveRedis.connectOrSkip();
+        redisTemplate = LiveRedis.template(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        if(connectionFactory != null) connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.delete(List.of(KEY, COUNTER_KEY));
+        SlidingWindowProperties properties = new SlidingWindowProperties();
+        properties.getAlgorithms().put(RateLimitType.API_REQUEST, SlidingWindowAlgorithm.COUNTER);
+        limiter = new SlidingWindowRateLimiter(redisTemplate, mock(AsyncRedisScriptExecutor.class), properties);
+    }
+
+    @Test
+    void logAdmitsUpToTheLimitThenWaitsForTheOldestEntry() {
+        for(int remaining = 2; remaining >= 0; remaining--){
+            RateLimitResult result = limiter.check(KEY, 3, 60);
+            assertThat(result.isAllowed()).isTrue();
+            assertThat(result.getRemainingRequests()).isEqualTo(remaining);
+        }
+        RateLimitResult rejected = limiter.check(KEY, 3, 60);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getWaitTimeSeconds()).isBetween(59L, 60L);
+        // Rejected requests are not logged
+        assertThat(redisTemplate.opsForZSet().zCard(KEY)).isEqualTo(3);
+    }
+
+    @Test
+    void logTrimsEntriesThatLeftTheWindow() {
+        long now = LiveRedis.serverTimeMillis(redisTemplate);
+        for(int i = 0; i < 3; i++){
+            redisTemplate.opsForZSet().add(KEY, "old:" + i, now - 61_000 - i);
+        }
+        RateLimitResult result = limiter.check(KEY, 3, 60);
+        assertThat(result.isAllowed()).isTrue();
+        assertThat(result.getRemainingRequests()).isEqualTo(2);
+        assertThat(redisTemplate.opsForZSet().zCard(KEY)).isEqualTo(1);
+    }
+
+    @Test
+    void logKeepsRequestsOfTheSameMillisecondApart() {
+        for(int i = 0; i < 50; i++){
+            assertThat(limiter.check(KEY, 100, 60).isAllowed()).isTrue();
+        }
+        // Without the nonce, requests sharing a millisecond would collapse into one member
+        assertThat(redisTemplate.opsForZSet().zCard(KEY)).isEqualTo(50);
+    }
+
+    @Test
+    void logExpiresWithTheWindow() {
+        limiter.check(KEY, 3, 60);
+        assertThat(redisTemplate.getExpire(KEY, TimeUnit.MILLISECONDS)).isBetween(1L, 60_000L);
+    }
+
+    @Test
+    void counterRejectsAFullWindowUntilItsWeightDecays() {
+        Window window = window(HOUR);
+        seedCounter(window.index, 10, 0);
+
+        RateLimitResult result = counter(10, HOUR);
+        assertThat(result.isAllowed()).isFalse();
+        // Next window, then until this window's weight drops below limit - 1: window / limit into it
+        long retryAfter = window.millis - window.elapsed + window.millis / 10;
+        assertThat(result.getWaitTimeSeconds()).isCloseTo(TimeUnit.MILLISECONDS.toSeconds(retryAfter), within(2L));
+        assertThat(redisTemplate.opsForHash().get(COUNTER_KEY, "c")).isEqualTo("10");
+    }
+
+    @Test
+    void counterWeightsThePreviousWindow() {
+        Window window = window(HOUR);
+        seedCounter(window.index - 1, 10, 0);
+
+        RateLimitResult result = counter(10, HOUR);
+        double estimate = 10.0 * (window.millis - window.elapsed) / window.millis;
+        if(estimate + 1 <= 10){
+            assertThat(result.isAllowed()).isTrue();
+            assertThat(result.getRemainingRequests()).isCloseTo((long) Math.floor(10 - estimate - 1), within(1L));
+            // Rolled over: the old window is now the weighted one
+            assertThat(redisTemplate.opsForHash().entries(COUNTER_KEY))
+                    .containsEntry("w", String.valueOf(window.index)).containsEntry("c", "1").containsEntry("p", "10");
+        } else {
+            assertThat(result.isAllowed()).isFalse();
+            // Until the previous window's weight alone leaves room for one more
+            long retryAfter = window.millis / 10 - window.elapsed;
+            assertThat(result.getWaitTimeSeconds()).isCloseTo(TimeUnit.MILLISECONDS.toSeconds(retryAfter), within(2L));
+        }
+    }
+
+    @Test
+    void counterForgetsWindowsOlderThanThePreviousOne() {
+        Window window = window(HOUR);
+        seedCounter(window.index - 2, 10, 10);
+
+        RateLimitResult result = counter(10, HOUR);
+        assertThat(result.isAllowed()).isTrue();
+        assertThat(result.getRemainingRequests()).isEqualTo(9);
+        assertThat(redisTemplate.opsForHash().entries(COUNTER_KEY))
+                .containsEntry("w", String.valueOf(window.index)).containsEntry("c", "1").containsEntry("p", "0");
+    }
+
+    @Test
+    void counterExpiresAfterTheNextWindow() {
+        Window window = window(HOUR);
+        counter(10, HOUR);
+        long expected = 2 * window.millis - window.elapsed;
+        assertThat(redisTemplate.getExpire(COUNTER_KEY, TimeUnit.MILLISECONDS)).isCloseTo(expected, within(2_000L));
+    }
+
+    private RateLimitResult counter(int maxRequests, int windowSeconds) {
+        return limiter.check(RateLimitType.API_REQUEST, KEY, maxRequests, windowSeconds);
+    }
+
+    private void seedCounter(long index, long current, long previous) {
+        redisTemplate.opsForHash().putAll(COUNTER_KEY, Map.of("w", String.valueOf(index), "c", String.valueOf(current), "p", String.valueOf(previous)));
+    }
+
+    private static Window window(int seconds) {
+        long millis = TimeUnit.SECONDS.toMillis(seconds);
+        long now = LiveRedis.serverTimeMillis(redisTemplate);
+        return new Window(millis, now / millis, now % millis);
+    }
+
+    private record Window(long millis, long index, long elapsed) {
+    }
+}
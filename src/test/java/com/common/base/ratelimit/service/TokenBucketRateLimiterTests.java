@@ -0,0 +1,105 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RateLimitDegradationProperties;
+import com.common.base.ratelimit.configuration.RedisBucketProperties;
+import com.common.base.ratelimit.enums.DegradedPolicy;
+import com.common.base.ratelimit.metrics.RateLimitMetrics;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.BucketProxy;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.distributed.proxy.AsyncProxyManager;
+import io.github.bucket4j.distributed.proxy.RemoteAsyncBucketBuilder;
+import io.github.bucket4j.distributed.proxy.RemoteBucketBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenBucketRateLimiterTests {
+
+    private final BucketProxy proxy = mock(BucketProxy.class);
+
+    private final ProxyManager<String> proxyManager = mockProxyManager();
+
+    private final RateLimitDegradationProperties degradation = new RateLimitDegradationProperties();
+
+    @BeforeEach
+    void setUp() {
+        when(proxy.tryConsumeAndReturnRemaining(anyLong())).thenThrow(new IllegalStateException("redis down"));
+    }
+
+    @Test
+    void disabledDegradationRethrowsEveryError() {
+        degradation.setEnabled(false);
+        TokenBucketRateLimiter limiter = limiter();
+
+        // Well past the breaker's minimum calls: nothing may open it and answer without Redis
+        for(int i=0;i<50;i++){
+            assertThatThrownBy(() -> limiter.tryConsume("k", "API_GENERAL")).hasMessage("redis down");
+        }
+        verify(proxy, times(50)).tryConsumeAndReturnRemaining(1);
+    }
+
+    @Test
+    void enabledDegradationOpensBreakerAndAppliesPolicy() {
+        degradation.setDefaultPolicy(DegradedPolicy.FAIL_CLOSED);
+        TokenBucketRateLimiter limiter = limiter();
+
+        for(int i=0;i<50;i++){
+            assertThat(limiter.tryConsume("k", "API_GENERAL").isConsumed()).isFalse();
+        }
+        // Opened after the minimum number of calls, later checks no longer reach Redis
+        verify(proxy, times(degradation.getMinimumCalls())).tryConsumeAndReturnRemaining(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void synchronousAsyncFailureReleasesHalfOpenTrialPermit() {
+        degradation.setDefaultPolicy(DegradedPolicy.FAIL_CLOSED);
+        degradation.setOpenDurationMillis(0);
+        AsyncProxyManager<String> asyncProxyManager = mock(AsyncProxyManager.class);
+        RemoteAsyncBucketBuilder<String> asyncBuilder = mock(RemoteAsyncBucketBuilder.class);
+        when(proxyManager.isAsyncModeSupported()).thenReturn(true);
+        when(proxyManager.asAsync()).thenReturn(asyncProxyManager);
+        when(asyncProxyManager.builder()).thenReturn(asyncBuilder);
+        when(asyncBuilder.build(anyString(), any(Supplier.class))).thenThrow(new IllegalStateException("redis down"));
+        TokenBucketRateLimiter limiter = limiter();
+        for(int i=0;i<degradation.getMinimumCalls();i++){
+            limiter.tryConsume("k", "API_GENERAL");
+        }
+        assertThat(limiter.circuitBreaker().getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+
+        // Each failed trial reopens the breaker; a leaked permit would exhaust the trials and stop reaching Redis
+        int calls = degradation.getHalfOpenTrialCalls() * 3;
+        for(int i=0;i<calls;i++){
+            assertThat(limiter.tryConsumeAsync("k", "API_GENERAL").join().isConsumed()).isFalse();
+        }
+        verify(asyncBuilder, times(calls)).build(anyString(), any(Supplier.class));
+        assertThat(limiter.circuitBreaker().getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    private TokenBucketRateLimiter limiter() {
+        return new TokenBucketRateLimiter(proxyManager, new RedisBucketProperties(), degradation,
+                new RateLimitMetrics(new SimpleMeterRegistry(), false));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProxyManager<String> mockProxyManager() {
+        ProxyManager<String> manager = mock(ProxyManager.class);
+        RemoteBucketBuilder<String> builder = mock(RemoteBucketBuilder.class);
+        when(manager.builder()).thenReturn(builder);
+        when(builder.build(anyString(), any(BucketConfiguration.class))).thenReturn(proxy);
+        return manager;
+    }
+}
@@ -0,0 +1,70 @@
+package com.common.base.ratelimit.service;
+
+import com.common.base.ratelimit.configuration.RedisBucketProperties;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenLeaseManagerTests {
+
+    private final BucketConfiguration config = BucketConfiguration.builder()
+            .addLimit(Bandwidth.builder().capacity(100).refillIntervally(100, Duration.ofHours(1)).build())
+            .build();
+
+    private final Bucket bucket = Bucket.builder()
+            .addLimit(Bandwidth.builder().capacity(100).refillIntervally(100, Duration.ofHours(1)).build())
+            .build();
+
+    private TokenLeaseManager manager;
+
+    @AfterEach
+    void tearDown() {
+        if(manager != null) manager.close();
+    }
+
+    @Test
+    void idleKeyIsDroppedAndItsTokensReturned() throws InterruptedException {
+        manager = new TokenLeaseManager(leasing(20, 10));
+        for(int i=0;i<5;i++){
+            assertThat(manager.tryConsume("idle", bucket, config).isConsumed()).isTrue();
+        }
+        assertThat(bucket.getAvailableTokens()).isLessThan(95);
+
+        awaitSize(0);
+        assertThat(bucket.getAvailableTokens()).isEqualTo(95);
+    }
+
+    @Test
+    void activeKeyKeepsItsEntry() throws InterruptedException {
+        manager = new TokenLeaseManager(leasing(5, 5));
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        while (System.nanoTime() - end < 0){
+            manager.tryConsume("busy", bucket, config);
+            assertThat(manager.size()).isEqualTo(1);
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitSize(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (manager.size() != expected && System.nanoTime() - deadline < 0){
+            Thread.sleep(5);
+        }
+        assertThat(manager.size()).isEqualTo(expected);
+    }
+
+    private static RedisBucketProperties.Leasing leasing(long leaseTtlMillis, long sweepIntervalMillis) {
+        RedisBucketProperties.Leasing leasing = new RedisBucketProperties.Leasing();
+        leasing.setEnabled(true);
+        leasing.setLeaseTtlMillis(leaseTtlMillis);
+        leasing.setSweepIntervalMillis(sweepIntervalMillis);
+        return leasing;
+    }
+}
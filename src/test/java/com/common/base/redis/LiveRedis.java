@@ -0,0 +1,57 @@
+package com.common.base.redis;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+/**
+ * Connection to the Redis at SPRING_DATA_REDIS_HOST/PORT (localhost:6379 by default) for tests that
+ * run scripts or commands against a real server; the calling test is skipped when none is reachable.
+ */
+public final class LiveRedis {
+
+    private LiveRedis() {
+    }
+
+    public static LettuceConnectionFactory connectOrSkip() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getenv().getOrDefault("SPRING_DATA_REDIS_HOST", "localhost"),
+                Integer.parseInt(System.getenv().getOrDefault("SPRING_DATA_REDIS_PORT", "6379")));
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        boolean reachable;
+        try {
+            reachable = "PONG".equals(connectionFactory.getConnection().ping());
+        } catch (RuntimeException e) {
+            reachable = false;
+        }
+        if(!reachable) connectionFactory.destroy();
+        assumeThat(reachable).as("Redis reachable").isTrue();
+        return connectionFactory;
+    }
+
+    /**
+     * Template with string keys and values, so counters and members can be read back as written.
+     */
+    public static RedisTemplate<String, Object> template(LettuceConnectionFactory connectionFactory) {
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+        return redisTemplate;
+    }
+
+    /**
+     * The server clock in milliseconds, the one the scripts read with TIME.
+     */
+    public static long serverTimeMillis(RedisTemplate<String, Object> redisTemplate) {
+        Long time = redisTemplate.execute(connection -> connection.serverCommands().time(), true);
+        return time != null ? time : System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,59 @@
+package com.common.base.redis.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JitteredTtlFunctionTests {
+
+    @Test
+    void ttlStaysWithinTheJitterBelowTheConfiguredValue() {
+        Duration ttl = Duration.ofSeconds(100);
+        Set<Duration> seen = new HashSet<>();
+        for(int i = 0; i < 1_000; i++){
+            Duration jittered = JitteredTtlFunction.apply(ttl, 0.1);
+            assertThat(jittered).isBetween(Duration.ofSeconds(90), ttl);
+            seen.add(jittered);
+        }
+        // Spread out, not one shortened value
+        assertThat(seen.size()).isGreaterThan(100);
+    }
+
+    @Test
+    void noJitterKeepsTheTtl() {
+        Duration ttl = Duration.ofSeconds(100);
+        assertThat(JitteredTtlFunction.apply(ttl, 0)).isSameAs(ttl);
+        assertThat(JitteredTtlFunction.apply(ttl, -0.5)).isSameAs(ttl);
+        assertThat(JitteredTtlFunction.apply(ttl, Double.NaN)).isSameAs(ttl);
+    }
+
+    @Test
+    void persistentAndNegativeTtlsAreLeftAlone() {
+        assertThat(JitteredTtlFunction.apply(Duration.ZERO, 0.5)).isEqualTo(Duration.ZERO);
+        assertThat(JitteredTtlFunction.apply(Duration.ofSeconds(-1), 0.5)).isEqualTo(Duration.ofSeconds(-1));
+    }
+
+    @Test
+    void jitterIsClampedSoTheTtlNeverReachesZero() {
+        for(int i = 0; i < 1_000; i++){
+            assertThat(JitteredTtlFunction.apply(Duration.ofMillis(2), 5)).isPositive();
+            assertThat(JitteredTtlFunction.apply(Duration.ofSeconds(10), 1)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        }
+    }
+
+    @Test
+    void ttlFunctionDrawsPerEntry() {
+        JitteredTtlFunction function = new JitteredTtlFunction(Duration.ofMinutes(10), 0.2);
+        Set<Duration> seen = new HashSet<>();
+        for(int i = 0; i < 100; i++){
+            Duration ttl = function.getTimeToLive("k" + i, "v");
+            assertThat(ttl).isBetween(Duration.ofMinutes(8), Duration.ofMinutes(10));
+            seen.add(ttl);
+        }
+        assertThat(seen.size()).isGreaterThan(1);
+    }
+}
@@ -0,0 +1,120 @@
+package com.common.base.redis.cache;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.BaseRedisAsyncCommands;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TwoTierCacheTests {
+
+    private final AtomicReference<Runnable> duringRead = new AtomicReference<>();
+
+    private TwoTierCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        BaseRedisAsyncCommands<String, byte[]> publisher = mock(BaseRedisAsyncCommands.class);
+        when(publisher.publish(any(), any())).thenReturn(mock(RedisFuture.class));
+        // Stands in for Redis; runs the hook between the L2 read and the L1 fill
+        ConcurrentMapCache redis = new ConcurrentMapCache("users") {
+            @Override
+            public ValueWrapper get(Object key) {
+                ValueWrapper wrapper = super.get(key);
+                Runnable hook = duringRead.getAndSet(null);
+                if(hook != null) hook.run();
+                return wrapper;
+            }
+        };
+        RedisCacheProperties.NearCache properties = new RedisCacheProperties.NearCache();
+        TwoTierCacheManager manager = new TwoTierCacheManager(new ConcurrentMapCacheManager(), properties, publisher, "invalidation");
+        cache = new TwoTierCache(redis, com.github.benmanes.caffeine.cache.Caffeine.newBuilder().<String, Cache.ValueWrapper>build(), manager);
+        redis.put("k", "v1");
+    }
+
+    @Test
+    void readFillsNearCache() {
+        assertThat(cache.get("k").get()).isEqualTo("v1");
+        assertThat(cache.getLocal("k").get()).isEqualTo("v1");
+    }
+
+    @Test
+    void invalidationDuringReadKeepsValueOutOfNearCache() {
+        duringRead.set(() -> cache.evictLocal("k"));
+        assertThat(cache.get("k").get()).isEqualTo("v1");
+        assertThat(cache.getLocal("k")).isNull();
+    }
+
+    @Test
+    void clearDuringReadKeepsValueOutOfNearCache() {
+        duringRead.set(cache::clearLocal);
+        cache.get("k");
+        assertThat(cache.getLocal("k")).isNull();
+    }
+
+    @Test
+    void staleStampIsRejected() {
+        long stamp = cache.localStamp("k");
+        cache.evictLocal("k");
+        cache.putLocal("k", () -> "old", stamp);
+        assertThat(cache.getLocal("k")).isNull();
+        cache.putLocal("k", () -> "new", cache.localStamp("k"));
+        assertThat(cache.getLocal("k").get()).isEqualTo("new");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void manyKeysAreInvalidatedWithOneMessage() {
+        BaseRedisAsyncCommands<String, byte[]> publisher = mock(BaseRedisAsyncCommands.class);
+        when(publisher.publish(any(), any())).thenReturn(mock(RedisFuture.class));
+        RedisCacheProperties.NearCache properties = new RedisCacheProperties.NearCache();
+        TwoTierCacheManager sender = new TwoTierCacheManager(new ConcurrentMapCacheManager(), properties, publisher, "invalidation");
+        TwoTierCacheManager receiver = new TwoTierCacheManager(new ConcurrentMapCacheManager(), properties, publisher, "invalidation");
+        TwoTierCache local = (TwoTierCache) sender.getCache("users");
+        TwoTierCache remote = (TwoTierCache) receiver.getCache("users");
+        for(String key : List.of("a", "b", "c")){
+            local.put(key, key);
+            remote.put(key, key);
+            local.get(key);
+            remote.get(key);
+        }
+        clearInvocations(publisher);
+
+        local.invalidateAllEverywhere(List.of("a", "b"));
+
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(publisher, times(1)).publish(eq("invalidation"), body.capture());
+        assertThat(local.getLocal("a")).isNull();
+        assertThat(local.getLocal("b")).isNull();
+
+        receiver.onMessage(new DefaultMessage("invalidation".getBytes(StandardCharsets.UTF_8), body.getValue()), null);
+        assertThat(remote.getLocal("a")).isNull();
+        assertThat(remote.getLocal("b")).isNull();
+        assertThat(remote.getLocal("c").get()).isEqualTo("c");
+
+        // The sender ignores its own message
+        local.get("a");
+        sender.onMessage(new DefaultMessage("invalidation".getBytes(StandardCharsets.UTF_8), body.getValue()), null);
+        assertThat(local.getLocal("a").get()).isEqualTo("a");
+    }
+}
@@ -0,0 +1,113 @@
+package com.common.base.redis.serializer;
+
+import com.common.base.redis.configuration.RedisSerializationProperties;
+import com.common.base.redis.serializer.SmileRedisSerializerTests.UserDto;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressingRedisSerializerTests {
+
+    private final RedisValueSerializers serializers = serializers();
+
+    @ParameterizedTest
+    @EnumSource(ValueCodec.class)
+    void valuesRoundTripRawAndCompressed(ValueCodec codec) {
+        for(Compression compression : List.of(Compression.DEFLATE, Compression.ZSTD)){
+            RedisSerializer<Object> serializer = serializers.get(codec, compression, 2048);
+            UserDto small = new UserDto(1);
+            byte[] stored = serializer.serialize(small);
+            assertThat(stored[0]).isEqualTo(Compression.RAW_HEADER);
+            assertThat(serializer.deserialize(stored)).isEqualTo(small);
+
+            List<UserDto> page = page(200);
+            stored = serializer.serialize(page);
+            assertThat(stored[0]).isEqualTo(compression.header());
+            assertThat(stored.length * 4).isLessThan(serializers.get(codec).serialize(page).length);
+            assertThat(serializer.deserialize(stored)).isEqualTo(page);
+        }
+    }
+
+    @Test
+    void rawSmilePayloadIsTheCodecOutputBehindTheHeader() {
+        RedisSerializer<Object> serializer = serializers.get(ValueCodec.SMILE, Compression.DEFLATE, 1024);
+        byte[] plain = serializers.get(ValueCodec.SMILE).serialize(new UserDto(1));
+        byte[] stored = serializer.serialize(new UserDto(1));
+        assertThat(stored).hasSize(plain.length + 1);
+        assertThat(stored).endsWith(plain);
+        assertThat(serializer.deserialize(serializer.serialize(NullValue.INSTANCE))).isSameAs(NullValue.INSTANCE);
+        assertThat(serializer.deserialize(serializer.serialize(null))).isNull();
+    }
+
+    @Test
+    void pooledBuffersDoNotLeakBetweenReads() {
+        RedisSerializer<Object> serializer = serializers.get(ValueCodec.SMILE, Compression.DEFLATE, 64);
+        byte[] large = serializer.serialize(page(300));
+        byte[] smaller = serializer.serialize(page(20));
+        for(int i = 0; i < 10; i++){
+            assertThat(serializer.deserialize(large)).isEqualTo(page(300));
+            assertThat(serializer.deserialize(smaller)).isEqualTo(page(20));
+        }
+    }
+
+    @Test
+    void readsValuesWrittenWithAnotherCompressionOrNone() {
+        RedisSerializer<Object> deflate = serializers.get(ValueCodec.SMILE, Compression.DEFLATE, 64);
+        RedisSerializer<Object> zstd = serializers.get(ValueCodec.SMILE, Compression.ZSTD, 64);
+        assertThat(deflate.deserialize(zstd.serialize(page(50)))).isEqualTo(page(50));
+        assertThat(deflate.deserialize(serializers.get(ValueCodec.SMILE).serialize(page(50)))).isEqualTo(page(50));
+    }
+
+    @Test
+    void rejectsLengthsAboveTheLimitsBeforeAllocating() {
+        RedisSerializer<Object> serializer = serializers.get(ValueCodec.SMILE, Compression.DEFLATE, 64);
+        byte[] stored = serializer.serialize(page(50));
+
+        byte[] huge = stored.clone();
+        huge[1] = 0x7f;
+        assertThatThrownBy(() -> serializer.deserialize(huge)).isInstanceOf(SerializationException.class)
+                .hasMessageContaining("Invalid uncompressed length");
+
+        // Below the absolute cap, but far more than the compressed bytes can expand to
+        int claimed = (stored.length - 5) * CompressingRedisSerializer.MAX_RATIO + 1;
+        byte[] inflated = stored.clone();
+        inflated[1] = (byte) (claimed >>> 24);
+        inflated[2] = (byte) (claimed >>> 16);
+        inflated[3] = (byte) (claimed >>> 8);
+        inflated[4] = (byte) claimed;
+        assertThatThrownBy(() -> serializer.deserialize(inflated)).isInstanceOf(SerializationException.class)
+                .hasMessageContaining("Invalid uncompressed length");
+    }
+
+    @Test
+    void valuesThatWouldExceedTheRatioAreStoredRaw() {
+        RedisSerializer<Object> serializer = serializers.get(ValueCodec.JDK, Compression.ZSTD, 64);
+        // Zstd shrinks a run of zeros far beyond what reads accept
+        byte[] zeros = new byte[4 << 20];
+        byte[] stored = serializer.serialize(zeros);
+        assertThat(stored[0]).isEqualTo(Compression.RAW_HEADER);
+        assertThat(serializer.deserialize(stored)).isEqualTo(zeros);
+    }
+
+    private static List<UserDto> page(int size) {
+        List<UserDto> page = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) page.add(new UserDto(i));
+        return page;
+    }
+
+    private static RedisValueSerializers serializers() {
+        RedisSerializationProperties properties = new RedisSerializationProperties();
+        properties.getTypes().put(TypeIdRegistry.FIRST_USER_ID, UserDto.class.getName());
+        return new RedisValueSerializers(JsonMapper.builder().findAndAddModules().build(), properties);
+    }
+}
@@ -0,0 +1,119 @@
+package com.common.base.redis.serializer;
+
+import com.common.base.redis.configuration.RedisSerializationProperties;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SmileRedisSerializerTests {
+
+    private static final String TEST_PACKAGE = SmileRedisSerializerTests.class.getPackageName();
+
+    @Test
+    void registeredTypeRoundTripsWithoutAllowedPackages() {
+        RedisSerializationProperties properties = new RedisSerializationProperties();
+        properties.getTypes().put(TypeIdRegistry.FIRST_USER_ID, UserDto.class.getName());
+        RedisSerializer<Object> serializer = serializers(properties).get(ValueCodec.SMILE);
+
+        UserDto user = new UserDto(7);
+        assertThat(serializer.deserialize(serializer.serialize(user))).isEqualTo(user);
+    }
+
+    @Test
+    void unregisteredTypeIsOnlyReadFromAllowedPackages() {
+        byte[] payload = smile(List.of(TEST_PACKAGE)).serialize(new UserDto(7));
+
+        assertThat(smile(List.of(TEST_PACKAGE)).deserialize(payload)).isEqualTo(new UserDto(7));
+        assertThatThrownBy(() -> smile(List.of("com.example")).deserialize(payload)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void jdkCollectionsAndTimeTypesNeedNoRegistration() {
+        RedisSerializer<Object> serializer = smile(List.of());
+        ArrayDeque<Object> deque = new ArrayDeque<>(List.of("a", Instant.ofEpochSecond(1)));
+
+        Object read = serializer.deserialize(serializer.serialize(deque));
+        assertThat(read).isInstanceOf(ArrayDeque.class);
+        assertThat(new ArrayList<Object>((ArrayDeque<?>) read)).containsExactly("a", Instant.ofEpochSecond(1));
+    }
+
+    @Test
+    void rejectsClassNamesOutsideTheAllowList() throws Exception {
+        Map<String, Object> gadget = new LinkedHashMap<>();
+        gadget.put(RegistryTypeResolverBuilder.TYPE_PROPERTY, "java.util.logging.FileHandler");
+        gadget.put("pattern", "/tmp/x");
+        byte[] payload = new SmileMapper().writeValueAsBytes(gadget);
+
+        assertThatThrownBy(() -> smile(List.of(TEST_PACKAGE)).deserialize(payload)).isInstanceOf(SerializationException.class);
+    }
+
+    // Size comparison behind choosing SMILE: a registered DTO and a list of 20
+    @Test
+    void smileIsTheSmallestCodec() {
+        RedisSerializationProperties properties = new RedisSerializationProperties();
+        properties.getTypes().put(TypeIdRegistry.FIRST_USER_ID, UserDto.class.getName());
+        RedisValueSerializers serializers = serializers(properties);
+        List<UserDto> page = new ArrayList<>();
+        for(int i=0;i<20;i++) page.add(new UserDto(i));
+
+        for(Object value : List.of(new UserDto(42), page)){
+            int jdk = serializers.get(ValueCodec.JDK).serialize(value).length;
+            int json = serializers.get(ValueCodec.JSON).serialize(value).length;
+            int smile = serializers.get(ValueCodec.SMILE).serialize(value).length;
+            assertThat(smile).isLessThan(json).isLessThan(jdk);
+            // At least a third smaller than JSON
+            assertThat(smile * 3).isLessThan(json * 2);
+        }
+    }
+
+    private static RedisSerializer<Object> smile(List<String> allowedPackages) {
+        return new SmileRedisSerializer(new TypeIdRegistry(Map.of(), SmileRedisSerializerTests.class.getClassLoader()), allowedPackages);
+    }
+
+    private static RedisValueSerializers serializers(RedisSerializationProperties properties) {
+        return new RedisValueSerializers(JsonMapper.builder().findAndAddModules().build(), properties);
+    }
+
+    public static class UserDto implements Serializable {
+        public long id;
+        public String name;
+        public String email;
+        public Instant createdAt;
+        public List<String> roles;
+
+        public UserDto() {
+        }
+
+        UserDto(long id) {
+            this.id = id;
+            this.name = "User " + id;
+            this.email = "user" + id + "@example.com";
+            this.createdAt = Instant.ofEpochSecond(1_700_000_000L + id);
+            this.roles = new ArrayList<>(List.of("USER", "READER"));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof UserDto user && user.id == id && user.name.equals(name) && user.email.equals(email)
+                    && user.createdAt.equals(createdAt) && user.roles.equals(roles);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.annotation.CacheableRedis;
+import com.common.base.redis.cache.RefreshableValue;
+import com.common.base.redis.configuration.RedisCacheProperties;
+import com.common.base.redis.metrics.CacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheAspectTests {
+
+    private final RedisCacheService redisCacheService = mock(RedisCacheService.class);
+
+    private final RedisLeaseService redisLeaseService = mock(RedisLeaseService.class);
+
+    private final CacheRefresher cacheRefresher = new CacheRefresher(redisLeaseService, new RedisCacheProperties());
+
+    private final AtomicInteger chainCalls = new AtomicInteger();
+
+    private final Users users = new Users();
+
+    @AfterEach
+    void tearDown() {
+        cacheRefresher.shutdown();
+        MDC.clear();
+    }
+
+    @Test
+    void refreshReloadsThroughTheRestOfTheProxyChain() {
+        long now = System.currentTimeMillis();
+        when(redisCacheService.getCached("users", "42")).thenReturn(new RefreshableValue("cached", now - 1, now + 60_000));
+        when(redisCacheService.getTimeToLive(eq("users"), eq("42"), any())).thenReturn(Duration.ofMinutes(1));
+        when(redisLeaseService.tryAcquire(any(), anyLong())).thenReturn("token");
+
+        MDC.put("requestId", "r-1");
+        assertThat(proxy().find("42")).isEqualTo("cached");
+
+        // Reloaded after the call returned, with its arguments, by whatever advice sits inside the aspect
+        verify(redisCacheService, timeout(5_000)).putWithCustomTtl(eq("users"), eq("42"),
+                argThat(value -> value instanceof RefreshableValue refreshable && "loaded-42".equals(refreshable.getValue())),
+                anyLong(), eq(TimeUnit.MILLISECONDS));
+        assertThat(chainCalls).hasValue(1);
+        assertThat(users.loads).containsExactly("42 with r-1");
+        assertThat(users.threads).doesNotContain(Thread.currentThread());
+    }
+
+    private Users proxy() {
+        CacheAspect aspect = new CacheAspect(redisCacheService, mock(CacheLoadCoordinator.class),
+                new CacheMetrics(new SimpleMeterRegistry(), false), cacheRefresher);
+        AspectJProxyFactory factory = new AspectJProxyFactory(users);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        factory.addAdvice((MethodInterceptor) invocation -> {
+            chainCalls.incrementAndGet();
+            return invocation.proceed();
+        });
+        return factory.getProxy();
+    }
+
+    static class Users {
+
+        final List<String> loads = new CopyOnWriteArrayList<>();
+
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        @CacheableRedis(cacheName = "users", key = "#id", refreshAhead = 0.5)
+        public String find(String id) {
+            loads.add(id + " with " + MDC.get("requestId"));
+            threads.add(Thread.currentThread());
+            return "loaded-" + id;
+        }
+    }
+}
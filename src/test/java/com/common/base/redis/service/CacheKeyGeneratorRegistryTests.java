@@ -0,0 +1,68 @@
+package com.common.base.redis.service;
+
+import org.aspectj.lang.reflect.MethodSignature;
+import org.aspectj.runtime.reflect.Factory;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.SpelEvaluationException;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheKeyGeneratorRegistryTests {
+
+    private final CacheKeyGeneratorRegistry registry = new CacheKeyGeneratorRegistry();
+
+    private final MethodSignature signature = (MethodSignature) new Factory("CacheKeyGeneratorRegistryTests.java", Target.class)
+            .makeMethodSig(1, "find", Target.class, new Class[]{Long.class, User.class, TimeUnit.class},
+                    new String[]{"userId", "user", "unit"}, new Class[0], User.class);
+
+    @Test
+    void emptyExpressionUsesMethodName() {
+        assertThat(generate("", 1L, null, null)).isEqualTo("find");
+    }
+
+    @Test
+    void concatenationMatchesSpel() {
+        User user = new User("a@example.com");
+        assertThat(generate("'user:' + #userId + ':' + #user.email", 42L, user, null)).isEqualTo("user:42:a@example.com");
+        assertThat(generate("'user:' + #userId + ':' + #unit", null, user, TimeUnit.SECONDS)).isEqualTo("user:null:SECONDS");
+    }
+
+    @Test
+    void concatenationKeepsParenthesizedSum() {
+        assertThat(generate("'n:' + (#userId + 1)", 41L, null, null)).isEqualTo("n:42");
+    }
+
+    @Test
+    void propertyOfNullArgumentFailsAsInSpel() {
+        assertThatThrownBy(() -> generate("'user:' + #user.email", 1L, null, null)).isInstanceOf(SpelEvaluationException.class);
+        assertThatThrownBy(() -> generate("#user.email", 1L, null, null)).isInstanceOf(SpelEvaluationException.class);
+    }
+
+    @Test
+    void generalExpressionBindsArgumentsPerCall() {
+        String expression = "#user.email.toUpperCase() + '-' + #userId";
+        assertThat(generate(expression, 1L, new User("a"), null)).isEqualTo("A-1");
+        assertThat(generate(expression, 2L, new User("b"), null)).isEqualTo("B-2");
+    }
+
+    @Test
+    void assignedVariablesStayInTheirCall() {
+        assertThat(generate("(#userId = 7) + ''", 1L, null, null)).isEqualTo("7");
+        assertThat(generate("#userId + ''", 1L, null, null)).isEqualTo("1");
+    }
+
+    private String generate(String expression, Long userId, User user, TimeUnit unit) {
+        return registry.generate(signature, expression, new Object[]{userId, user, unit});
+    }
+
+    static class Target {
+        User find(Long userId, User user, TimeUnit unit) {
+            return user;
+        }
+    }
+
+    record User(String email) { }
+}
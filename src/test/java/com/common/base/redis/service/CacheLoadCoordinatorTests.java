@@ -0,0 +1,111 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.annotation.CacheableRedis;
+import com.common.base.redis.configuration.RedisCacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheLoadCoordinatorTests {
+
+    private final RedisCacheService redisCacheService = mock(RedisCacheService.class);
+
+    private final RedisLeaseService redisLeaseService = mock(RedisLeaseService.class);
+
+    private final CacheLoadCoordinator coordinator = new CacheLoadCoordinator(redisCacheService, redisLeaseService, new RedisCacheProperties());
+
+    @CacheableRedis(cacheName = "users", waitBudgetMillis = 50)
+    void singleFlight() { }
+
+    @CacheableRedis(cacheName = "users", singleFlight = false, distributedLock = true, waitBudgetMillis = 30, leaseTimeoutMillis = 5000)
+    void distributed() { }
+
+    @Test
+    void onlyOneWaiterTakesOverAStuckLoad() throws Exception {
+        CacheableRedis annotation = annotation("singleFlight");
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+        try {
+            Future<Object> leader = executor.submit(() -> load(annotation, () -> {
+                loads.incrementAndGet();
+                release.await();
+                return "leader";
+            }));
+            // Let the leader register its flight
+            while (loads.get() == 0) Thread.onSpinWait();
+
+            List<Future<Object>> waiters = new ArrayList<>();
+            for(int i=0;i<8;i++){
+                waiters.add(executor.submit(() -> load(annotation, () -> {
+                    loads.incrementAndGet();
+                    return "takeover";
+                })));
+            }
+            for(Future<Object> waiter : waiters){
+                assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo("takeover");
+            }
+            assertThat(loads.get()).isEqualTo(2);
+            release.countDown();
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("leader");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void waiterTakesOverLeaseOnceHolderReleasesIt() throws Throwable {
+        when(redisLeaseService.tryAcquire(anyString(), anyLong())).thenReturn(null, null, null, "token");
+        AtomicInteger loads = new AtomicInteger();
+
+        Object result = coordinator.load("users", "1", annotation("distributed"), () -> {
+            loads.incrementAndGet();
+            return "loaded";
+        });
+
+        assertThat(result).isEqualTo("loaded");
+        assertThat(loads.get()).isEqualTo(1);
+        verify(redisLeaseService).release(anyString(), eq("token"));
+    }
+
+    @Test
+    void waiterServesValueFilledByLeaseHolder() throws Throwable {
+        when(redisLeaseService.tryAcquire(anyString(), anyLong())).thenReturn(null);
+        when(redisCacheService.get("users", "1", Object.class)).thenReturn(null, null, null, null, "filled");
+
+        Object result = coordinator.load("users", "1", annotation("distributed"), () -> {
+            throw new AssertionError("must not load while the lease is held");
+        });
+
+        assertThat(result).isEqualTo("filled");
+    }
+
+    private Object load(CacheableRedis annotation, CacheLoadCoordinator.Loader loader) throws Exception {
+        try {
+            return coordinator.load("users", "1", annotation, loader);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static CacheableRedis annotation(String method) throws NoSuchMethodException {
+        return CacheLoadCoordinatorTests.class.getDeclaredMethod(method).getAnnotation(CacheableRedis.class);
+    }
+}
@@ -0,0 +1,64 @@
+package com.common.base.redis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchTests {
+
+    @Test
+    void incrementReturnsTheEstimateIncludingTheRead() {
+        CountMinSketch sketch = new CountMinSketch(1024);
+        long hash = CountMinSketch.hash("users", "42");
+        for(int i = 1; i <= 5; i++){
+            assertThat(sketch.increment(hash)).isEqualTo(i);
+        }
+        assertThat(sketch.estimate(hash)).isEqualTo(5);
+        assertThat(sketch.estimate(CountMinSketch.hash("users", "43"))).isZero();
+    }
+
+    @Test
+    void estimatesNeverUndercount() {
+        CountMinSketch sketch = new CountMinSketch(256);
+        Random random = new Random(7);
+        Map<String, Integer> counts = new HashMap<>();
+        for(int i = 0; i < 20_000; i++){
+            // Skewed: a few keys get most of the reads
+            String key = String.valueOf(random.nextInt(random.nextBoolean() ? 10 : 2_000));
+            counts.merge(key, 1, Integer::sum);
+            sketch.increment(CountMinSketch.hash("users", key));
+        }
+        long overcount = 0;
+        for(Map.Entry<String, Integer> entry : counts.entrySet()){
+            long estimate = sketch.estimate(CountMinSketch.hash("users", entry.getKey()));
+            assertThat(estimate).isGreaterThanOrEqualTo(entry.getValue());
+            overcount += estimate - entry.getValue();
+        }
+        // Width 256 over 20k reads: the average error stays within total / width
+        assertThat(overcount / counts.size()).isLessThanOrEqualTo(20_000 / 256);
+    }
+
+    @Test
+    void readsAgeOutAfterTwoRotations() {
+        CountMinSketch sketch = new CountMinSketch(64);
+        long hash = CountMinSketch.hash("users", "42");
+        sketch.increment(hash);
+        sketch.increment(hash);
+        sketch.rotate();
+        assertThat(sketch.estimate(hash)).isEqualTo(2);
+        assertThat(sketch.increment(hash)).isEqualTo(3);
+        sketch.rotate();
+        assertThat(sketch.estimate(hash)).isEqualTo(1);
+        sketch.rotate();
+        assertThat(sketch.estimate(hash)).isZero();
+    }
+
+    @Test
+    void cacheNameIsPartOfTheHash() {
+        assertThat(CountMinSketch.hash("users", "42")).isNotEqualTo(CountMinSketch.hash("orders", "42"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTests {
+
+    private HotKeyDetector detector;
+
+    @AfterEach
+    void tearDown() {
+        if(detector != null) detector.shutdown();
+    }
+
+    private HotKeyDetector detector(boolean enabled, int topK, long promotionTtlMillis) {
+        RedisCacheProperties properties = new RedisCacheProperties();
+        RedisCacheProperties.HotKeys hotKeys = properties.getHotKeys();
+        hotKeys.setEnabled(enabled);
+        hotKeys.setThreshold(3);
+        hotKeys.setTopK(topK);
+        hotKeys.setPromotionTtlMillis(promotionTtlMillis);
+        // Long enough that no rotation runs during a test
+        hotKeys.setWindowSeconds(600);
+        detector = new HotKeyDetector(properties);
+        return detector;
+    }
+
+    private static HotKeyDetector.Entry read(HotKeyDetector detector, String key, int times) {
+        HotKeyDetector.Entry entry = null;
+        for(int i = 0; i < times; i++){
+            entry = detector.record("users", key);
+        }
+        return entry;
+    }
+
+    @Test
+    void disabledDetectorTracksNothing() {
+        HotKeyDetector detector = detector(false, 4, 1000);
+        assertThat(read(detector, "a", 10)).isNull();
+        assertThat(detector.getHotKeys()).isEmpty();
+    }
+
+    @Test
+    void keyBecomesHotAtTheThreshold() {
+        HotKeyDetector detector = detector(true, 4, 1000);
+        assertThat(read(detector, "a", 2)).isNull();
+        assertThat(detector.record("users", "a")).isNotNull();
+        assertThat(detector.getHotKeys()).containsExactly(new HotKeyDetector.HotKey("users", "a", 3));
+    }
+
+    @Test
+    void hotterKeyTakesTheSlotOfTheColdest() {
+        HotKeyDetector detector = detector(true, 2, 1000);
+        read(detector, "a", 5);
+        read(detector, "b", 4);
+        // Full, and not hotter than the coldest hot key
+        assertThat(read(detector, "c", 4)).isNull();
+        assertThat(read(detector, "c", 2)).isNotNull();
+        assertThat(detector.getHotKeys()).extracting(HotKeyDetector.HotKey::key).containsExactly("c", "a");
+    }
+
+    @Test
+    void promotedValueIsServedUntilInvalidated() {
+        HotKeyDetector detector = detector(true, 4, 60_000);
+        HotKeyDetector.Entry entry = read(detector, "a", 3);
+        detector.promote(entry, new SimpleValueWrapper("v1"));
+        assertThat(read(detector, "a", 1).promoted().get()).isEqualTo("v1");
+
+        detector.invalidate("users", "a");
+        assertThat(entry.promoted()).isNull();
+
+        detector.promote(entry, new SimpleValueWrapper("v2"));
+        detector.invalidateCache("orders");
+        assertThat(entry.promoted().get()).isEqualTo("v2");
+        detector.invalidateCache("users");
+        assertThat(entry.promoted()).isNull();
+    }
+
+    @Test
+    void promotedValueExpires() {
+        HotKeyDetector detector = detector(true, 4, 0);
+        HotKeyDetector.Entry entry = read(detector, "a", 3);
+        detector.promote(entry, new SimpleValueWrapper("v1"));
+        assertThat(entry.promoted()).isNull();
+    }
+}
@@ -0,0 +1,111 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.LiveRedis;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs SCAN and UNLINK against a real Redis, see {@link LiveRedis}; skipped when none is reachable.
+ */
+class RedisBulkDeleterTests {
+
+    private static final String PREFIX = "bulk-delete-test:";
+
+    private static final String PATTERN = PREFIX + "*";
+
+    private static final String OTHER_KEY = "bulk-delete-other";
+
+    private static final int KEYS = 25;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private RedisBulkDeleter deleter;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = LiveRedis.connectOrSkip();
+        redisTemplate = LiveRedis.template(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        if(connectionFactory != null) connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Batches of 10 unlinked as chunks of 3, so both boundaries fall inside the run
+        deleter = new RedisBulkDeleter(connectionFactory, 10, 3);
+        deleter.deleteByPattern(PATTERN);
+        for(int i = 0; i < KEYS; i++){
+            redisTemplate.opsForValue().set(PREFIX + i, "v");
+        }
+        redisTemplate.opsForValue().set(OTHER_KEY, "v");
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleter.shutdown();
+        redisTemplate.delete(OTHER_KEY);
+        deleter.deleteByPattern(PATTERN);
+    }
+
+    @Test
+    void asyncDeletionReportsEveryBatchAndCompletesWithTheCount() throws Exception {
+        List<Long> progress = new CopyOnWriteArrayList<>();
+        BulkDeletion deletion = deleter.deleteByPatternAsync(PATTERN, batch -> progress.add(batch.getScanned()));
+
+        assertThat(deletion.completion().get(10, TimeUnit.SECONDS)).isEqualTo(KEYS);
+        assertThat(deletion.isDone()).isTrue();
+        assertThat(deletion.getScanned()).isEqualTo(KEYS);
+        assertThat(deletion.getDeleted()).isEqualTo(KEYS);
+        assertThat(progress).containsExactly(10L, 20L, 25L);
+        assertThat(matchingKeys()).isEmpty();
+        assertThat(redisTemplate.hasKey(OTHER_KEY)).isTrue();
+    }
+
+    @Test
+    void cancelledDeletionStopsBeforeItsNextBatch() throws Exception {
+        BulkDeletion deletion = deleter.deleteByPatternAsync(PATTERN, BulkDeletion::cancel);
+
+        assertThat(deletion.completion().get(10, TimeUnit.SECONDS)).isEqualTo(10);
+        assertThat(deletion.isCancelled()).isTrue();
+        assertThat(matchingKeys()).hasSize(KEYS - 10);
+    }
+
+    @Test
+    void synchronousDeletionReturnsTheCount() {
+        assertThat(deleter.deleteByPattern(PATTERN)).isEqualTo(KEYS);
+        assertThat(deleter.deleteByPattern(PATTERN)).isZero();
+    }
+
+    @Test
+    void batchStrategyUnlinksOnTheWritersConnection() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            long deleted = deleter.asBatchStrategy().cleanCache(connection, "bulk-delete-test", PATTERN.getBytes(StandardCharsets.UTF_8));
+            assertThat(deleted).isEqualTo(KEYS);
+        }
+        assertThat(matchingKeys()).isEmpty();
+        assertThat(redisTemplate.hasKey(OTHER_KEY)).isTrue();
+    }
+
+    private List<String> matchingKeys() {
+        return IntStream.range(0, KEYS).mapToObj(i -> PREFIX + i).filter(redisTemplate::hasKey).toList();
+    }
+}
@@ -0,0 +1,112 @@
+package com.common.base.redis.service;
+
+import com.common.base.redis.configuration.RedisCacheProperties;
+import com.common.base.redis.metrics.WriteBehindMeters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindQueueTests {
+
+    private final List<Map<String, Object>> written = new CopyOnWriteArrayList<>();
+
+    private WriteBehindQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        if(queue != null) queue.close();
+    }
+
+    private WriteBehindQueue queue(WriteBehindQueue.BatchWriter writer) {
+        return queue(writer, 10);
+    }
+
+    private WriteBehindQueue queue(WriteBehindQueue.BatchWriter writer, long flushIntervalMillis) {
+        RedisCacheProperties.WriteBehind properties = new RedisCacheProperties.WriteBehind();
+        properties.setFlushSize(100);
+        properties.setFlushIntervalMillis(flushIntervalMillis);
+        queue = new WriteBehindQueue(properties, writer, WriteBehindMeters.NOOP);
+        return queue;
+    }
+
+    @Test
+    void pendingPutAnswersReadsUntilItsWriteLands() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue queue = queue((cacheName, entries, ttl) -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(new LinkedHashMap<>(entries));
+        });
+
+        queue.offer("users", "1", "v1", null);
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        // In flight: Redis does not have it yet, so the pending put must still answer
+        assertThat(queue.pending("users", "1").value()).isEqualTo("v1");
+
+        release.countDown();
+        queue.close();
+        assertThat(queue.pending("users", "1")).isNull();
+        assertThat(written).containsExactly(Map.of("1", "v1"));
+    }
+
+    @Test
+    void newerPutSurvivesTheFlushOfAnOlderOne() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindQueue queue = queue((cacheName, entries, ttl) -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(new LinkedHashMap<>(entries));
+        });
+
+        queue.offer("users", "1", "v1", null);
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        queue.offer("users", "1", "v2", null);
+        release.countDown();
+        queue.close();
+
+        assertThat(written).containsExactly(Map.of("1", "v1"), Map.of("1", "v2"));
+        assertThat(queue.pending("users", "1")).isNull();
+    }
+
+    @Test
+    void supersededAndDiscardedPutsAreNotWritten() {
+        WriteBehindQueue queue = queue((cacheName, entries, ttl) -> written.add(new LinkedHashMap<>(entries)), 60_000);
+        // Held back by the flush interval until close drains everything in one batch
+        queue.offer("users", "1", "v1", null);
+        queue.offer("users", "1", "v2", null);
+        queue.offer("users", "2", "v1", null);
+        queue.discard("users", "2");
+        queue.close();
+
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0)).isEqualTo(Map.of("1", "v2"));
+    }
+
+    @Test
+    void failedWriteReleasesThePendingPut() {
+        WriteBehindQueue queue = queue((cacheName, entries, ttl) -> {
+            throw new IllegalStateException("Redis down");
+        });
+        queue.offer("users", "1", "v1", null);
+        queue.close();
+        assertThat(queue.pending("users", "1")).isNull();
+    }
+}
@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+# Local six process Redis cluster (three masters, one replica each) for trying the cluster topology.
+#   ./redis-cluster.sh start   then run with -Dspring.profiles.active=cluster
+#   ./redis-cluster.sh stop
+# Needs redis-server and redis-cli on the PATH. Data lives in $REDIS_CLUSTER_DIR (default /tmp/redis-cluster).
+set -euo pipefail
+
+FIRST_PORT=${REDIS_CLUSTER_FIRST_PORT:-7000}
+NODES=6
+DIR=${REDIS_CLUSTER_DIR:-/tmp/redis-cluster}
+
+ports() {
+    seq "$FIRST_PORT" $((FIRST_PORT + NODES - 1))
+}
+
+start() {
+    mkdir -p "$DIR"
+    for port in $(ports); do
+        mkdir -p "$DIR/$port"
+        redis-server --port "$port" --cluster-enabled yes --cluster-config-file "nodes-$port.conf" \
+            --cluster-node-timeout 5000 --appendonly no --save "" --dir "$DIR/$port" \
+            --bind 127.0.0.1 --daemonize yes --logfile "$DIR/$port/redis.log"
+    done
+    for port in $(ports); do
+        until redis-cli -p "$port" ping >/dev/null 2>&1; do sleep 0.1; done
+    done
+    local addresses=()
+    for port in $(ports); do addresses+=("127.0.0.1:$port"); done
+    redis-cli --cluster create "${addresses[@]}" --cluster-replicas 1 --cluster-yes
+    until redis-cli -p "$FIRST_PORT" cluster info | grep -q "cluster_state:ok"; do sleep 0.2; done
+    echo "Redis cluster ready on ports $FIRST_PORT-$((FIRST_PORT + NODES - 1))"
+}
+
+stop() {
+    for port in $(ports); do
+        redis-cli -p "$port" shutdown nosave >/dev/null 2>&1 || true
+    done
+    rm -rf "$DIR"
+}
+
+case "${1:-}" in
+    start) start ;;
+    stop) stop ;;
+    *) echo "usage: $0 start|stop" >&2; exit 1 ;;
+esac